@@ -5,12 +5,16 @@ import com.google.common.collect.ImmutableList;
 import com.slimgears.rxrepo.annotations.Filterable;
 import com.slimgears.rxrepo.annotations.Indexable;
 import com.slimgears.rxrepo.expressions.BooleanExpression;
+import com.slimgears.rxrepo.expressions.Expression;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.internal.NumericUnaryOperationExpression;
 import com.slimgears.rxrepo.filters.ComparableFilter;
 import com.slimgears.rxrepo.filters.ComparableFilter;
 import com.slimgears.rxrepo.filters.StringFilter;
 import com.slimgears.rxrepo.query.provider.SortingInfo;
 import com.slimgears.rxrepo.query.provider.SortingInfos;
+import com.slimgears.rxrepo.util.EvaluationContext;
+import com.slimgears.rxrepo.util.ExpressionCache;
 import com.slimgears.rxrepo.util.Expressions;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import org.junit.Assert;
@@ -21,6 +25,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -570,4 +575,36 @@ public class ExpressionsTest {
         testEntities.sort(testEntityComparator);
         Assert.assertEquals("text1", testEntities.get(0).text());
     }
+
+    @Test
+    public void testCachedPredicateWithDifferentConstants() {
+        Predicate<TestEntity> greaterThan5 = ExpressionCache.compilePredicate(TestEntity.$.number.greaterThan(5).and(TestEntity.$.text.contains("Entity")));
+        Predicate<TestEntity> greaterThan1 = ExpressionCache.compilePredicate(TestEntity.$.number.greaterThan(1).and(TestEntity.$.text.contains("Entity")));
+        Predicate<TestEntity> greaterThan5NoMatch = ExpressionCache.compilePredicate(TestEntity.$.number.greaterThan(5).and(TestEntity.$.text.contains("None")));
+
+        Assert.assertFalse(greaterThan5.test(testEntity1));
+        Assert.assertTrue(greaterThan5.test(testEntity2));
+        Assert.assertTrue(greaterThan1.test(testEntity1));
+        Assert.assertTrue(greaterThan1.test(testEntity2));
+        Assert.assertFalse(greaterThan5NoMatch.test(testEntity2));
+    }
+
+    @Test
+    public void testCachedMappingWithDifferentConstants() {
+        Function<TestEntity, String> withDash = ExpressionCache.compile(TestEntity.$.number.asString().concat(" - ").concat(TestEntity.$.text));
+        Function<TestEntity, String> withColon = ExpressionCache.compile(TestEntity.$.number.asString().concat(": ").concat(TestEntity.$.text));
+        Assert.assertEquals("3 - Entity 1", withDash.apply(testEntity1));
+        Assert.assertEquals("3: Entity 1", withColon.apply(testEntity1));
+    }
+
+    @Test
+    public void testSequenceNumberFromEvaluationContext() {
+        ObjectExpression<TestEntity, Boolean> exp = NumericUnaryOperationExpression
+                .<TestEntity, TestEntity, Long>create(Expression.Type.SequenceNumber, ObjectExpression.objectArg(TestEntity.class))
+                .lessOrEqual(5L);
+        BiPredicate<TestEntity, EvaluationContext> predicate = Expressions.compilePredicateWithContext(exp);
+        Assert.assertTrue(predicate.test(testEntity1, EvaluationContext.ofSequenceNumber(3L)));
+        Assert.assertTrue(predicate.test(testEntity1, EvaluationContext.ofSequenceNumber(5L)));
+        Assert.assertFalse(predicate.test(testEntity1, EvaluationContext.ofSequenceNumber(7L)));
+    }
 }
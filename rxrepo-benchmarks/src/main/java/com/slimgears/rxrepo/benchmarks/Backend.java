@@ -0,0 +1,87 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.mem.MemoryRepository;
+import com.slimgears.rxrepo.mongodb.MongoRepository;
+import com.slimgears.rxrepo.mongodb.embed.MongoService;
+import com.slimgears.rxrepo.orientdb.OrientDbRepository;
+import com.slimgears.rxrepo.postgres.PostgresRepository;
+import com.slimgears.rxrepo.query.Repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+public enum Backend {
+    Memory {
+        @Override
+        Repository createRepository() {
+            return MemoryRepository.create();
+        }
+    },
+    OrientDb {
+        @Override
+        Repository createRepository() {
+            return OrientDbRepository
+                    .builder()
+                    .url("embedded:db")
+                    .type(OrientDbRepository.Type.Memory)
+                    .name("benchmarks_" + System.nanoTime())
+                    .enableBatchSupport(1000)
+                    .build();
+        }
+    },
+    MongoDb {
+        @Override
+        AutoCloseable start() {
+            return MongoService.builder()
+                    .port(mongoPort)
+                    .enableReplica()
+                    .build()
+                    .start();
+        }
+
+        @Override
+        Repository createRepository() {
+            return MongoRepository
+                    .builder()
+                    .port(mongoPort)
+                    .dbName("benchmarks_" + System.nanoTime())
+                    .build();
+        }
+    },
+    Postgres {
+        @Override
+        AutoCloseable start() {
+            try (Connection connection = DriverManager.getConnection(postgresUrl)) {
+                connection
+                        .prepareStatement("DROP SCHEMA IF EXISTS " + postgresSchema + " CASCADE")
+                        .execute();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            return super.start();
+        }
+
+        @Override
+        Repository createRepository() {
+            return PostgresRepository
+                    .builder()
+                    .connection(postgresUrl)
+                    .schemaName(postgresSchema)
+                    .enableBatch(1000)
+                    .build();
+        }
+    };
+
+    private final static int mongoPort = Integer.getInteger("rxrepo.benchmarks.mongoPort", 27019);
+    private final static String postgresUrl = System.getProperty(
+            "rxrepo.benchmarks.postgresUrl",
+            "jdbc:postgresql://localhost/test_db?user=root&password=root");
+    private final static String postgresSchema = "benchmarks";
+
+    AutoCloseable start() {
+        return () -> {};
+    }
+
+    abstract Repository createRepository();
+}
@@ -0,0 +1,69 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.util.Expressions;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExpressionBenchmarks {
+    @State(Scope.Benchmark)
+    public static class ExpressionState {
+        @Param({"false", "true"})
+        public boolean compiled;
+
+        @Param({"1000"})
+        public int productCount;
+
+        List<Product> products;
+        Predicate<Product> predicate;
+        Function<Product, String> mapping;
+        Comparator<Product> comparator;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Expressions.enableCompiler(compiled);
+            products = ImmutableList.copyOf(Products.createMany(productCount));
+            predicate = Expressions.compilePredicate(Product.$.price.greaterThan(150).and(Product.$.name.contains("1")));
+            mapping = Expressions.compile(Product.$.name);
+            comparator = Expressions.compileComparator(Product.$.price);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Expressions.enableCompiler(false);
+        }
+    }
+
+    @Benchmark
+    public void evaluatePredicate(ExpressionState state, Blackhole blackhole) {
+        state.products.forEach(product -> blackhole.consume(state.predicate.test(product)));
+    }
+
+    @Benchmark
+    public void evaluateMapping(ExpressionState state, Blackhole blackhole) {
+        state.products.forEach(product -> blackhole.consume(state.mapping.apply(product)));
+    }
+
+    @Benchmark
+    public void sort(ExpressionState state, Blackhole blackhole) {
+        blackhole.consume(state.products.stream().sorted(state.comparator).toArray());
+    }
+
+    @Benchmark
+    public void compilePredicate(ExpressionState state, Blackhole blackhole) {
+        blackhole.consume(Expressions.compilePredicate(Product.$.price.greaterThan(state.productCount).and(Product.$.name.contains("1"))));
+    }
+}
@@ -0,0 +1,64 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Maybe;
+import io.reactivex.disposables.CompositeDisposable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LiveQueryBenchmarks {
+    @State(Scope.Benchmark)
+    public static class FanOutState {
+        @Param({"1", "10", "100"})
+        public int subscriberCount;
+
+        private final CompositeDisposable subscriptions = new CompositeDisposable();
+        private final AtomicReference<CountDownLatch> pending = new AtomicReference<>();
+        private final AtomicInteger expectedPrice = new AtomicInteger();
+        private UniqueId hotKey;
+
+        @Setup(Level.Trial)
+        public void setUp(RepositoryState state) {
+            hotKey = state.randomExistingKey();
+            for (int i = 0; i < subscriberCount; ++i) {
+                subscriptions.add(state.products
+                        .query()
+                        .where(Product.$.key.eq(hotKey))
+                        .liveSelect()
+                        .observe()
+                        .filter(n -> n.newValue() != null && n.newValue().price() == expectedPrice.get())
+                        .subscribe(n -> Optional.ofNullable(pending.get()).ifPresent(CountDownLatch::countDown)));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            subscriptions.dispose();
+        }
+    }
+
+    @Benchmark
+    public void updateToAllSubscribersNotified(RepositoryState state, FanOutState fanOut) throws InterruptedException, TimeoutException {
+        CountDownLatch latch = new CountDownLatch(fanOut.subscriberCount);
+        fanOut.pending.set(latch);
+        int price = fanOut.expectedPrice.incrementAndGet();
+        state.products
+                .update(fanOut.hotKey, product -> product.flatMap(p -> Maybe.just(p.toBuilder().price(price).build())))
+                .blockingGet();
+        if (!latch.await(30, TimeUnit.SECONDS)) {
+            throw new TimeoutException("Not all subscribers were notified: " + latch.getCount() + " pending");
+        }
+    }
+}
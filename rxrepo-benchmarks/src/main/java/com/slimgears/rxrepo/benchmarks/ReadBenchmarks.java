@@ -0,0 +1,49 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.test.Product;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReadBenchmarks {
+    @Benchmark
+    public void pointLookup(RepositoryState state, Blackhole blackhole) {
+        blackhole.consume(state.products.find(state.randomExistingKey()).blockingGet());
+    }
+
+    @Benchmark
+    public void filteredSortedQuery(RepositoryState state, Blackhole blackhole) {
+        blackhole.consume(state.products
+                .query()
+                .where(Product.$.price.greaterThan(150).and(Product.$.name.contains("1")))
+                .orderBy(Product.$.price)
+                .limit(50)
+                .retrieveAsList()
+                .blockingGet());
+    }
+
+    @Benchmark
+    public void fullScanWithReferences(RepositoryState state, Blackhole blackhole) {
+        blackhole.consume(state.products
+                .query()
+                .retrieveAsList()
+                .blockingGet());
+    }
+
+    @Benchmark
+    public void aggregate(RepositoryState state, Blackhole blackhole) {
+        blackhole.consume(state.products
+                .query()
+                .where(Product.$.name.contains("1"))
+                .select(Product.$.price)
+                .aggregate(Aggregator.sum())
+                .blockingGet());
+    }
+}
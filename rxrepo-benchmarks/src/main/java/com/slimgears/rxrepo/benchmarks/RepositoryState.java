@@ -0,0 +1,49 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@State(Scope.Benchmark)
+public class RepositoryState {
+    @Param({"Memory", "OrientDb", "MongoDb", "Postgres"})
+    public Backend backend;
+
+    @Param({"1000"})
+    public int productCount;
+
+    private AutoCloseable service;
+    private final AtomicInteger nextId = new AtomicInteger();
+    Repository repository;
+    EntitySet<UniqueId, Product> products;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = backend.start();
+        repository = backend.createRepository();
+        products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(productCount)).blockingAwait();
+        nextId.set(productCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        repository.clear().blockingAwait();
+        repository.close();
+        service.close();
+    }
+
+    UniqueId randomExistingKey() {
+        return UniqueId.productId(ThreadLocalRandom.current().nextInt(productCount));
+    }
+
+    int reserveIds(int count) {
+        return nextId.getAndAdd(count);
+    }
+}
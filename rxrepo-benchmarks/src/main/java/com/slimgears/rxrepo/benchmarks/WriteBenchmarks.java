@@ -0,0 +1,77 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import io.reactivex.Maybe;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WriteBenchmarks {
+    private final static int batchSize = 100;
+
+    @Benchmark
+    public void insertSingle(RepositoryState state, Blackhole blackhole) {
+        Product product = Products.createOne(state.reserveIds(1));
+        blackhole.consume(state.products.update(product).blockingGet());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(batchSize)
+    public void insertBatch(RepositoryState state) {
+        state.products
+                .update(Products.createMany(state.reserveIds(batchSize), batchSize))
+                .blockingAwait();
+    }
+
+    @Benchmark
+    public void insertOrUpdateWithUpdater(RepositoryState state, Blackhole blackhole) {
+        blackhole.consume(state.products
+                .update(state.randomExistingKey(), product -> product
+                        .flatMap(p -> Maybe.just(p.toBuilder().price(p.price() + 1).build())))
+                .blockingGet());
+    }
+
+    // Scaling of concurrent writers: single threaded variants above are the baseline
+    @Benchmark
+    @Threads(2)
+    public void insertSingle2Threads(RepositoryState state, Blackhole blackhole) {
+        insertSingle(state, blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void insertSingle4Threads(RepositoryState state, Blackhole blackhole) {
+        insertSingle(state, blackhole);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void insertSingle8Threads(RepositoryState state, Blackhole blackhole) {
+        insertSingle(state, blackhole);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void insertOrUpdateWithUpdater2Threads(RepositoryState state, Blackhole blackhole) {
+        insertOrUpdateWithUpdater(state, blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void insertOrUpdateWithUpdater4Threads(RepositoryState state, Blackhole blackhole) {
+        insertOrUpdateWithUpdater(state, blackhole);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void insertOrUpdateWithUpdater8Threads(RepositoryState state, Blackhole blackhole) {
+        insertOrUpdateWithUpdater(state, blackhole);
+    }
+}
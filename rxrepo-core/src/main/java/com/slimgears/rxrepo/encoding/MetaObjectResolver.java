@@ -2,7 +2,12 @@ package com.slimgears.rxrepo.encoding;
 
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Maybe;
+import io.reactivex.Observable;
 
 public interface MetaObjectResolver {
     <K, S> Maybe<S> resolve(MetaClassWithKey<K, S> metaClass, K key);
+
+    default <K, S> Observable<S> resolveAll(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return Observable.fromIterable(keys).concatMapMaybe(key -> resolve(metaClass, key));
+    }
 }
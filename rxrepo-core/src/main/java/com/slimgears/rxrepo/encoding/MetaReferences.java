@@ -0,0 +1,80 @@
+package com.slimgears.rxrepo.encoding;
+
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public class MetaReferences {
+    private final static MetaReferences empty = new MetaReferences(Collections.emptyMap());
+    private final Map<MetaClassWithKey<?, ?>, Map<Object, Object>> objects;
+
+    private MetaReferences(Map<MetaClassWithKey<?, ?>, Map<Object, Object>> objects) {
+        this.objects = objects;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static MetaReferences empty() {
+        return empty;
+    }
+
+    public <K, S> boolean contains(MetaClassWithKey<K, S> metaClass, K key) {
+        return Optional.ofNullable(objects.get(metaClass))
+                .map(map -> map.containsKey(key))
+                .orElse(false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <K, S> Optional<S> get(MetaClassWithKey<K, S> metaClass, K key) {
+        return Optional.ofNullable(objects.get(metaClass))
+                .map(map -> (S)map.get(key));
+    }
+
+    public static class Builder {
+        private final Map<MetaClassWithKey<?, ?>, Set<Object>> keys = new LinkedHashMap<>();
+
+        public <K, S> Builder add(MetaClassWithKey<K, S> metaClass, K key) {
+            keys.computeIfAbsent(metaClass, mc -> new LinkedHashSet<>()).add(key);
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return keys.isEmpty();
+        }
+
+        public Single<MetaReferences> resolve(MetaObjectResolver resolver) {
+            if (keys.isEmpty()) {
+                return Single.just(empty);
+            }
+            return Single.defer(() -> {
+                Map<MetaClassWithKey<?, ?>, Map<Object, Object>> objects = new HashMap<>();
+                return Observable.fromIterable(keys.entrySet())
+                        .concatMapSingle(entry -> resolveAll(resolver, entry.getKey(), entry.getValue())
+                                .doOnSuccess(resolved -> objects.put(entry.getKey(), resolved)))
+                        .ignoreElements()
+                        .toSingle(() -> new MetaReferences(objects));
+            });
+        }
+
+        // Keys which were not found are kept with null value, so they are not looked up again
+        @SuppressWarnings("unchecked")
+        private static <K, S> Single<Map<Object, Object>> resolveAll(MetaObjectResolver resolver, MetaClassWithKey<K, S> metaClass, Set<Object> keys) {
+            Map<Object, Object> resolved = new HashMap<>();
+            keys.forEach(key -> resolved.put(key, null));
+            return resolver.resolveAll(metaClass, (Iterable<K>)keys)
+                    .doOnNext(object -> resolved.put(metaClass.keyOf(object), object))
+                    .ignoreElements()
+                    .toSingleDefault(resolved);
+        }
+    }
+}
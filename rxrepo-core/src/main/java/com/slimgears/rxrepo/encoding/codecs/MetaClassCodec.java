@@ -20,11 +20,16 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
     private final boolean alwaysEmbedNested;
 
     private static final ScopedInstance<MetaObjectResolver> objectResolver = ScopedInstance.create();
+    private static final ScopedInstance<MetaReferences> resolvedReferences = ScopedInstance.create();
 
     public static <T> T withResolver(MetaObjectResolver resolver, Callable<T> action) {
         return objectResolver.withScope(resolver, action);
     }
 
+    public static <T> T withReferences(MetaReferences references, Callable<T> action) {
+        return resolvedReferences.withScope(references, action);
+    }
+
     private MetaClassCodec(MetaClass<T> metaClass, MetaObjectResolver resolver) {
         this.metaClass = metaClass;
         this.resolver = Optional.ofNullable(resolver).orElseGet(objectResolver::current);
@@ -128,10 +133,17 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
 
     private <K, S> S readReference(MetaContext.Reader context, MetaClassWithKey<K, S> metaClass) {
         return Optional.ofNullable(readValue(context, metaClass.keyProperty().type()))
-                .flatMap(key -> resolver.resolve(metaClass, key).map(Optional::of).blockingGet(Optional.empty()))
+                .flatMap(key -> resolveReference(metaClass, key))
                 .orElse(null);
     }
 
+    private <K, S> Optional<S> resolveReference(MetaClassWithKey<K, S> metaClass, K key) {
+        MetaReferences references = resolvedReferences.current();
+        return references != null && references.contains(metaClass, key)
+                ? references.get(metaClass, key)
+                : resolver.resolve(metaClass, key).map(Optional::of).blockingGet(Optional.empty());
+    }
+
     @AutoService(MetaCodecProvider.class)
     public static class Provider implements MetaCodecProvider {
         private final MetaObjectResolver resolver;
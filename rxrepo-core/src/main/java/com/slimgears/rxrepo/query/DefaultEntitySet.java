@@ -202,6 +202,14 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                                 .query(builder.build())
                                 .map(Notification::newValue);
                     }
+
+                    @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
+                    @Override
+                    public Flowable<T> stream() {
+                        return queryProvider
+                                .queryFlowable(builder.build(), config.queryFetchSize())
+                                .map(Notification::newValue);
+                    }
                 };
             }
 
@@ -347,6 +355,18 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
         };
     }
 
+    @Override
+    public Maybe<S> find(K key, PropertyExpression<S, ?, ?>... properties) {
+        return properties.length == 0
+                ? queryProvider.findByKey(metaClass, key)
+                : EntitySet.super.find(key, properties);
+    }
+
+    @Override
+    public Observable<S> findAll(Iterable<K> keys) {
+        return queryProvider.findByKeys(metaClass, keys);
+    }
+
     @Override
     public Single<Supplier<S>> update(S entity) {
         return update(entity, true);
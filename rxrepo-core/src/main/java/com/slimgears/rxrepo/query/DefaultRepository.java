@@ -19,6 +19,7 @@ public class DefaultRepository implements Repository {
             .bufferDebounceTimeoutMillis(100)
             .aggregationDebounceTimeMillis(2000)
             .retryInitialDurationMillis(10)
+            .queryFetchSize(1000)
             .build();
 
     private final RepositoryConfigModel config;
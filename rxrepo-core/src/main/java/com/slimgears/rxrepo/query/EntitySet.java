@@ -1,5 +1,6 @@
 package com.slimgears.rxrepo.query;
 
+import com.google.common.collect.ImmutableList;
 import com.slimgears.rxrepo.expressions.BooleanExpression;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
@@ -51,6 +52,10 @@ public interface EntitySet<K, S> {
         return findFirst(PropertyExpression.ofObject(metaClass().keyProperty()).eq(key), properties);
     }
 
+    default Observable<S> findAll(Iterable<K> keys) {
+        return findAll(PropertyExpression.ofObject(metaClass().keyProperty()).in(ImmutableList.copyOf(keys)));
+    }
+
     default Maybe<S> findFirst(BooleanExpression<S> predicate, PropertyExpression<S, ?, ?>... properties) {
         return query().where(predicate).limit(1).select().properties(properties).first();
     }
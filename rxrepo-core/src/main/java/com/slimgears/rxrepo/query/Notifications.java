@@ -5,7 +5,8 @@ import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.SortingInfo;
-import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.EvaluationContext;
+import com.slimgears.rxrepo.util.ExpressionCache;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.generic.MoreStrings;
 import com.slimgears.util.stream.Optionals;
@@ -21,6 +22,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -34,7 +36,7 @@ public class Notifications {
             ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
             @Nullable ObjectExpression<S, T> mapping,
             @Nullable Long limit) {
-        Function<S, T> mapper = Expressions.compile(mapping);
+        Function<S, T> mapper = ExpressionCache.compile(mapping);
         ObservableTransformer<List<Notification<S>>, List<S>> transformer = NotificationsToListTransformer.create(metaClass, sortingInfos, limit);
         return src -> src
             .compose(transformer)
@@ -46,7 +48,7 @@ public class Notifications {
             ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
             @Nullable ObjectExpression<S, T> mapping,
             @Nullable Long limit) {
-        Function<S, T> mapper = Expressions.compile(mapping);
+        Function<S, T> mapper = ExpressionCache.compile(mapping);
         ObservableTransformer<List<Notification<S>>, List<S>> transformer =
                 Optional.ofNullable(sortingInfos).map(List::size).map(s -> s > 0).orElse(false)
                         ? NotificationsToSlidingListTransformer.create(metaClass, sortingInfos, limit)
@@ -87,9 +89,11 @@ public class Notifications {
             return src -> src;
         }
 
-        Predicate<S> compiledPredicate = Expressions.compileRxPredicate(predicate);
+        BiPredicate<S, EvaluationContext> contextPredicate = ExpressionCache.compilePredicateWithContext(predicate);
         return src -> src
                 .flatMapMaybe(notification -> {
+                    EvaluationContext context = EvaluationContext.ofSequenceNumber(notification.sequenceNumber());
+                    Predicate<S> compiledPredicate = obj -> contextPredicate.test(obj, context);
                     if (notification.isCreate()) {
                         if (compiledPredicate.test(notification.newValue())) {
                             return Maybe.just(Notification.ofCreated(notification.newValue(), notification.sequenceNumber()));
@@ -125,13 +129,13 @@ public class Notifications {
     }
 
     public static <S, T> ObservableTransformer<Notification<S>, Notification<T>> applyMap(ObjectExpression<S, T> projection) {
-        java.util.function.Function<S, T> mapper = Expressions.compile(projection);
+        java.util.function.Function<S, T> mapper = ExpressionCache.compile(projection);
         return src -> src.map(n -> n.map(mapper));
     }
 
     public static <T> ObservableTransformer<Notification<T>, Notification<T>> applyFieldsFilter(Collection<PropertyExpression<T, ?, ?>> properties) {
         List<java.util.function.Function<T, ?>> propertyMetas = properties.stream()
-                .map(Expressions::compile)
+                .map(ExpressionCache::compile)
                 .collect(Collectors.toList());
 
         return properties.isEmpty()
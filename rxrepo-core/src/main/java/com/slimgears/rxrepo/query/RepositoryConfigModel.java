@@ -12,4 +12,5 @@ public interface RepositoryConfigModel {
     int bufferDebounceTimeoutMillis();
     int aggregationDebounceTimeMillis();
     int retryInitialDurationMillis();
+    int queryFetchSize();
 }
@@ -2,6 +2,7 @@ package com.slimgears.rxrepo.query;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -19,6 +20,11 @@ public abstract class SelectQuery<T> {
         return properties(properties).retrieve();
     }
 
+    @SafeVarargs
+    public final Flowable<T> stream(PropertyExpression<T, ?, ?>... properties) {
+        return properties(properties).stream();
+    }
+
     @SafeVarargs
     public final SelectQuery<T> properties(PropertyExpression<T, ?, ?>... properties) {
         return properties(Arrays.asList(properties));
@@ -29,6 +35,7 @@ public abstract class SelectQuery<T> {
     }
 
     public abstract Observable<T> retrieve();
+    public abstract Flowable<T> stream();
 
     public Single<Long> count() {
         return aggregate(Aggregator.count()).toSingle(0L);
@@ -9,6 +9,7 @@ import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -72,6 +73,20 @@ public class AbstractQueryProviderDecorator implements QueryProvider {
                 .doOnComplete(() -> log.trace("query of {} complete", lazy(() -> query.metaClass().simpleName())));
     }
 
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+        return getUnderlyingProvider().queryFlowable(query, fetchSize)
+                .doOnSubscribe(s -> log.trace("Starting streaming query of {}", lazy(() -> query.metaClass().simpleName())))
+                .doOnComplete(() -> log.trace("Streaming query of {} complete", lazy(() -> query.metaClass().simpleName())));
+    }
+
+    @Override
+    public <K, S> Observable<S> findByKeys(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return getUnderlyingProvider().findByKeys(metaClass, keys)
+                .doOnSubscribe(d -> log.trace("Starting findByKeys of {}", lazy(metaClass::simpleName)))
+                .doOnComplete(() -> log.trace("findByKeys of {} complete", lazy(metaClass::simpleName)));
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> queryAndObserve(QueryInfo<K, S, T> queryInfo, QueryInfo<K, S, T> observeInfo) {
         return getUnderlyingProvider().queryAndObserve(queryInfo, observeInfo)
@@ -1,9 +1,13 @@
 package com.slimgears.rxrepo.query.decorator;
 
+import com.google.common.collect.ImmutableList;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfos;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.QueryPublisher;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
 import io.reactivex.disposables.Disposable;
@@ -37,6 +41,25 @@ public class InterceptingQueryProviderDecorator implements QueryProvider.Decorat
             return super.query(query).compose(applyOnQuery(query));
         }
 
+        @Override
+        public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+            Flowable<Notification<T>> flowable = super.queryFlowable(query, fetchSize);
+            for (QueryPublisher.QueryListener listener : queryListeners) {
+                flowable = listener.onQueryFlowable(query, flowable);
+            }
+            return flowable;
+        }
+
+        // Listeners observe lookup by keys as a query with key predicate
+        @Override
+        public <K, S> Observable<S> findByKeys(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+            ImmutableList<K> keyList = ImmutableList.copyOf(keys);
+            return super.findByKeys(metaClass, keyList)
+                    .map(Notification::ofCreated)
+                    .compose(applyOnQuery(QueryInfos.forKeys(metaClass, keyList)))
+                    .map(Notification::newValue);
+        }
+
         @Override
         public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
             return super.liveQuery(query).compose(applyOnLiveQuery(query));
@@ -8,6 +8,7 @@ import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -58,6 +59,20 @@ public class LimitConcurrentOperationsQueryProviderDecorator extends AbstractQue
                 .doFinally(this::doFinally);
     }
 
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+        return super.queryFlowable(query, fetchSize)
+                .doOnSubscribe(s -> doOnSubscribe())
+                .doFinally(this::doFinally);
+    }
+
+    @Override
+    public <K, S> Observable<S> findByKeys(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return super.findByKeys(metaClass, keys)
+                .doOnSubscribe(d -> doOnSubscribe())
+                .doFinally(this::doFinally);
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return super.aggregate(query, aggregator)
@@ -0,0 +1,261 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.primitives.Primitives;
+import com.slimgears.rxrepo.expressions.BinaryOperationExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.util.PropertyExpressions;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.exceptions.MissingBackpressureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Shares a single upstream live query of a meta class between all subscribers.
+ * Subscribers with a predicate of form {@code property == constant} (possibly as a part of a conjunction)
+ * are indexed by the constant value, so a notification is only dispatched to subscribers, which may be
+ * interested in either its old or its new value. The remaining subscribers receive every notification.
+ * The dispatch is only a pre-filter: subscribers still apply their full predicates.
+ * <p>
+ * Each subscriber receives notifications on its own worker of the dispatch scheduler, so a slow subscriber
+ * does not hold back the upstream or other subscribers. A subscriber which falls behind by more than
+ * {@code maxPendingNotifications} is terminated with {@link MissingBackpressureException}.
+ * When the last subscriber leaves, the hub disconnects from the upstream and notifies its owner.
+ */
+class LiveQueryHub<S> {
+    private final static Logger log = LoggerFactory.getLogger(LiveQueryHub.class);
+    private final Observable<Notification<S>> upstream;
+    private final Scheduler scheduler;
+    private final int maxPendingNotifications;
+    private final Runnable onIdle;
+    private final Set<Subscriber<S>> unindexedSubscribers = ConcurrentHashMap.newKeySet();
+    private final Map<PropertyExpression<S, ?, ?>, PropertyIndex<S, ?>> indexes = new ConcurrentHashMap<>();
+    private int subscriberCount;
+    private Disposable connection;
+
+    LiveQueryHub(Observable<Notification<S>> upstream, Scheduler scheduler, int maxPendingNotifications, Runnable onIdle) {
+        this.upstream = upstream;
+        this.scheduler = scheduler;
+        this.maxPendingNotifications = maxPendingNotifications;
+        this.onIdle = onIdle;
+    }
+
+    Observable<Notification<S>> observe(@Nullable ObjectExpression<S, Boolean> predicate) {
+        Optional<IndexedCondition<S>> condition = Optional.ofNullable(predicate).flatMap(LiveQueryHub::findIndexedCondition);
+        return Observable.defer(() -> {
+            AtomicInteger pending = new AtomicInteger();
+            return Observable
+                    .<Notification<S>>create(emitter -> {
+                        Subscriber<S> subscriber = new Subscriber<>(emitter, pending, maxPendingNotifications);
+                        Runnable unsubscribe = condition
+                                .map(c -> addIndexedSubscriber(c, subscriber))
+                                .orElseGet(() -> addUnindexedSubscriber(subscriber));
+                        emitter.setCancellable(unsubscribe::run);
+                        connect();
+                    })
+                    .observeOn(scheduler)
+                    .doOnNext(n -> pending.decrementAndGet());
+        });
+    }
+
+    synchronized int subscriberCount() {
+        return subscriberCount;
+    }
+
+    private Runnable addUnindexedSubscriber(Subscriber<S> subscriber) {
+        unindexedSubscribers.add(subscriber);
+        return () -> {
+            unindexedSubscribers.remove(subscriber);
+            disconnect();
+        };
+    }
+
+    private Runnable addIndexedSubscriber(IndexedCondition<S> condition, Subscriber<S> subscriber) {
+        PropertyIndex<S, ?> index = indexes.computeIfAbsent(condition.property, p -> new PropertyIndex<S, Object>(p));
+        index.add(condition.value, subscriber);
+        log.trace("Added indexed subscriber for {} == {}", condition.property, condition.value);
+        return () -> {
+            index.remove(condition.value, subscriber);
+            disconnect();
+        };
+    }
+
+    private synchronized void connect() {
+        ++subscriberCount;
+        if (connection == null) {
+            log.debug("Connecting to upstream");
+            connection = upstream.subscribe(this::dispatch, this::onError, this::onComplete);
+        }
+    }
+
+    private void disconnect() {
+        synchronized (this) {
+            if (subscriberCount == 0 || --subscriberCount > 0) {
+                return;
+            }
+            if (connection != null) {
+                log.debug("Disconnecting from upstream");
+                connection.dispose();
+                connection = null;
+            }
+        }
+        onIdle.run();
+    }
+
+    private void dispatch(Notification<S> notification) {
+        unindexedSubscribers.forEach(subscriber -> subscriber.onNext(notification));
+        indexes.values().forEach(index -> index.dispatch(notification));
+    }
+
+    private void onError(Throwable error) {
+        forEachSubscriber(subscriber -> subscriber.emitter.tryOnError(error));
+    }
+
+    private void onComplete() {
+        forEachSubscriber(subscriber -> subscriber.emitter.onComplete());
+    }
+
+    private void forEachSubscriber(java.util.function.Consumer<Subscriber<S>> action) {
+        synchronized (this) {
+            connection = null;
+        }
+        unindexedSubscribers.forEach(action);
+        indexes.values().forEach(index -> index.forEachSubscriber(action));
+    }
+
+    private static class Subscriber<S> {
+        private final ObservableEmitter<Notification<S>> emitter;
+        private final AtomicInteger pending;
+        private final int maxPending;
+
+        private Subscriber(ObservableEmitter<Notification<S>> emitter, AtomicInteger pending, int maxPending) {
+            this.emitter = emitter;
+            this.pending = pending;
+            this.maxPending = maxPending;
+        }
+
+        // Notifications are only queued here, failure of one subscriber does not affect the others
+        private void onNext(Notification<S> notification) {
+            if (emitter.isDisposed()) {
+                return;
+            }
+            if (pending.incrementAndGet() > maxPending) {
+                log.warn("Live query subscriber is too slow, terminating ({} pending notifications)", maxPending);
+                emitter.tryOnError(new MissingBackpressureException("Live query subscriber could not keep up with " + maxPending + " pending notifications"));
+                return;
+            }
+            try {
+                emitter.onNext(notification);
+            } catch (Throwable e) {
+                log.debug("Failed to dispatch notification", e);
+                emitter.tryOnError(e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> Optional<IndexedCondition<S>> findIndexedCondition(ObjectExpression<S, Boolean> predicate) {
+        if (predicate.type() == Expression.Type.And) {
+            BinaryOperationExpression<S, Boolean, Boolean, Boolean> and = (BinaryOperationExpression<S, Boolean, Boolean, Boolean>)predicate;
+            return findIndexedCondition(and.left()).map(Optional::of).orElseGet(() -> findIndexedCondition(and.right()));
+        }
+        if (predicate.type() == Expression.Type.Equals) {
+            BinaryOperationExpression<S, ?, ?, Boolean> equals = (BinaryOperationExpression<S, ?, ?, Boolean>)predicate;
+            return IndexedCondition.tryCreate(equals.left(), equals.right())
+                    .map(Optional::of)
+                    .orElseGet(() -> IndexedCondition.tryCreate(equals.right(), equals.left()));
+        }
+        return Optional.empty();
+    }
+
+    private static class IndexedCondition<S> {
+        private final PropertyExpression<S, ?, ?> property;
+        private final Object value;
+
+        private IndexedCondition(PropertyExpression<S, ?, ?> property, Object value) {
+            this.property = property;
+            this.value = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <S> Optional<IndexedCondition<S>> tryCreate(ObjectExpression<S, ?> property, ObjectExpression<S, ?> constant) {
+            if (!(property instanceof PropertyExpression) || !(constant instanceof ConstantExpression) || !isArgumentProperty(property)) {
+                return Optional.empty();
+            }
+            Object value = ((ConstantExpression<S, ?>)constant).value();
+            return Optional.ofNullable(value)
+                    .filter(v -> Primitives.wrap(property.reflect().objectType().getRawType()).equals(v.getClass()))
+                    .map(v -> new IndexedCondition<>((PropertyExpression<S, ?, ?>)property, v));
+        }
+
+        private static boolean isArgumentProperty(ObjectExpression<?, ?> expression) {
+            while (expression instanceof PropertyExpression) {
+                expression = ((PropertyExpression<?, ?, ?>)expression).target();
+            }
+            return expression.type().operationType() == Expression.OperationType.Argument;
+        }
+    }
+
+    private static class PropertyIndex<S, V> {
+        private final Function<S, V> getter;
+        private final Map<Object, Set<Subscriber<S>>> subscribers = new ConcurrentHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        private PropertyIndex(PropertyExpression<S, ?, ?> property) {
+            this.getter = PropertyExpressions.toGetter((PropertyExpression<S, ?, V>)property);
+        }
+
+        private void add(Object value, Subscriber<S> subscriber) {
+            subscribers.computeIfAbsent(value, v -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+
+        private void remove(Object value, Subscriber<S> subscriber) {
+            subscribers.computeIfPresent(value, (v, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        }
+
+        private void dispatch(Notification<S> notification) {
+            if (notification.isEmpty()) {
+                forEachSubscriber(subscriber -> subscriber.onNext(notification));
+                return;
+            }
+            V oldValue = valueOf(notification.oldValue());
+            V newValue = valueOf(notification.newValue());
+            dispatch(oldValue, notification);
+            if (!Objects.equals(oldValue, newValue)) {
+                dispatch(newValue, notification);
+            }
+        }
+
+        private void dispatch(V value, Notification<S> notification) {
+            Optional.ofNullable(value)
+                    .map(subscribers::get)
+                    .ifPresent(set -> set.forEach(subscriber -> subscriber.onNext(notification)));
+        }
+
+        private V valueOf(S object) {
+            return object != null ? getter.apply(object) : null;
+        }
+
+        private void forEachSubscriber(java.util.function.Consumer<Subscriber<S>> action) {
+            subscribers.values().forEach(set -> set.forEach(action));
+        }
+    }
+}
@@ -19,34 +19,64 @@ import com.slimgears.util.autovalue.annotations.*;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.disposables.SerialDisposable;
+import io.reactivex.schedulers.Schedulers;
 
 import javax.annotation.Nullable;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
+    private final static Duration defaultReferenceCoalesceTime = Duration.ofMillis(50);
+    private final static int defaultMaxConcurrentReferenceQueries = 4;
+    private final static int defaultReferenceBatchSize = 1000;
+    private final static int maxPendingNotificationsPerSubscriber = 10000;
     private final Duration aggregationDebounceTime;
+    private final Duration referenceCoalesceTime;
+    private final int referenceBatchSize;
+    private final int maxConcurrentReferenceQueries;
+    private final Map<MetaClassWithKey<?, ?>, LiveQueryHub<?>> hubs = new ConcurrentHashMap<>();
 
-    private LiveQueryProviderDecorator(QueryProvider upstream, Duration aggregationDebounceTime) {
+    private LiveQueryProviderDecorator(QueryProvider upstream, Duration aggregationDebounceTime, Duration referenceCoalesceTime, int referenceBatchSize, int maxConcurrentReferenceQueries) {
         super(upstream);
         this.aggregationDebounceTime = aggregationDebounceTime;
+        this.referenceCoalesceTime = referenceCoalesceTime;
+        this.referenceBatchSize = Math.max(1, referenceBatchSize);
+        this.maxConcurrentReferenceQueries = Math.max(1, maxConcurrentReferenceQueries);
     }
 
     public static QueryProvider.Decorator create(Duration aggregationDebounceTime) {
-        return src -> new LiveQueryProviderDecorator(src, aggregationDebounceTime);
+        return create(aggregationDebounceTime, defaultReferenceCoalesceTime, defaultMaxConcurrentReferenceQueries);
+    }
+
+    public static QueryProvider.Decorator create(Duration aggregationDebounceTime, Duration referenceCoalesceTime, int maxConcurrentReferenceQueries) {
+        return create(aggregationDebounceTime, referenceCoalesceTime, defaultReferenceBatchSize, maxConcurrentReferenceQueries);
+    }
+
+    // Reference batch is opened by its first notification, and flushed either when coalesce time elapses since then
+    // or when it reaches referenceBatchSize notifications.
+    // Zero coalesce time disables coalescing, so every referenced change is processed on its own
+    public static QueryProvider.Decorator create(Duration aggregationDebounceTime, Duration referenceCoalesceTime, int referenceBatchSize, int maxConcurrentReferenceQueries) {
+        return src -> new LiveQueryProviderDecorator(src, aggregationDebounceTime, referenceCoalesceTime, referenceBatchSize, maxConcurrentReferenceQueries);
     }
 
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
-        return super.liveQuery(QueryInfo.<K, S, S>builder()
-                        .metaClass(query.metaClass())
-                        .properties(QueryInfos.allReferencedProperties(query))
-                        .build())
+        return Observable.defer(() -> hubOf(query.metaClass()).observe(query.predicate()))
                 .compose(applyReferencedObserve(query))
                 .compose(Notifications.applyFilter(query.predicate()))
                 .compose(Notifications.applyMap(query.mapping()))
@@ -68,6 +98,20 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
             .distinctUntilChanged();
     }
 
+    // Hub is looked up on subscription and removed once its last subscriber leaves
+    @SuppressWarnings("unchecked")
+    private <K, S> LiveQueryHub<S> hubOf(MetaClassWithKey<K, S> metaClass) {
+        return (LiveQueryHub<S>)hubs.computeIfAbsent(metaClass, mc -> {
+            AtomicReference<LiveQueryHub<S>> hub = new AtomicReference<>();
+            hub.set(new LiveQueryHub<>(
+                    super.liveQuery(QueryInfo.<K, S, S>builder().metaClass(metaClass).build()),
+                    Schedulers.computation(),
+                    maxPendingNotificationsPerSubscriber,
+                    () -> hubs.remove(metaClass, hub.get())));
+            return hub.get();
+        });
+    }
+
     private <K, S, T> ObservableTransformer<Notification<S>, Notification<S>> applyReferencedObserve(QueryInfo<K, S, T> query) {
         QueryInfo<K, S, S> unmappedQuery = QueryInfos
                 .unmapQuery(query)
@@ -112,31 +156,103 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
         return observeReferenceProperty(query, referenceProperty, referenceProperties, MetaClasses.forTokenWithKeyUnchecked(referenceProperty.reflect().objectType()), lastCreatedSequenceNumber);
     }
 
-    @SuppressWarnings({"unchecked", "ReactiveStreamsNullableInLambdaInTransform"})
+    // Changes of referenced objects are collected for a short window and coalesced per referenced key,
+    // so a burst of changes to the same object results in a single re-query of referencing objects.
+    // Re-queries of a batch run concurrently, but their results are emitted in sequence number order
     private <K1, S1, K2, S2> Observable<Notification<S1>> observeReferenceProperty(QueryInfo<K1, S1, S1> query, PropertyExpression<S1, S1, S2> referenceProperty, ImmutableSet<PropertyExpression<S2, ?, ?>> properties, MetaClassWithKey<K2, S2> metaClassWithKey, AtomicReference<Long> lastCreatedSequenceNumber) {
         return observeReference(metaClassWithKey, properties)
                 .filter(n -> n.isModify() || n.isDelete())
                 .doOnNext(n -> log.trace("Received referenced notification: {} (last seq.: {}), {}", n.sequenceNumber(), lastCreatedSequenceNumber.get(), n))
-                .flatMapIterable(n -> query(QueryInfo
-                        .<K1, S1, S1>builder()
-                        .metaClass(query.metaClass())
-                        .properties(PropertyExpressions.includeMandatoryProperties(query.objectType(), query.properties()))
-                        .predicate(PredicateBuilder.<S1>create()
-                                //.and(query.predicate())
-                                .and(matchReferenceId(n.oldValue(), referenceProperty, metaClassWithKey))
-                                .and(matchSequenceNumber(query.metaClass(), lastCreatedSequenceNumber.get(), n.sequenceNumber()))
-                                .build())
+                .compose(this::bufferReferenceNotifications)
+                .filter(batch -> !batch.isEmpty())
+                .concatMap(batch -> Observable
+                        .fromIterable(coalesceByKey(metaClassWithKey, batch))
+                        .concatMapEager(n -> queryReferencing(query, referenceProperty, metaClassWithKey, n, lastCreatedSequenceNumber.get()),
+                                maxConcurrentReferenceQueries, Observable.bufferSize()));
+    }
+
+    // Batch is opened by its first notification and closed when coalesce time elapses since then,
+    // or when it reaches referenceBatchSize notifications, so no timer runs while there are no changes
+    private <S> Observable<List<Notification<S>>> bufferReferenceNotifications(Observable<Notification<S>> notifications) {
+        if (referenceCoalesceTime.isZero() || referenceCoalesceTime.isNegative()) {
+            return notifications.map(Collections::singletonList);
+        }
+
+        return Observable.create(emitter -> {
+            AtomicReference<List<Notification<S>>> batch = new AtomicReference<>();
+            SerialDisposable timer = new SerialDisposable();
+            Disposable subscription = notifications.subscribe(
+                    n -> {
+                        synchronized (batch) {
+                            List<Notification<S>> current = batch.get();
+                            if (current == null) {
+                                List<Notification<S>> opened = new ArrayList<>();
+                                batch.set(opened);
+                                timer.set(Schedulers.computation().scheduleDirect(() -> {
+                                    synchronized (batch) {
+                                        if (batch.compareAndSet(opened, null)) {
+                                            emitter.onNext(opened);
+                                        }
+                                    }
+                                }, referenceCoalesceTime.toMillis(), TimeUnit.MILLISECONDS));
+                                current = opened;
+                            }
+                            current.add(n);
+                            if (current.size() >= referenceBatchSize) {
+                                batch.set(null);
+                                timer.set(Disposables.disposed());
+                                emitter.onNext(current);
+                            }
+                        }
+                    },
+                    emitter::onError,
+                    () -> {
+                        synchronized (batch) {
+                            timer.dispose();
+                            Optional.ofNullable(batch.getAndSet(null)).ifPresent(emitter::onNext);
+                            emitter.onComplete();
+                        }
+                    });
+            emitter.setCancellable(() -> {
+                subscription.dispose();
+                timer.dispose();
+            });
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K1, S1, K2, S2> Observable<Notification<S1>> queryReferencing(QueryInfo<K1, S1, S1> query, PropertyExpression<S1, S1, S2> referenceProperty, MetaClassWithKey<K2, S2> metaClassWithKey, Notification<S2> notification, Long lastCreatedSequenceNumber) {
+        return query(QueryInfo
+                .<K1, S1, S1>builder()
+                .metaClass(query.metaClass())
+                .properties(PropertyExpressions.includeMandatoryProperties(query.objectType(), query.properties()))
+                .predicate(PredicateBuilder.<S1>create()
+                        .and(matchReferenceId(notification.oldValue(), referenceProperty, metaClassWithKey))
+                        .and(matchSequenceNumber(query.metaClass(), lastCreatedSequenceNumber, notification.sequenceNumber()))
                         .build())
-                        .map(Notification::newValue)
-                        .map(obj -> {
-                            MetaBuilder<S1> builder = ((HasMetaClass<S1>)obj).toBuilder();
-                            referenceProperty.property().setValue(builder, n.oldValue());
-                            S1 oldValue = builder.build();
-                            referenceProperty.property().setValue(builder, n.newValue());
-                            S1 newValue = builder.build();
-                            return Notification.create(oldValue, newValue, n.sequenceNumber());
-                        })
-                        .blockingIterable());
+                .build())
+                .map(Notification::newValue)
+                .map(obj -> {
+                    MetaBuilder<S1> builder = ((HasMetaClass<S1>)obj).toBuilder();
+                    referenceProperty.property().setValue(builder, notification.oldValue());
+                    S1 oldValue = builder.build();
+                    referenceProperty.property().setValue(builder, notification.newValue());
+                    S1 newValue = builder.build();
+                    return Notification.create(oldValue, newValue, notification.sequenceNumber());
+                });
+    }
+
+    // Coalesced notification takes sequence number of the last change, so the result is re-sorted by it
+    private static <K, S> Collection<Notification<S>> coalesceByKey(MetaClassWithKey<K, S> metaClass, List<Notification<S>> notifications) {
+        Map<K, Notification<S>> coalesced = new LinkedHashMap<>();
+        notifications.forEach(n -> coalesced.merge(
+                metaClass.keyOf(n.oldValue()),
+                n,
+                (first, last) -> Notification.create(first.oldValue(), last.newValue(), last.sequenceNumber())));
+        return coalesced.values()
+                .stream()
+                .sorted(Comparator.comparing((Notification<S> n) -> n.sequenceNumber(), Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
     }
 
     @SuppressWarnings("UnstableApiUsage")
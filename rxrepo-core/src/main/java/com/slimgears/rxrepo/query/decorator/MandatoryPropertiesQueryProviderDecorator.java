@@ -4,6 +4,7 @@ import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfos;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +25,11 @@ public class MandatoryPropertiesQueryProviderDecorator extends AbstractQueryProv
         return super.query(QueryInfos.includeMandatoryProperties(query));
     }
 
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+        return super.queryFlowable(QueryInfos.includeMandatoryProperties(query), fetchSize);
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> queryAndObserve(QueryInfo<K, S, T> queryInfo, QueryInfo<K, S, T> observeInfo) {
         return super.queryAndObserve(QueryInfos.includeMandatoryProperties(queryInfo), QueryInfos.includeMandatoryProperties(observeInfo));
@@ -11,6 +11,7 @@ import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.util.autovalue.annotations.MetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -86,6 +87,24 @@ public class MetricsQueryProviderDecorator implements QueryProvider.Decorator {
                     .compose(asyncCollector("query", query.metaClass()).forObservable());
         }
 
+        @Override
+        public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+            MetricCollector.Timer timer = metricCollector
+                    .name(query.metaClass().simpleName())
+                    .name("queryFlowable")
+                    .timer("time");
+            return Flowable.defer(() -> {
+                MetricCollector.Timer.Stopper stopper = timer.stopper().start();
+                return super.queryFlowable(query, fetchSize).doFinally(stopper::stop);
+            });
+        }
+
+        @Override
+        public <K, S> Observable<S> findByKeys(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+            return super.findByKeys(metaClass, keys)
+                    .compose(asyncCollector("findByKeys", metaClass).forObservable());
+        }
+
         @Override
         public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
             return super.liveQuery(query)
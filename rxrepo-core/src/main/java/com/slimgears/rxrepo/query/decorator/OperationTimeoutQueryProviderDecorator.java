@@ -10,6 +10,7 @@ import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.rxrepo.util.Timeout;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -56,6 +57,18 @@ public class OperationTimeoutQueryProviderDecorator extends AbstractQueryProvide
                 .compose(Timeout.forObservable(queryTimeout));
     }
 
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+        return super.queryFlowable(query, fetchSize)
+                .compose(Timeout.forFlowable(queryTimeout));
+    }
+
+    @Override
+    public <K, S> Observable<S> findByKeys(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return super.findByKeys(metaClass, keys)
+                .compose(Timeout.forObservable(queryTimeout));
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> queryAndObserve(QueryInfo<K, S, T> queryInfo, QueryInfo<K, S, T> observeInfo) {
         return super.queryAndObserve(queryInfo, observeInfo)
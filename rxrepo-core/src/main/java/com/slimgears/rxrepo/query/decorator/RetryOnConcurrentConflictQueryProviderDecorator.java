@@ -42,9 +42,14 @@ public class RetryOnConcurrentConflictQueryProviderDecorator extends AbstractQue
                         : Completable.error(e));
     }
 
+    // Batch is inserted first, then upserted by underlying provider (which may do it natively),
+    // and only then falls back to per-entity upserts with retries
     @Override
     public <K, S> Completable insertOrUpdate(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
         return super.insert(metaClass, entities, recursive)
+                .onErrorResumeNext(e -> isConcurrencyException(e)
+                        ? Completable.defer(() -> super.insertOrUpdate(metaClass, entities, recursive))
+                        : Completable.error(e))
                 .onErrorResumeNext(e -> isConcurrencyException(e)
                         ? Completable.defer(() -> Observable
                         .fromIterable(entities)
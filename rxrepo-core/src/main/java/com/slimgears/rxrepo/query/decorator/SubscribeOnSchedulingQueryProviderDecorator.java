@@ -83,6 +83,16 @@ public class SubscribeOnSchedulingQueryProviderDecorator extends AbstractQueryPr
         return super.query(query).subscribeOn(queryScheduler);
     }
 
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+        return super.queryFlowable(query, fetchSize).subscribeOn(queryScheduler);
+    }
+
+    @Override
+    public <K, S> Observable<S> findByKeys(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return super.findByKeys(metaClass, keys).subscribeOn(queryScheduler);
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return super.aggregate(query, aggregator).subscribeOn(queryScheduler);
@@ -51,6 +51,17 @@ public class TakeUntilCloseQueryProviderDecorator implements QueryProvider.Decor
             return super.query(query).compose(applyTakeUntilClose());
         }
 
+        @Override
+        public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+            return super.queryFlowable(query, fetchSize)
+                    .takeUntil(closeObservable.toFlowable(BackpressureStrategy.LATEST));
+        }
+
+        @Override
+        public <K, S> Observable<S> findByKeys(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+            return super.findByKeys(metaClass, keys).compose(applyTakeUntilClose());
+        }
+
         @Override
         public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
             return super.liveQuery(query).compose(applyTakeUntilClose());
@@ -4,6 +4,7 @@ import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -27,11 +28,26 @@ public abstract class AbstractEntityQueryProviderAdapter implements QueryProvide
                 .insertOrUpdate(key, recursive, entityUpdater);
     }
 
+    @Override
+    public <K, S> Completable insertOrUpdate(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+        return entities(metaClass).insertOrUpdate(entities, recursive);
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
         return entities(query.metaClass()).query(query);
     }
 
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+        return entities(query.metaClass()).queryFlowable(query, fetchSize);
+    }
+
+    @Override
+    public <K, S> Observable<S> findByKeys(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return entities(metaClass).findByKeys(keys);
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
         return entities(query.metaClass()).liveQuery(query);
@@ -4,7 +4,9 @@ import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.autovalue.annotations.MetaClasses;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -22,6 +24,7 @@ public interface EntityQueryProvider<K, S> extends AutoCloseable {
     Single<Integer> update(UpdateInfo<K, S> update);
     Single<Integer> delete(DeleteInfo<K, S> delete);
     Completable drop();
+    Observable<S> findByKeys(Iterable<K> keys);
 
     default Completable insert(Iterable<S> entities, boolean recursive) {
         return Observable.fromIterable(entities)
@@ -29,6 +32,12 @@ public interface EntityQueryProvider<K, S> extends AutoCloseable {
                 .ignoreElements();
     }
 
+    default Completable insertOrUpdate(Iterable<S> entities, boolean recursive) {
+        return Observable.fromIterable(entities)
+                .concatMapEager(e -> insertOrUpdate(e, recursive).toObservable())
+                .ignoreElements();
+    }
+
     default Single<Supplier<S>> insertOrUpdate(S entity, boolean recursive) {
         K key = metaClass().keyOf(entity);
         return insertOrUpdate(key, recursive, val -> val
@@ -37,6 +46,10 @@ public interface EntityQueryProvider<K, S> extends AutoCloseable {
                 .toSingle();
     }
 
+    default <T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+        return query(query).toFlowable(BackpressureStrategy.BUFFER);
+    }
+
     default <T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return liveQuery(query).debounce(500, TimeUnit.MILLISECONDS).switchMapMaybe(n -> aggregate(query, aggregator));
     }
@@ -7,6 +7,7 @@ import com.slimgears.rxrepo.expressions.Expression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 
 import java.util.Collection;
 import java.util.Optional;
@@ -28,6 +29,20 @@ public class QueryInfos {
                 .build();
     }
 
+    public static <K, S> QueryInfo<K, S, S> forKeys(MetaClassWithKey<K, S> metaClass, Collection<K> keys) {
+        return QueryInfo
+                .<K, S, S>builder()
+                .metaClass(metaClass)
+                .predicate(PropertyExpression.ofObject(metaClass.keyProperty()).in(keys))
+                .build();
+    }
+
+    public static <K, S, T> QueryInfo<K, S, T> withKeys(QueryInfo<K, S, T> query, Collection<K> keys) {
+        return query.toBuilder()
+                .predicate(PropertyExpression.ofObject(query.metaClass().keyProperty()).in(keys))
+                .build();
+    }
+
     @SuppressWarnings("unchecked")
     public static <K, S, T> QueryInfo<K, S, S> unmapQuery(QueryInfo<K, S, T> query) {
         return Optional.ofNullable(query.mapping())
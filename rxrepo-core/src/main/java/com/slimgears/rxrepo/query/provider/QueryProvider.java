@@ -1,17 +1,21 @@
 package com.slimgears.rxrepo.query.provider;
 
+import com.google.common.collect.ImmutableList;
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.util.Queries;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.autovalue.annotations.MetaClasses;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
@@ -45,6 +49,23 @@ public interface QueryProvider extends AutoCloseable {
                 .toSingle();
     }
 
+    default <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+        return query(query).toFlowable(BackpressureStrategy.BUFFER);
+    }
+
+    default <K, S> Observable<S> findByKeys(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return Observable.defer(() -> {
+            ImmutableList<K> keyList = ImmutableList.copyOf(keys);
+            return keyList.isEmpty()
+                    ? Observable.<S>empty()
+                    : query(QueryInfos.forKeys(metaClass, keyList)).map(Notification::newValue);
+        });
+    }
+
+    default <K, S> Maybe<S> findByKey(MetaClassWithKey<K, S> metaClass, K key) {
+        return findByKeys(metaClass, Collections.singleton(key)).firstElement();
+    }
+
     default <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return liveQuery(query)
             .debounce(500, TimeUnit.MILLISECONDS)
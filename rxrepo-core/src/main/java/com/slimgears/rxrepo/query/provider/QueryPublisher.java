@@ -1,12 +1,19 @@
 package com.slimgears.rxrepo.query.provider;
 
 import com.slimgears.rxrepo.query.Notification;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
 
 public interface QueryPublisher {
     interface OnQueryListener {
         <K, S, T> Observable<Notification<T>> onQuery(QueryInfo<K, S, T> queryInfo, Observable<Notification<T>> queryResult);
+
+        // Default implementation goes through onQuery() and buffers, listeners should override it to keep backpressure
+        default <K, S, T> Flowable<Notification<T>> onQueryFlowable(QueryInfo<K, S, T> queryInfo, Flowable<Notification<T>> queryResult) {
+            return onQuery(queryInfo, queryResult.toObservable()).toFlowable(BackpressureStrategy.BUFFER);
+        }
     }
 
     interface OnLiveQueryListener {
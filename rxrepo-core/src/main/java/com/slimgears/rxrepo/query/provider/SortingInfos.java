@@ -1,7 +1,8 @@
 package com.slimgears.rxrepo.query.provider;
 
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.util.ExpressionCache;
 import com.slimgears.rxrepo.util.Expressions;
-import com.slimgears.util.stream.Streams;
 
 import java.util.Comparator;
 
@@ -12,10 +13,8 @@ public class SortingInfos {
     }
 
     public static <T> Comparator<T> toComparator(Iterable<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos) {
-        return Streams
-                .fromIterable(sortingInfos)
-                .map(SortingInfos::toComparator)
-                .reduce(Comparator::thenComparing)
-                .orElse(null);
+        return sortingInfos != null
+                ? ExpressionCache.compileComparator(ImmutableList.copyOf(sortingInfos))
+                : null;
     }
 }
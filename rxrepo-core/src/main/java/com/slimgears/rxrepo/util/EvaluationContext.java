@@ -0,0 +1,13 @@
+package com.slimgears.rxrepo.util;
+
+public interface EvaluationContext {
+    long sequenceNumber();
+
+    static EvaluationContext ofSequenceNumber(long sequenceNumber) {
+        return () -> sequenceNumber;
+    }
+
+    static EvaluationContext ofSequenceNumber(Long sequenceNumber) {
+        return ofSequenceNumber(sequenceNumber != null ? sequenceNumber : 0L);
+    }
+}
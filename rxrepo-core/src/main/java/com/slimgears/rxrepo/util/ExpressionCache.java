@@ -0,0 +1,141 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.slimgears.nanometer.MetricCollector;
+import com.slimgears.nanometer.Metrics;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.query.provider.SortingInfos;
+import com.slimgears.util.stream.Streams;
+
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache of compiled predicates, mappings and comparators.
+ * Predicates and mappings are cached by expression shape, so expressions which only differ by constants
+ * share a compiled template, which is bound to the constants of the actual expression.
+ * Hit and miss counts of each cache are periodically reported as gauges.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class ExpressionCache {
+    private final static MetricCollector metrics = Metrics.collector(ExpressionCache.class);
+    private final static long maxSize = Long.getLong("rxrepo.expressions.cacheSize", 10000);
+    private final static MeteredCache<ObjectExpression<?, ?>, Function<Object[], BiFunction<Object, EvaluationContext, Object>>> mappings = new MeteredCache<>("mappings");
+    private final static MeteredCache<ObjectExpression<?, ?>, Function<Object[], BiPredicate<Object, EvaluationContext>>> predicates = new MeteredCache<>("predicates");
+    private final static MeteredCache<ImmutableList<?>, Optional<Comparator<Object>>> comparators = new MeteredCache<>("comparators");
+
+    @SuppressWarnings("unchecked")
+    public static <S, T> Function<S, T> compile(ObjectExpression<S, T> expression) {
+        if (expression == null) {
+            return (Function<S, T>)Function.identity();
+        }
+        BiFunction<S, EvaluationContext, T> func = compileWithContext(expression);
+        EvaluationContext context = Expressions.compilationContext();
+        return arg -> func.apply(arg, context);
+    }
+
+    public static <S> Predicate<S> compilePredicate(ObjectExpression<S, Boolean> predicate) {
+        if (predicate == null) {
+            return e -> true;
+        }
+        BiPredicate<S, EvaluationContext> func = compilePredicateWithContext(predicate);
+        EvaluationContext context = Expressions.compilationContext();
+        return arg -> func.test(arg, context);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <S, T> BiFunction<S, EvaluationContext, T> compileWithContext(ObjectExpression<S, T> expression) {
+        if (expression == null) {
+            return (arg, context) -> (T)arg;
+        }
+        ExpressionShape<S, T> shape = ExpressionShape.of(expression);
+        if (!shape.isParameterizable()) {
+            Function<S, T> func = Expressions.compile(expression);
+            return (arg, context) -> func.apply(arg);
+        }
+        return (BiFunction<S, EvaluationContext, T>)mappings
+                .get(shape.expression(), () -> (Function<Object[], BiFunction<Object, EvaluationContext, Object>>)(Function<?, ?>)Expressions.compileTemplate(shape))
+                .apply(shape.values());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <S> BiPredicate<S, EvaluationContext> compilePredicateWithContext(ObjectExpression<S, Boolean> predicate) {
+        if (predicate == null) {
+            return (arg, context) -> true;
+        }
+        ExpressionShape<S, Boolean> shape = ExpressionShape.of(predicate);
+        if (!shape.isParameterizable()) {
+            Predicate<S> func = Expressions.compilePredicate(predicate);
+            return (arg, context) -> func.test(arg);
+        }
+        return (BiPredicate<S, EvaluationContext>)predicates
+                .get(shape.expression(), () -> (Function<Object[], BiPredicate<Object, EvaluationContext>>)(Function<?, ?>)Expressions.compilePredicateTemplate(shape))
+                .apply(shape.values());
+    }
+
+    public static <S> io.reactivex.functions.Predicate<S> compileRxPredicate(ObjectExpression<S, Boolean> predicate) {
+        return compilePredicate(predicate)::test;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <S> Comparator<S> compileComparator(ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos) {
+        if (sortingInfos == null || sortingInfos.isEmpty()) {
+            return null;
+        }
+        return (Comparator<S>)comparators
+                .get(sortingInfos, () -> Streams
+                        .fromIterable(sortingInfos)
+                        .map(SortingInfos::toComparator)
+                        .reduce(Comparator::thenComparing)
+                        .map(comparator -> (Comparator<Object>)comparator))
+                .orElse(null);
+    }
+
+    // Gauges are registered once, cache statistics are sampled every statsSampleInterval lookups
+    private static class MeteredCache<K, V> {
+        private final static int statsSampleInterval = 1024;
+        private final Cache<K, V> cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .concurrencyLevel(10)
+                .recordStats()
+                .build();
+        private final AtomicInteger lookupCount = new AtomicInteger();
+        private final MetricCollector.Gauge hitCountGauge;
+        private final MetricCollector.Gauge missCountGauge;
+
+        private MeteredCache(String name) {
+            MetricCollector metricCollector = metrics.name(name);
+            this.hitCountGauge = metricCollector.gauge("hitCount");
+            this.missCountGauge = metricCollector.gauge("missCount");
+        }
+
+        private V get(K key, Callable<V> loader) {
+            try {
+                return cache.get(key, loader);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                if (lookupCount.incrementAndGet() % statsSampleInterval == 0) {
+                    recordStats();
+                }
+            }
+        }
+
+        private void recordStats() {
+            CacheStats stats = cache.stats();
+            hitCountGauge.record(stats.hitCount());
+            missCountGauge.record(stats.missCount());
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.primitives.Primitives;
+import com.slimgears.rxrepo.expressions.BinaryOperationExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.expressions.UnaryOperationExpression;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Compiles expressions into trees of specialized evaluation nodes.
+ * Unlike the interpreter of {@link Expressions}, property values are read through getters generated
+ * with {@link LambdaMetafactory}, predicates are evaluated without boxing, and comparisons of primitive
+ * properties with constants are done on unboxed values.
+ * Templates are cached by expression shape (expression with constants replaced by slots), so expressions
+ * that only differ by constants are analyzed once. Expressions containing unsupported operations are not compiled.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class ExpressionCompiler {
+    private final static MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private final static Cache<ObjectExpression<?, ?>, Optional<Factory>> templates = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .concurrencyLevel(10)
+            .build();
+    private final static Map<PropertyMeta<?, ?>, Getter> getters = new ConcurrentHashMap<>();
+    private final static Node identity = arg -> arg;
+
+    public static <S, T> Optional<Function<S, T>> tryCompile(ObjectExpression<S, T> expression) {
+        ExpressionShape<S, T> shape = ExpressionShape.of(expression);
+        return tryCreateTemplate(shape.expression()).map(template -> template.apply(shape.values()));
+    }
+
+    public static <S> Optional<Predicate<S>> tryCompilePredicate(ObjectExpression<S, Boolean> expression) {
+        ExpressionShape<S, Boolean> shape = ExpressionShape.of(expression);
+        return tryCreatePredicateTemplate(shape.expression()).map(template -> template.apply(shape.values()));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <S, T> Optional<Function<Object[], Function<S, T>>> tryCreateTemplate(ObjectExpression<S, T> shape) {
+        return cachedFactoryOf(shape).map(factory -> values -> {
+            Node node = factory.create(values);
+            return arg -> (T)node.eval(arg);
+        });
+    }
+
+    static <S> Optional<Function<Object[], Predicate<S>>> tryCreatePredicateTemplate(ObjectExpression<S, Boolean> shape) {
+        return cachedFactoryOf(shape).map(factory -> values -> {
+            BooleanNode node = asBoolean(factory.create(values));
+            return node::test;
+        });
+    }
+
+    private static Optional<Factory> cachedFactoryOf(ObjectExpression<?, ?> shape) {
+        try {
+            return templates.get(shape, () -> tryCreateFactory(shape));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static Optional<Factory> tryCreateFactory(ObjectExpression<?, ?> shape) {
+        try {
+            return Optional.of(factoryOf(shape));
+        } catch (UnsupportedOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Factory factoryOf(ObjectExpression<?, ?> expression) {
+        Expression.Type type = expression.type();
+        switch (type.operationType()) {
+            case Argument:
+                return values -> identity;
+            case Constant:
+                return constantFactory((ConstantExpression<?, ?>)expression);
+            case Property:
+                return propertyFactory((PropertyExpression<?, ?, ?>)expression);
+            case Unary:
+                return unaryFactory(type, factoryOf(((UnaryOperationExpression<?, ?, ?>)expression).operand()));
+            case Binary:
+                return binaryFactory(type, (BinaryOperationExpression<?, ?, ?, ?>)expression);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private static Factory constantFactory(ConstantExpression<?, ?> constant) {
+        if (constant.value() instanceof ExpressionShape.Slot) {
+            int index = ((ExpressionShape.Slot)constant.value()).index();
+            return values -> {
+                Object value = values[index];
+                return arg -> value;
+            };
+        }
+        return values -> arg -> null;
+    }
+
+    private static Factory propertyFactory(PropertyExpression<?, ?, ?> property) {
+        Getter getter = getterOf(property.property());
+        if (property.target().type().operationType() == Expression.OperationType.Argument) {
+            return values -> getter::get;
+        }
+        Factory target = factoryOf(property.target());
+        return values -> {
+            Node targetNode = target.create(values);
+            return arg -> getter.get(targetNode.eval(arg));
+        };
+    }
+
+    private static Factory unaryFactory(Expression.Type type, Factory operand) {
+        switch (type) {
+            case Not:
+                return values -> {
+                    Node node = operand.create(values);
+                    return (BooleanNode)arg -> Boolean.FALSE.equals(node.eval(arg));
+                };
+            case IsNull:
+                return values -> {
+                    Node node = operand.create(values);
+                    return (BooleanNode)arg -> node.eval(arg) == null;
+                };
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private static Factory binaryFactory(Expression.Type type, BinaryOperationExpression<?, ?, ?, ?> expression) {
+        switch (type) {
+            case And: {
+                Factory left = factoryOf(expression.left());
+                Factory right = factoryOf(expression.right());
+                return values -> {
+                    BooleanNode leftNode = asBoolean(left.create(values));
+                    BooleanNode rightNode = asBoolean(right.create(values));
+                    return (BooleanNode)arg -> leftNode.test(arg) && rightNode.test(arg);
+                };
+            }
+            case Or: {
+                Factory left = factoryOf(expression.left());
+                Factory right = factoryOf(expression.right());
+                return values -> {
+                    BooleanNode leftNode = asBoolean(left.create(values));
+                    BooleanNode rightNode = asBoolean(right.create(values));
+                    return (BooleanNode)arg -> leftNode.test(arg) || rightNode.test(arg);
+                };
+            }
+            case Equals:
+            case GreaterThan:
+            case LessThan:
+                return comparisonFactory(type, expression);
+            case ValueIn:
+                return binaryFactory(expression, (obj, col) -> obj != null && col != null && ((Collection<?>)col).contains(obj));
+            case Contains:
+                return binaryFactory(expression, (s1, s2) -> s1 != null && (s2 == null || ((String)s1).contains((String)s2)));
+            case StartsWith:
+                return binaryFactory(expression, (s1, s2) -> s1 != null && (s2 == null || ((String)s1).startsWith((String)s2)));
+            case EndsWith:
+                return binaryFactory(expression, (s1, s2) -> s1 != null && (s2 == null || ((String)s1).endsWith((String)s2)));
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private static Factory binaryFactory(BinaryOperationExpression<?, ?, ?, ?> expression, BinaryTest test) {
+        Factory left = factoryOf(expression.left());
+        Factory right = factoryOf(expression.right());
+        return values -> {
+            Node leftNode = left.create(values);
+            Node rightNode = right.create(values);
+            return (BooleanNode)arg -> test.test(leftNode.eval(arg), rightNode.eval(arg));
+        };
+    }
+
+    private static Factory comparisonFactory(Expression.Type type, BinaryOperationExpression<?, ?, ?, ?> expression) {
+        Factory generic = binaryFactory(expression, genericComparison(type));
+        return primitiveComparisonFactory(type, expression.left(), expression.right())
+                .or(() -> primitiveComparisonFactory(mirrored(type), expression.right(), expression.left()))
+                .map(primitive -> (Factory)values -> primitive.create(values).orElseGet(() -> generic.create(values)))
+                .orElse(generic);
+    }
+
+    // Applicable when a primitive property is compared with a constant of exactly the same (boxed) type,
+    // otherwise the instance falls back to generic comparison, which keeps semantics of the interpreter
+    private static Optional<PrimitiveComparisonFactory> primitiveComparisonFactory(Expression.Type type, ObjectExpression<?, ?> propertyExp, ObjectExpression<?, ?> constantExp) {
+        if (!(propertyExp instanceof PropertyExpression) ||
+                !(constantExp instanceof ConstantExpression) ||
+                !(((ConstantExpression<?, ?>)constantExp).value() instanceof ExpressionShape.Slot)) {
+            return Optional.empty();
+        }
+        PropertyExpression<?, ?, ?> property = (PropertyExpression<?, ?, ?>)propertyExp;
+        Getter getter = getterOf(property.property());
+        if (getter.longGetter == null && getter.doubleGetter == null) {
+            return Optional.empty();
+        }
+        Factory target = property.target().type().operationType() == Expression.OperationType.Argument
+                ? values -> identity
+                : factoryOf(property.target());
+        int index = ((ExpressionShape.Slot)((ConstantExpression<?, ?>)constantExp).value()).index();
+        return Optional.of(values -> {
+            Object value = values[index];
+            if (value == null || value.getClass() != getter.valueClass) {
+                return Optional.empty();
+            }
+            Node targetNode = target.create(values);
+            return Optional.of(getter.longGetter != null
+                    ? longComparison(type, targetNode, getter, ((Number)value).longValue())
+                    : doubleComparison(type, targetNode, getter, ((Number)value).doubleValue()));
+        });
+    }
+
+    private static BooleanNode longComparison(Expression.Type type, Node target, Getter getter, long value) {
+        ToLongFunction<Object> longGetter = getter.longGetter;
+        switch (type) {
+            case Equals:
+                return arg -> {
+                    Object obj = target.eval(arg);
+                    return getter.isApplicable(obj) && longGetter.applyAsLong(obj) == value;
+                };
+            case GreaterThan:
+                return arg -> {
+                    Object obj = target.eval(arg);
+                    return getter.isApplicable(obj) && longGetter.applyAsLong(obj) > value;
+                };
+            case LessThan:
+                return arg -> {
+                    Object obj = target.eval(arg);
+                    return getter.isApplicable(obj) && longGetter.applyAsLong(obj) < value;
+                };
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    // Double.compare() is consistent with Double.equals() and Double.compareTo(), used by the interpreter
+    private static BooleanNode doubleComparison(Expression.Type type, Node target, Getter getter, double value) {
+        ToDoubleFunction<Object> doubleGetter = getter.doubleGetter;
+        switch (type) {
+            case Equals:
+                return arg -> {
+                    Object obj = target.eval(arg);
+                    return getter.isApplicable(obj) && Double.compare(doubleGetter.applyAsDouble(obj), value) == 0;
+                };
+            case GreaterThan:
+                return arg -> {
+                    Object obj = target.eval(arg);
+                    return getter.isApplicable(obj) && Double.compare(doubleGetter.applyAsDouble(obj), value) > 0;
+                };
+            case LessThan:
+                return arg -> {
+                    Object obj = target.eval(arg);
+                    return getter.isApplicable(obj) && Double.compare(doubleGetter.applyAsDouble(obj), value) < 0;
+                };
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static BinaryTest genericComparison(Expression.Type type) {
+        switch (type) {
+            case Equals:
+                return Objects::equals;
+            case GreaterThan:
+                return (a, b) -> a != null && b != null && ((Comparable)a).compareTo(b) > 0;
+            case LessThan:
+                return (a, b) -> a != null && b != null && ((Comparable)a).compareTo(b) < 0;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private static Expression.Type mirrored(Expression.Type type) {
+        switch (type) {
+            case GreaterThan:
+                return Expression.Type.LessThan;
+            case LessThan:
+                return Expression.Type.GreaterThan;
+            default:
+                return type;
+        }
+    }
+
+    private static BooleanNode asBoolean(Node node) {
+        return node instanceof BooleanNode
+                ? (BooleanNode)node
+                : arg -> (Boolean)node.eval(arg);
+    }
+
+    private static Getter getterOf(PropertyMeta<?, ?> propertyMeta) {
+        return getters.computeIfAbsent(propertyMeta, Getter::create);
+    }
+
+    private interface Node {
+        Object eval(Object arg);
+    }
+
+    private interface BooleanNode extends Node {
+        boolean test(Object arg);
+
+        @Override
+        default Object eval(Object arg) {
+            return test(arg);
+        }
+    }
+
+    private interface Factory {
+        Node create(Object[] values);
+    }
+
+    private interface PrimitiveComparisonFactory {
+        Optional<Node> create(Object[] values);
+    }
+
+    private interface BinaryTest {
+        boolean test(Object left, Object right);
+    }
+
+    private static class Getter {
+        private final Class<?> declaringClass;
+        private final Class<?> valueClass;
+        private final Function<Object, Object> getter;
+        private final ToLongFunction<Object> longGetter;
+        private final ToDoubleFunction<Object> doubleGetter;
+
+        private Getter(Class<?> declaringClass, Class<?> valueClass, Function<Object, Object> getter, ToLongFunction<Object> longGetter, ToDoubleFunction<Object> doubleGetter) {
+            this.declaringClass = declaringClass;
+            this.valueClass = valueClass;
+            this.getter = getter;
+            this.longGetter = longGetter;
+            this.doubleGetter = doubleGetter;
+        }
+
+        private boolean isApplicable(Object target) {
+            return target != null && declaringClass.isInstance(target);
+        }
+
+        private Object get(Object target) {
+            return isApplicable(target) ? getter.apply(target) : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Getter create(PropertyMeta<?, ?> propertyMeta) {
+            Class<?> declaringClass = propertyMeta.declaringType().asClass();
+            Function<Object, Object> fallbackGetter = obj -> ((PropertyMeta<Object, ?>)propertyMeta).getValue(obj);
+            Method method = accessorOf(propertyMeta).orElse(null);
+            if (method == null) {
+                return new Getter(declaringClass, null, fallbackGetter, null, null);
+            }
+
+            Class<?> returnType = method.getReturnType();
+            Function<Object, Object> getter = tryGenerate(Function.class, "apply", Object.class, method, Primitives.wrap(returnType))
+                    .orElse(fallbackGetter);
+            ToLongFunction<Object> longGetter = null;
+            ToDoubleFunction<Object> doubleGetter = null;
+            if (returnType == long.class || returnType == int.class || returnType == short.class || returnType == byte.class) {
+                longGetter = tryGenerate(ToLongFunction.class, "applyAsLong", long.class, method, long.class)
+                        .orElse(obj -> ((Number)getter.apply(obj)).longValue());
+            } else if (returnType == double.class || returnType == float.class) {
+                doubleGetter = tryGenerate(ToDoubleFunction.class, "applyAsDouble", double.class, method, double.class)
+                        .orElse(obj -> ((Number)getter.apply(obj)).doubleValue());
+            }
+            return new Getter(declaringClass, Primitives.wrap(returnType), getter, longGetter, doubleGetter);
+        }
+
+        private static Optional<Method> accessorOf(PropertyMeta<?, ?> propertyMeta) {
+            try {
+                Method method = propertyMeta.declaringType().asClass().getMethod(propertyMeta.name());
+                return Optional.of(method)
+                        .filter(m -> Primitives.wrap(m.getReturnType()).equals(Primitives.wrap(propertyMeta.type().getRawType())));
+            } catch (NoSuchMethodException e) {
+                return Optional.empty();
+            }
+        }
+
+        // The generated class invokes the accessor through its declaring class, so it has to be accessible
+        @SuppressWarnings("unchecked")
+        private static <F> Optional<F> tryGenerate(Class<? super F> functionalInterface, String methodName, Class<?> samReturnType, Method method, Class<?> instantiatedReturnType) {
+            if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                return Optional.empty();
+            }
+            try {
+                MethodHandle handle = lookup.unreflect(method);
+                CallSite callSite = LambdaMetafactory.metafactory(
+                        lookup,
+                        methodName,
+                        MethodType.methodType(functionalInterface),
+                        MethodType.methodType(samReturnType, Object.class),
+                        handle,
+                        MethodType.methodType(instantiatedReturnType, method.getDeclaringClass()));
+                return Optional.of((F)callSite.getTarget().invoke());
+            } catch (Throwable e) {
+                return Optional.empty();
+            }
+        }
+    }
+}
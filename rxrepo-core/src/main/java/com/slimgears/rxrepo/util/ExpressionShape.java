@@ -0,0 +1,89 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.internal.ObjectConstantExpression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Expression with every non-null constant replaced by a {@link Slot}, together with the replaced values.
+ * Expressions which only differ by constants have equal shapes.
+ */
+class ExpressionShape<S, T> {
+    private final ObjectExpression<S, T> expression;
+    private final Object[] values;
+    private final boolean parameterizable;
+
+    private ExpressionShape(ObjectExpression<S, T> expression, Object[] values, boolean parameterizable) {
+        this.expression = expression;
+        this.values = values;
+        this.parameterizable = parameterizable;
+    }
+
+    ObjectExpression<S, T> expression() {
+        return expression;
+    }
+
+    Object[] values() {
+        return values;
+    }
+
+    // Collection operations are evaluated against collection elements, so they cannot be evaluated with bound values
+    boolean isParameterizable() {
+        return parameterizable;
+    }
+
+    static <S, T> ExpressionShape<S, T> of(ObjectExpression<S, T> expression) {
+        List<Object> values = new ArrayList<>();
+        boolean[] parameterizable = {true};
+        ObjectExpression<S, T> shape = expression.reflect().convert(new ObjectExpression.Converter() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <_S, _T> ObjectExpression<_S, _T> convert(ObjectExpression<_S, _T> exp) {
+                if (exp.type().operationType() == Expression.OperationType.Collection) {
+                    parameterizable[0] = false;
+                }
+                if (exp.type().operationType() != Expression.OperationType.Constant) {
+                    return exp;
+                }
+                ConstantExpression<_S, _T> constant = (ConstantExpression<_S, _T>)exp;
+                if (constant.value() == null) {
+                    return exp;
+                }
+                values.add(constant.value());
+                return ObjectConstantExpression.create(constant.type(), (_T)new Slot(values.size() - 1));
+            }
+        });
+        return new ExpressionShape<>(shape, values.toArray(), parameterizable[0]);
+    }
+
+    static class Slot {
+        private final int index;
+
+        private Slot(int index) {
+            this.index = index;
+        }
+
+        int index() {
+            return index;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Slot && ((Slot)obj).index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return "$" + index;
+        }
+    }
+}
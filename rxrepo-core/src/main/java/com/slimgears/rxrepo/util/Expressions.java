@@ -13,6 +13,7 @@ import com.slimgears.util.stream.Optionals;
 
 import java.util.*;
 import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
@@ -21,16 +22,86 @@ import java.util.stream.Stream;
 @SuppressWarnings("rawtypes")
 public class Expressions {
     private final static ThreadLocal<Long> currentSequenceNumber = ThreadLocal.withInitial(() -> 0L);
+    private static volatile boolean compilerEnabled = Boolean.getBoolean("rxrepo.expressions.compiler");
 
+    /**
+     * @deprecated sequence number is captured when expression is compiled. Use {@link #compileWithContext(ObjectExpression)}
+     * or {@link #compilePredicateWithContext(ObjectExpression)} and pass sequence number with {@link EvaluationContext}
+     */
+    @Deprecated
     public static ThreadLocal<Long> sequenceNumber() {
         return currentSequenceNumber;
     }
 
+    public static void enableCompiler(boolean enabled) {
+        compilerEnabled = enabled;
+    }
+
     @SuppressWarnings("unchecked")
     public static <S, T> Function<S, T> compile(ObjectExpression<S, T> exp) {
-        return exp != null
-                ? (Function<S, T>)new InternalVisitor().visit(exp, null)
-                : (Function<S, T>)Function.identity();
+        if (exp == null) {
+            return (Function<S, T>)Function.identity();
+        }
+        return compilerEnabled
+                ? ExpressionCompiler.tryCompile(exp).orElseGet(() -> interpret(exp))
+                : interpret(exp);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, T> Function<S, T> interpret(ObjectExpression<S, T> exp) {
+        return (Function<S, T>)new InternalVisitor().visit(exp, null);
+    }
+
+    public static <S, T> BiFunction<S, EvaluationContext, T> compileWithContext(ObjectExpression<S, T> exp) {
+        return ExpressionCache.compileWithContext(exp);
+    }
+
+    public static <S> BiPredicate<S, EvaluationContext> compilePredicateWithContext(ObjectExpression<S, Boolean> predicateExp) {
+        return ExpressionCache.compilePredicateWithContext(predicateExp);
+    }
+
+    // Context of expressions compiled without explicit context: sequence number is taken at compilation time
+    static EvaluationContext compilationContext() {
+        return EvaluationContext.ofSequenceNumber(currentSequenceNumber.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    static <S, T> Function<Object[], BiFunction<S, EvaluationContext, T>> compileTemplate(ExpressionShape<S, T> shape) {
+        if (compilerEnabled) {
+            Optional<Function<Object[], Function<S, T>>> template = ExpressionCompiler.tryCreateTemplate(shape.expression());
+            if (template.isPresent()) {
+                return values -> {
+                    Function<S, T> func = template.get().apply(values);
+                    return (arg, context) -> func.apply(arg);
+                };
+            }
+        }
+        TemplateVisitor visitor = new TemplateVisitor();
+        Function<Object[], Function> template = visitor.visit(shape.expression(), null);
+        if (!visitor.usesContext) {
+            return values -> {
+                Function func = template.apply(values);
+                return (arg, context) -> (T)func.apply(arg);
+            };
+        }
+        return values -> {
+            Function func = template.apply(values);
+            return (arg, context) -> (T)func.apply(new ContextArgument(arg, context));
+        };
+    }
+
+    static <S> Function<Object[], BiPredicate<S, EvaluationContext>> compilePredicateTemplate(ExpressionShape<S, Boolean> shape) {
+        if (compilerEnabled) {
+            Optional<Function<Object[], Predicate<S>>> template = ExpressionCompiler.tryCreatePredicateTemplate(shape.expression());
+            if (template.isPresent()) {
+                return values -> {
+                    Predicate<S> predicate = template.get().apply(values);
+                    return (arg, context) -> predicate.test(arg);
+                };
+            }
+        }
+        Function<Object[], BiFunction<S, EvaluationContext, Boolean>> template = compileTemplate(shape);
+        return values -> template.apply(values)::apply;
     }
 
     public static <S, V extends Comparable<V>> Comparator<S> compileComparator(PropertyExpression<S, ?, V> property, boolean ascending) {
@@ -52,9 +123,12 @@ public class Expressions {
     }
 
     public static <S> Predicate<S> compilePredicate(ObjectExpression<S, Boolean> predicateExp) {
-        return predicateExp != null
-                ? compile(predicateExp)::apply
-                : e -> true;
+        if (predicateExp == null) {
+            return e -> true;
+        }
+        return compilerEnabled
+                ? ExpressionCompiler.tryCompilePredicate(predicateExp).orElseGet(() -> interpret(predicateExp)::apply)
+                : interpret(predicateExp)::apply;
     }
 
     public static <S> io.reactivex.functions.Predicate<S> compileRxPredicate(ObjectExpression<S, Boolean> predicateExp) {
@@ -173,7 +247,7 @@ public class Expressions {
                 .put(Expression.Type.ValueIn, Expressions.fromBinary((Object obj, Collection<Object> collection) -> obj != null && collection != null && collection.contains(obj)))
                 .put(Expression.Type.IsNull, Expressions.fromUnary(Objects::isNull))
                 .put(Expression.Type.SequenceNumber, funcs -> {
-                    long seqNum = sequenceNumber().get();
+                    long seqNum = currentSequenceNumber.get();
                     return Expressions.fromUnary(obj -> seqNum).apply(funcs);
                 })
                 .build();
@@ -185,13 +259,17 @@ public class Expressions {
                 .put(Expression.OperationType.Composition, composition())
                 .build();
 
-        private static Function reduce(Expression.Type type, Function... functions) {
+        private static Function<Function[], Function> reducerOf(Expression.Type type) {
             return Optionals.or(
-                    () -> Optional.ofNullable(expressionTypeReducersMap.get(type)).map(r -> r.apply(functions)),
-                    () -> Optional.ofNullable(operationTypeReducersMap.get(type.operationType())).map(r -> r.apply(functions)))
+                    () -> Optional.ofNullable(expressionTypeReducersMap.get(type)),
+                    () -> Optional.ofNullable(operationTypeReducersMap.get(type.operationType())))
                     .orElseThrow(() -> new IllegalArgumentException("Not supported expression type: " + type));
         }
 
+        private static Function reduce(Expression.Type type, Function... functions) {
+            return reducerOf(type).apply(functions);
+        }
+
         @Override
         protected Function reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, Function first, Function second) {
             return reduce(type, first, second);
@@ -227,6 +305,80 @@ public class Expressions {
         }
     }
 
+    private static class ContextArgument {
+        private final Object argument;
+        private final EvaluationContext context;
+
+        private ContextArgument(Object argument, EvaluationContext context) {
+            this.argument = argument;
+            this.context = context;
+        }
+    }
+
+    // Builds template of expression shape: values of constant slots are bound once, when template is applied.
+    // Evaluated object is wrapped together with evaluation context only if expression refers to sequence number
+    @SuppressWarnings("unchecked")
+    private static class TemplateVisitor extends ExpressionVisitor<Void, Function<Object[], Function>> {
+        private final InternalVisitor interpreter = new InternalVisitor();
+        private boolean usesContext;
+
+        @Override
+        protected Function<Object[], Function> reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, Function<Object[], Function> first, Function<Object[], Function> second) {
+            Function<Function[], Function> reducer = InternalVisitor.reducerOf(type);
+            return values -> reducer.apply(new Function[]{first.apply(values), second.apply(values)});
+        }
+
+        @Override
+        protected Function<Object[], Function> reduceUnary(ObjectExpression<?, ?> expression, Expression.Type type, Function<Object[], Function> first) {
+            if (type == Expression.Type.SequenceNumber) {
+                usesContext = true;
+                Function sequenceNumber = a -> ((ContextArgument)a).context.sequenceNumber();
+                return values -> sequenceNumber;
+            }
+            Function<Function[], Function> reducer = InternalVisitor.reducerOf(type);
+            return values -> reducer.apply(new Function[]{first.apply(values)});
+        }
+
+        @Override
+        protected <T, V> Function<Object[], Function> visitProperty(PropertyMeta<T, V> propertyMeta, Void arg) {
+            Function getter = interpreter.visitProperty(propertyMeta, arg);
+            return values -> getter;
+        }
+
+        @Override
+        protected <V> Function<Object[], Function> visitConstant(Expression.Type type, V value, Void arg) {
+            if (!(value instanceof ExpressionShape.Slot)) {
+                Function constant = interpreter.visitConstant(type, value, arg);
+                return values -> constant;
+            }
+            int index = ((ExpressionShape.Slot)value).index();
+            return values -> {
+                Object boundValue = values[index];
+                return a -> boundValue;
+            };
+        }
+
+        @Override
+        protected <T> Function<Object[], Function> visitArgument(TypeToken<T> argType, Void arg) {
+            Function argument = a -> a instanceof ContextArgument ? ((ContextArgument)a).argument : a;
+            return values -> argument;
+        }
+
+        // Composed expression is evaluated against result of its source, with the same context
+        @Override
+        protected <S, T, R> Function<Object[], Function> visitComposition(ComposedExpression<S, T, R> expression, Void arg) {
+            Function<Object[], Function> sourceTemplate = visit(expression.source(), arg);
+            Function<Object[], Function> composedTemplate = visit(expression.expression(), arg);
+            return values -> {
+                Function source = sourceTemplate.apply(values);
+                Function composed = composedTemplate.apply(values);
+                return a -> a instanceof ContextArgument
+                        ? composed.apply(new ContextArgument(source.apply(a), ((ContextArgument)a).context))
+                        : composed.apply(source.apply(a));
+            };
+        }
+    }
+
     private static <T> Function<Collection<T>, T> min() {
         return c -> Optional
                 .ofNullable(c)
@@ -24,21 +24,19 @@ public class Queries {
     private final static Logger log = LoggerFactory.getLogger(Queries.class);
 
     public static <T> Comparator<T> toComparator(HasSortingInfo<T> sortingInfo) {
-        return sortingInfo.sorting()
-                .stream()
-                .map(Queries::toComparator)
-                .reduce(Comparator::thenComparing)
+        return Optional
+                .ofNullable(ExpressionCache.compileComparator(sortingInfo.sorting()))
                 .orElse(Comparator.comparing(Object::hashCode));
     }
 
     public static <T> Predicate<T> toPredicate(HasPredicate<T> predicate) {
-        return Expressions.compilePredicate(predicate.predicate());
+        return ExpressionCache.compilePredicate(predicate.predicate());
     }
 
     public static <T> ObservableTransformer<T, T> applyFilter(HasPredicate<T> hasPredicate) {
         io.reactivex.functions.Predicate<T> predicate = Optional
                 .ofNullable(hasPredicate.predicate())
-                .map(Expressions::compileRxPredicate)
+                .map(ExpressionCache::compileRxPredicate)
                 .orElse(t -> true);
 
         return source -> source.filter(predicate);
@@ -48,7 +46,8 @@ public class Queries {
         //noinspection unchecked
         io.reactivex.functions.Function<T, R> mapper = Optional
                 .ofNullable(hasMapping.mapping())
-                .map(Expressions::compileRx)
+                .map(ExpressionCache::compile)
+                .<io.reactivex.functions.Function<T, R>>map(mapping -> mapping::apply)
                 .orElse(t -> (R)t);
         return source -> source.map(mapper);
     }
@@ -86,6 +85,10 @@ public class Queries {
                 .compose(applyPagination(query));
     }
 
+    // Live notifications, received before the query completes, are buffered and only those with sequence number
+    // above the highest one seen by the query are delivered. The handoff is exact as long as sequence numbers
+    // follow commit order. Otherwise a change, which got lower sequence number but was committed concurrently
+    // with the query (so the query did not see it), is skipped if its notification arrives before the query completes.
     public static <T> Observable<Notification<T>> queryAndObserve(Observable<Notification<T>> query, Observable<Notification<T>> liveQuery) {
         AtomicReference<Long> lastSeqNum = new AtomicReference<>();
         MaybeSubject<Long> queryFinished = MaybeSubject.create();
@@ -110,13 +113,6 @@ public class Queries {
                         .concatMapEager(Functions.identity());
     }
 
-    private static <T, V extends Comparable<V>> Comparator<T> toComparator(SortingInfo<T, ?, V> sortingInfo) {
-        Comparator<T> comparator = Comparator.comparing(Expressions.compile(sortingInfo.property()));
-        return sortingInfo.ascending()
-                ? comparator
-                : comparator.reversed();
-    }
-
     private static <T> ObservableTransformer<Notification<T>, Notification<T>> bufferUntil(Maybe<Long> releaseBufferTrigger) {
         return src -> Observable.create(emitter -> {
             List<Notification<T>> buffer = new ArrayList<>();
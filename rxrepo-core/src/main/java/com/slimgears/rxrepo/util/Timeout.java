@@ -32,6 +32,12 @@ public class Timeout {
                 .onErrorResumeNext(addCauseIfTimeout(timeout, Observable::error));
     }
 
+    public static <T> FlowableTransformer<T, T> forFlowable(Duration timeout) {
+        return src -> src
+                .timeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .onErrorResumeNext(addCauseIfTimeout(timeout, Flowable::error));
+    }
+
     public static <T> SingleTransformer<T, T> forSingle(Duration timeout) {
         return src -> src
                 .timeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
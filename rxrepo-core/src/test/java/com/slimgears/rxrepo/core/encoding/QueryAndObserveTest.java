@@ -0,0 +1,85 @@
+package com.slimgears.rxrepo.core.encoding;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.util.Queries;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class QueryAndObserveTest {
+    private PublishSubject<Notification<String>> query;
+    private PublishSubject<Notification<String>> liveQuery;
+    private TestObserver<Notification<String>> observer;
+
+    @Before
+    public void setUp() {
+        query = PublishSubject.create();
+        liveQuery = PublishSubject.create();
+        observer = Queries.queryAndObserve(query, liveQuery).test();
+    }
+
+    @Test
+    public void testChangesReflectedByQueryAreNotRedelivered() {
+        liveQuery.onNext(Notification.ofCreated("a", 1L));
+        liveQuery.onNext(Notification.ofModified("a", "a1", 2L));
+        query.onNext(Notification.ofCreated("a1", 2L));
+        query.onComplete();
+        liveQuery.onNext(Notification.ofModified("a1", "a2", 3L));
+
+        Assert.assertEquals(
+                Arrays.asList("a1", null, "a2"),
+                newValues());
+    }
+
+    @Test
+    public void testChangesAfterQueryAreDelivered() {
+        query.onNext(Notification.ofCreated("a", 1L));
+        liveQuery.onNext(Notification.ofCreated("b", 2L));
+        query.onComplete();
+        liveQuery.onNext(Notification.ofCreated("c", 3L));
+
+        Assert.assertEquals(
+                Arrays.asList("a", null, "b", "c"),
+                newValues());
+    }
+
+    // Handoff is by sequence number only: a change, which got lower sequence number than the last change
+    // seen by the query, but was committed concurrently with the query (so query did not see it either),
+    // is skipped if its notification arrives before the query completes
+    @Test
+    public void testChangeCommittedConcurrentlyWithLowerSequenceNumberIsSkipped() {
+        liveQuery.onNext(Notification.ofCreated("late", 1L));
+        query.onNext(Notification.ofCreated("a", 2L));
+        query.onComplete();
+        liveQuery.onNext(Notification.ofCreated("b", 3L));
+
+        Assert.assertEquals(
+                Arrays.asList("a", null, "b"),
+                newValues());
+    }
+
+    // Once the query completes, notifications are delivered as they arrive
+    @Test
+    public void testChangeWithLowerSequenceNumberAfterQueryIsDelivered() {
+        query.onNext(Notification.ofCreated("a", 2L));
+        query.onComplete();
+        liveQuery.onNext(Notification.ofCreated("late", 1L));
+
+        Assert.assertEquals(
+                Arrays.asList("a", null, "late"),
+                newValues());
+    }
+
+    private List<String> newValues() {
+        return observer.values()
+                .stream()
+                .map(n -> n.isEmpty() ? null : n.newValue())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,110 @@
+package com.slimgears.rxrepo.core.encoding;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.decorator.InterceptingQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.MetricsQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.OperationTimeoutQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.QueryPublisher;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+public class QueryFlowableDecoratorsTest {
+    private final AtomicLong requested = new AtomicLong();
+    private QueryProvider queryProviderMock;
+
+    @Before
+    public void setUp() {
+        queryProviderMock = mock(QueryProvider.class);
+        when(queryProviderMock.<Object, Object, Integer>queryFlowable(any(), anyInt())).thenReturn(Flowable
+                .range(0, 1000)
+                .map(Notification::fromNewValue)
+                .doOnRequest(requested::addAndGet));
+    }
+
+    @Test
+    public void testTimeoutDecoratorHonorsBackpressure() {
+        assertBackpressure(OperationTimeoutQueryProviderDecorator
+                .create(Duration.ofSeconds(10), Duration.ofSeconds(10))
+                .apply(queryProviderMock));
+    }
+
+    @Test
+    public void testMetricsDecoratorHonorsBackpressure() {
+        assertBackpressure(MetricsQueryProviderDecorator.create().apply(queryProviderMock));
+    }
+
+    @Test
+    public void testInterceptingDecoratorHonorsBackpressure() {
+        InterceptingQueryProviderDecorator decorator = new InterceptingQueryProviderDecorator();
+        QueryProvider provider = decorator.apply(queryProviderMock);
+        assertBackpressure(provider);
+
+        AtomicInteger flowableQueries = new AtomicInteger();
+        decorator.subscribe(new QueryPublisher.OnQueryListener() {
+            @Override
+            public <K, S, T> Observable<Notification<T>> onQuery(QueryInfo<K, S, T> queryInfo, Observable<Notification<T>> queryResult) {
+                return queryResult;
+            }
+
+            @Override
+            public <K, S, T> Flowable<Notification<T>> onQueryFlowable(QueryInfo<K, S, T> queryInfo, Flowable<Notification<T>> queryResult) {
+                flowableQueries.incrementAndGet();
+                return queryResult;
+            }
+        });
+        requested.set(0);
+        assertBackpressure(provider);
+        Assert.assertEquals(1, flowableQueries.get());
+    }
+
+    @Test
+    public void testInterceptingDecoratorNotifiesObservableListeners() {
+        InterceptingQueryProviderDecorator decorator = new InterceptingQueryProviderDecorator();
+        AtomicInteger queries = new AtomicInteger();
+        decorator.subscribe(new QueryPublisher.OnQueryListener() {
+            @Override
+            public <K, S, T> Observable<Notification<T>> onQuery(QueryInfo<K, S, T> queryInfo, Observable<Notification<T>> queryResult) {
+                queries.incrementAndGet();
+                return queryResult;
+            }
+        });
+        decorator.apply(queryProviderMock)
+                .queryFlowable(mock(QueryInfo.class), 10)
+                .test()
+                .assertValueCount(1000)
+                .assertComplete();
+        Assert.assertEquals(1, queries.get());
+    }
+
+    private void assertBackpressure(QueryProvider provider) {
+        TestSubscriber<Notification<Object>> subscriber = provider
+                .queryFlowable(mock(QueryInfo.class), 10)
+                .test(0);
+
+        subscriber.assertNoValues();
+        Assert.assertEquals(0, requested.get());
+
+        subscriber.request(5);
+        subscriber.assertValueCount(5).assertNotComplete();
+        Assert.assertTrue("Requested: " + requested.get(), requested.get() < 1000);
+
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.assertValueCount(1000).assertComplete();
+    }
+}
@@ -2,11 +2,11 @@ package com.slimgears.rxrepo.mem;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.slimgears.rxrepo.encoding.MetaObjectResolver;
 import com.slimgears.rxrepo.expressions.*;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.*;
-import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.EvaluationContext;
+import com.slimgears.rxrepo.util.ExpressionCache;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.util.autovalue.annotations.*;
@@ -14,7 +14,6 @@ import com.slimgears.util.stream.Lazy;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Observable;
 import io.reactivex.*;
-import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
 import io.reactivex.functions.Predicate;
 import io.reactivex.schedulers.Schedulers;
@@ -27,33 +26,39 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
     private final static Logger log = LoggerFactory.getLogger(MemoryEntityQueryProvider.class);
     private final AtomicLong sequenceNumber;
     private final MetaClassWithKey<K, S> metaClass;
-    private final MetaObjectResolver objectResolver;
+    private final MemoryQueryProvider objectResolver;
     private final Map<K, ObjectReference<S>> objects = new ConcurrentHashMap<>();
-    private final Subject<Notification<S>> notificationSubject = PublishSubject.create();
+    private final static int maxUpdateAttempts = 16;
+    private final Subject<Notification<S>> notificationSubject = PublishSubject.<Notification<S>>create().toSerialized();
+    private final Set<PendingNotification<S>> pendingNotifications = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger publishingWip = new AtomicInteger();
     private final Lazy<List<PropertyMeta<S, ?>>> referenceProperties;
+    private final Map<PropertyMeta<S, ?>, MemoryIndex<K, S, ?>> indexes;
 
-    private static class ObjectReference<S> {
+    private static class ObjectReference<S> implements EvaluationContext {
         private final AtomicReference<S> reference = new AtomicReference<>();
         private final AtomicLong modificationSequenceNum;
-        private final AtomicLong sequenceNum;
 
-        private ObjectReference(AtomicLong seqNum) {
-            this.sequenceNum = seqNum;
-            this.modificationSequenceNum = new AtomicLong(seqNum.get());
+        private ObjectReference(long seqNum) {
+            this.modificationSequenceNum = new AtomicLong(seqNum);
         }
 
-        public boolean compareAndSet(S expectedObj, S newObj) {
+        public boolean compareAndSet(S expectedObj, S newObj, long seqNum) {
             if (reference.compareAndSet(expectedObj, newObj)) {
-                modificationSequenceNum.set(sequenceNum.get());
+                modificationSequenceNum.set(seqNum);
                 return true;
             }
             return false;
@@ -62,10 +67,28 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
         public S get() {
             return reference.get();
         }
+
+        @Override
+        public long sequenceNumber() {
+            return modificationSequenceNum.get();
+        }
+    }
+
+    // Pending notification is registered before its sequence number is reserved, so the number of a pending
+    // notification, which has no number yet, will be greater than any number reserved so far
+    private static class PendingNotification<S> {
+        private volatile long sequenceNumber;
+        private volatile boolean completed;
+        private Notification<S> notification;
+
+        private void complete(Notification<S> notification) {
+            this.notification = notification;
+            this.completed = true;
+        }
     }
 
     private MemoryEntityQueryProvider(MetaClassWithKey<K, S> metaClass,
-                                      MetaObjectResolver objectResolver,
+                                      MemoryQueryProvider objectResolver,
                                       AtomicLong sequenceNumber) {
         this.sequenceNumber = sequenceNumber;
         this.metaClass = metaClass;
@@ -74,11 +97,12 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
                 .fromIterable(metaClass.properties())
                 .filter(PropertyMetas::isReference)
                 .collect(ImmutableList.toImmutableList()));
+        this.indexes = MemoryIndex.forMetaClass(metaClass);
     }
 
     static <K, S> MemoryEntityQueryProvider<K, S> create(
             MetaClassWithKey<K, S> metaClass,
-            MetaObjectResolver objectResolver,
+            MemoryQueryProvider objectResolver,
             AtomicLong sequenceNumber) {
         return new MemoryEntityQueryProvider<>(metaClass, objectResolver, sequenceNumber);
     }
@@ -88,48 +112,53 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
         return metaClass;
     }
 
+    // Updates are optimistic: the updater is applied to the current value, which is then replaced only if
+    // it was not modified concurrently. Otherwise the update is retried with the new value.
     @Override
     public Maybe<Supplier<S>> insertOrUpdate(K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
-        return Maybe.defer(() -> {
-            synchronized (metaClass) {
-                long seqNum = sequenceNumber.incrementAndGet();
-                Supplier<ObjectReference<S>> referenceResolver = () -> objects.computeIfAbsent(key, k -> new ObjectReference<>(sequenceNumber));
-                S oldValue = referenceResolver.get().get();
-                return entityUpdater
-                        .apply(Optional.ofNullable(referenceResolver.get().get()).map(Maybe::just).orElseGet(Maybe::empty))
-                        .flatMap(e -> referenceResolver.get().compareAndSet(oldValue, e)
-                                ? (e != null ? Maybe.just(e): Maybe.empty())
-                                : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")))
-                        .doOnSuccess(e -> {
-                            if (!Objects.equals(oldValue, e)) {
-                                Notification<S> notification = Notification.ofModified(oldValue, e, seqNum);
-                                notificationSubject.onNext(notification);
-                                log.debug("Published notification: {}", notification);
-                            }
-                        })
-                        .map(e -> () -> e);
-            }
-        });
+        return Maybe
+                .defer(() -> {
+                    ObjectReference<S> reference = objects.computeIfAbsent(key, k -> new ObjectReference<>(sequenceNumber.get()));
+                    S oldValue = reference.get();
+                    return entityUpdater
+                            .apply(Optional.ofNullable(oldValue).map(Maybe::just).orElseGet(Maybe::empty))
+                            .flatMap(e -> compareAndSet(key, reference, oldValue, e)
+                                    ? Maybe.just(e)
+                                    : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")));
+                })
+                .retry(maxUpdateAttempts - 1, e -> e instanceof ConcurrentModificationException)
+                .map(e -> () -> e);
     }
 
-    @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
     @Override
     public <T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
+        return queryFlowable(query, Flowable.bufferSize()).toObservable();
+    }
+
+    @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
+    @Override
+    public <T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
         log.trace("Querying {}", query);
-        Predicate<S> predicate = Expressions.compileRxPredicate(query.predicate());
-        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
-        return Observable.fromIterable(objects.values())
-                .flatMapMaybe(ref -> Maybe.fromCallable(ref::get)
-                        .doOnSuccess(ob -> Expressions.sequenceNumber().set(ref.modificationSequenceNum.get()))
-                        .filter(predicate)
+        BiPredicate<S, EvaluationContext> predicate = ExpressionCache.compilePredicateWithContext(query.predicate());
+        BiFunction<S, EvaluationContext, T> mapper = ExpressionCache.compileWithContext(query.mapping());
+        boolean sortedByIndex = !indexedKeys(query.predicate()).isPresent() && orderedKeys(query.sorting()).isPresent();
+        return Flowable.defer(() -> Flowable.fromIterable(candidates(sortedByIndex
+                        ? orderedKeys(query.sorting())
+                        : indexedKeys(query.predicate()))))
+                .concatMapMaybe(ref -> Maybe.fromCallable(ref::get)
+                        .filter(o -> predicate.test(o, ref))
                         .map(o -> Notification.ofCreated(o, ref.modificationSequenceNum.get())))
-                .compose(ob -> Optional.ofNullable(query.sorting()).map(this::toNotificationComparator).map(ob::sorted).orElse(ob))
+                .compose(ob -> Optional.ofNullable(query.sorting())
+                        .filter(s -> !sortedByIndex)
+                        .map(this::toNotificationComparator)
+                        .map(ob::sorted)
+                        .orElse(ob))
                 .compose(ob -> Optional.ofNullable(query.skip()).map(ob::skip).orElse(ob))
                 .compose(ob -> Optional.ofNullable(query.limit()).map(ob::take).orElse(ob))
                 .doOnNext(val -> log.trace("Object without references: {}", val))
-                .flatMapSingle(this::applyReferences)
+                .map(this::applyReferences)
                 .doOnNext(val -> log.trace("Object with references: {}", val))
-                .map(n -> n.map(mapper))
+                .map(n -> n.map(o -> mapper.apply(o, EvaluationContext.ofSequenceNumber(n.sequenceNumber()))))
                 .doOnNext(val -> log.trace("Object after mapping: {}", val))
                 .compose(ob -> Optional
                         .ofNullable(query.distinct())
@@ -143,7 +172,228 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
                         .map(p -> ob.map(n -> n.map(maskProperties(p))))
                         .orElse(ob))
                 .doOnNext(val -> log.trace("Object after masking properties: {}", val))
-                .doOnNext(val -> log.trace("Emitting object: {}", val));
+                .doOnNext(val -> log.trace("Emitting object: {}", val))
+                .rebatchRequests(Math.max(1, fetchSize));
+    }
+
+    private Iterable<ObjectReference<S>> candidates(Optional<Stream<K>> keys) {
+        return keys
+                .<Iterable<ObjectReference<S>>>map(k -> k
+                        .map(objects::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()))
+                .orElseGet(objects::values);
+    }
+
+    @SuppressWarnings("unchecked")
+    Optional<Stream<K>> indexedKeys(ObjectExpression<S, Boolean> predicate) {
+        if (predicate == null) {
+            return Optional.empty();
+        }
+        switch (predicate.type()) {
+            case And:
+                BinaryOperationExpression<S, Boolean, Boolean, Boolean> and = (BinaryOperationExpression<S, Boolean, Boolean, Boolean>)predicate;
+                return indexedKeys(and.left()).or(() -> indexedKeys(and.right()));
+            case Equals:
+            case ValueIn:
+            case GreaterThan:
+            case LessThan:
+                return indexedKeys((BinaryOperationExpression<S, ?, ?, Boolean>)predicate);
+            default:
+                return Optional.empty();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Stream<K>> indexedKeys(BinaryOperationExpression<S, ?, ?, Boolean> condition) {
+        if (!(condition.left() instanceof PropertyExpression) || !(condition.right() instanceof ConstantExpression)) {
+            return Optional.empty();
+        }
+        PropertyExpression<S, ?, ?> property = (PropertyExpression<S, ?, ?>)condition.left();
+        if (property.target().type().operationType() != Expression.OperationType.Argument) {
+            return Optional.empty();
+        }
+        Object value = ((ConstantExpression<S, ?>)condition.right()).value();
+        if (value == null) {
+            return Optional.empty();
+        }
+        if (metaClass.keyProperty().equals(property.property())) {
+            switch (condition.type()) {
+                case Equals:
+                    return Optional.of(Stream.of((K)value));
+                case ValueIn:
+                    return Optional.of(((Collection<K>)value).stream().distinct());
+                default:
+                    return Optional.empty();
+            }
+        }
+        return Optional.ofNullable(indexes.get(property.property()))
+                .flatMap(index -> index.lookup(condition.type(), value));
+    }
+
+    Optional<Stream<K>> orderedKeys(List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting) {
+        if (sorting == null || sorting.size() != 1) {
+            return Optional.empty();
+        }
+        SortingInfo<S, ?, ? extends Comparable<?>> sortingInfo = sorting.get(0);
+        if (sortingInfo.property().target().type().operationType() != Expression.OperationType.Argument) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(indexes.get(sortingInfo.property().property()))
+                .filter(MemoryIndex::isSorted)
+                .map(index -> index.ordered(sortingInfo.ascending()));
+    }
+
+    // Writers of the same key are serialized by the reference monitor, so indexes of a key follow the order
+    // of its modifications. A reference, which was removed, is not updated. Writers of different keys do not
+    // block each other: notifications are reordered by sequence numbers when they are published.
+    private boolean compareAndSet(K key, ObjectReference<S> reference, S expectedValue, S newValue) {
+        synchronized (reference) {
+            if (objects.get(key) != reference || reference.get() != expectedValue) {
+                return false;
+            }
+            PendingNotification<S> pending = reserveNotification();
+            if (!reference.compareAndSet(expectedValue, newValue, pending.sequenceNumber)) {
+                pending.complete(null);
+                publishPendingNotifications();
+                return false;
+            }
+            updateIndexes(key, expectedValue, newValue);
+            pending.complete(Objects.equals(expectedValue, newValue)
+                    ? null
+                    : Notification.ofModified(expectedValue, newValue, pending.sequenceNumber));
+        }
+        publishPendingNotifications();
+        return true;
+    }
+
+    private PendingNotification<S> reserveNotification() {
+        PendingNotification<S> pending = new PendingNotification<>();
+        pendingNotifications.add(pending);
+        pending.sequenceNumber = sequenceNumber.incrementAndGet();
+        return pending;
+    }
+
+    // Notifications are published outside of locks by a single thread at a time. Completed notification is
+    // published once no pending notification can get a lower sequence number: numbers reserved later than
+    // the sequence number was read are greater, so only pending notifications with reserved numbers hold it.
+    private void publishPendingNotifications() {
+        if (publishingWip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            long limit = sequenceNumber.get();
+            List<PendingNotification<S>> completed = new ArrayList<>();
+            for (PendingNotification<S> pending : pendingNotifications) {
+                if (pending.completed) {
+                    completed.add(pending);
+                } else if (pending.sequenceNumber != 0) {
+                    limit = Math.min(limit, pending.sequenceNumber - 1);
+                }
+            }
+            long publishLimit = limit;
+            completed.stream()
+                    .filter(pending -> pending.sequenceNumber <= publishLimit)
+                    .sorted(Comparator.comparingLong(pending -> pending.sequenceNumber))
+                    .forEach(pending -> {
+                        pendingNotifications.remove(pending);
+                        if (pending.notification != null) {
+                            notificationSubject.onNext(pending.notification);
+                            log.debug("Published notification: {}", pending.notification);
+                        }
+                    });
+            missed = publishingWip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private boolean tryUpdate(ObjectReference<S> reference, BiPredicate<S, EvaluationContext> predicate, java.util.function.Function<S, S> updater) {
+        for (int attempt = 0; attempt < maxUpdateAttempts; ++attempt) {
+            S oldValue = reference.get();
+            if (oldValue == null || !predicate.test(oldValue, reference)) {
+                return false;
+            }
+            K key = metaClass.keyOf(oldValue);
+            if (compareAndSet(key, reference, oldValue, updater.apply(oldValue))) {
+                return true;
+            }
+            if (objects.get(key) != reference) {
+                return false;
+            }
+        }
+        throw new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected");
+    }
+
+    // All updated values are evaluated against the original entity with resolved references,
+    // then applied to the stored entity one after another
+    @SuppressWarnings("unchecked")
+    private java.util.function.Function<S, S> updaterOf(UpdateInfo<K, S> update) {
+        List<BiFunction<S, S, S>> updaters = new ArrayList<>();
+        update.propertyUpdates().forEach(propertyUpdate -> {
+            List<PropertyMeta<?, ?>> path = pathOf(propertyUpdate.property());
+            java.util.function.Function<S, ?> value = ExpressionCache.compile(propertyUpdate.updater());
+            updaters.add((original, entity) -> (S)withValue(entity, path, 0, value.apply(original)));
+        });
+        update.collectionPropertyUpdates().forEach(collectionUpdate -> {
+            List<PropertyMeta<?, ?>> path = pathOf(collectionUpdate.property());
+            java.util.function.Function<S, ? extends Collection<?>> collection = ExpressionCache.compile(collectionUpdate.property());
+            java.util.function.Function<S, ?> item = ExpressionCache.compile(collectionUpdate.item());
+            CollectionPropertyUpdateInfo.Operation operation = collectionUpdate.operation();
+            updaters.add((original, entity) -> (S)withValue(entity, path, 0,
+                    withItem(collection.apply(entity), item.apply(original), operation)));
+        });
+        return entity -> {
+            S original = resolveReferences(entity);
+            S updated = entity;
+            for (BiFunction<S, S, S> updater : updaters) {
+                updated = updater.apply(original, updated);
+            }
+            return updated;
+        };
+    }
+
+    private static List<PropertyMeta<?, ?>> pathOf(PropertyExpression<?, ?, ?> property) {
+        LinkedList<PropertyMeta<?, ?>> path = new LinkedList<>();
+        ObjectExpression<?, ?> expression = property;
+        while (expression instanceof PropertyExpression) {
+            path.addFirst(((PropertyExpression<?, ?, ?>)expression).property());
+            expression = ((PropertyExpression<?, ?, ?>)expression).target();
+        }
+        return path;
+    }
+
+    // Nested object is rebuilt along the property path. Properties of absent nested objects are not set.
+    @SuppressWarnings("unchecked")
+    private static Object withValue(Object object, List<PropertyMeta<?, ?>> path, int index, Object value) {
+        PropertyMeta<Object, Object> propertyMeta = (PropertyMeta<Object, Object>)path.get(index);
+        Object newValue = value;
+        if (index < path.size() - 1) {
+            Object nested = propertyMeta.getValue(object);
+            if (nested == null) {
+                return object;
+            }
+            newValue = withValue(nested, path, index + 1, value);
+        }
+        MetaBuilder<Object> builder = ((HasMetaClass<Object>)object).toBuilder();
+        propertyMeta.setValue(builder, newValue);
+        return builder.build();
+    }
+
+    private static Collection<?> withItem(Collection<?> collection, Object item, CollectionPropertyUpdateInfo.Operation operation) {
+        Collection<Object> items = collection instanceof Set
+                ? new LinkedHashSet<>(collection)
+                : new ArrayList<>(Optional.<Collection<?>>ofNullable(collection).orElseGet(Collections::emptyList));
+        if (operation == CollectionPropertyUpdateInfo.Operation.Add) {
+            items.add(item);
+        } else {
+            items.remove(item);
+        }
+        return items instanceof Set ? ImmutableSet.copyOf(items) : ImmutableList.copyOf(items);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void updateIndexes(K key, S oldValue, S newValue) {
+        indexes.values().forEach(index -> ((MemoryIndex<K, S, Object>)index).update(key, oldValue, newValue));
     }
 
     private <T> Comparator<Notification<T>> toNotificationComparator(Iterable<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos) {
@@ -204,10 +454,9 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
     @Override
     public <T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
         return notificationSubject
-                .doOnNext(n -> Expressions.sequenceNumber().set(n.sequenceNumber()))
                 .compose(src -> Optional.ofNullable(query.mapping())
-                        .map(Expressions::compile)
-                        .map(m -> src.map(nn -> nn.map(m)))
+                        .map(ExpressionCache::compileWithContext)
+                        .map(m -> src.map(nn -> nn.map(o -> m.apply(o, EvaluationContext.ofSequenceNumber(nn.sequenceNumber())))))
                         .orElse((Observable<Notification<T>>)(Observable)src))
                 .doOnNext(n -> log.debug("Notification --> {}", n));
     }
@@ -222,7 +471,7 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
                 .flatMap(list -> {
                     CollectionExpression<T, T, Collection<T>> collection = ConstantExpression.of(list);
                     UnaryOperationExpression<T, Collection<T>, R> aggregated = aggregator.apply(collection);
-                    java.util.function.Function<T, R> aggFunc = Expressions.compile(aggregated);
+                    java.util.function.Function<T, R> aggFunc = ExpressionCache.compile(aggregated);
                     return Optional
                             .ofNullable(aggFunc.apply(null))
                             .map(Maybe::just)
@@ -230,71 +479,120 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
                 });
     }
 
+    // Matching entries are updated in a single pass. Each entry is updated optimistically, the same way
+    // as in insertOrUpdate, and its notification is published once the new value is committed.
     @Override
     public Single<Integer> update(UpdateInfo<K, S> update) {
-        return Single.error(() -> new UnsupportedOperationException("Not supported yet"));
+        BiPredicate<S, EvaluationContext> predicate = ExpressionCache.compilePredicateWithContext(update.predicate());
+        java.util.function.Function<S, S> updater = updaterOf(update);
+        long limit = Optional.ofNullable(update.limit()).orElse(Long.MAX_VALUE);
+        return Single.fromCallable(() -> {
+            int count = 0;
+            for (ObjectReference<S> reference : candidates(indexedKeys(update.predicate()))) {
+                if (count >= limit) {
+                    break;
+                }
+                if (tryUpdate(reference, predicate, updater)) {
+                    ++count;
+                }
+            }
+            return count;
+        });
     }
 
     @Override
     public Single<Integer> delete(DeleteInfo<K, S> delete) {
-        Predicate<S> predicate = Expressions.compileRxPredicate(delete.predicate());
+        Predicate<S> predicate = ExpressionCache.compileRxPredicate(delete.predicate());
         return Observable
-                .fromIterable(objects.values())
+                .defer(() -> Observable.fromIterable(candidates(indexedKeys(delete.predicate()))))
                 .doOnSubscribe(d -> sequenceNumber.incrementAndGet())
                 .map(ObjectReference::get)
                 .filter(predicate)
                 .compose(ob -> Optional.ofNullable(delete.limit()).map(ob::take).orElse(ob))
                 .map(metaClass::keyOf)
-                .filter(key -> Optional
-                        .ofNullable(objects.remove(key))
-                        .map(ref -> Notification.ofDeleted(ref.get(), ref.modificationSequenceNum.get()))
-                        .map(n -> {
-                            notificationSubject.onNext(n);
-                            return true;
-                        })
-                        .orElse(false)
-                )
+                .filter(key -> {
+                    PendingNotification<S> pending = reserveNotification();
+                    ObjectReference<S> ref = remove(key);
+                    pending.complete(ref != null ? Notification.ofDeleted(ref.get(), ref.modificationSequenceNum.get()) : null);
+                    publishPendingNotifications();
+                    return ref != null;
+                })
                 .count()
                 .map(Long::intValue);
     }
 
     @Override
     public Completable drop() {
-        return Completable.fromAction(objects::clear);
+        return Completable.fromAction(() -> {
+            objects.clear();
+            indexes.values().forEach(MemoryIndex::clear);
+        });
     }
 
-    @SuppressWarnings("unchecked")
-    private Single<Notification<S>> applyReferences(Notification<S> entity) {
-        if (referenceProperties.get().isEmpty()) {
-            return Single.just(entity);
+    private ObjectReference<S> remove(K key) {
+        ObjectReference<S> ref = objects.remove(key);
+        if (ref != null) {
+            synchronized (ref) {
+                updateIndexes(key, ref.get(), null);
+            }
         }
-        MetaBuilder<S> builder = Objects.requireNonNull((HasMetaClass<S>)entity.newValue()).toBuilder();
-        return Observable.fromIterable(referenceProperties.get())
-                .flatMapMaybe(p -> retrieveReference(entity.newValue(), p))
-                .doOnNext(c -> c.accept(builder))
-                .ignoreElements()
-                .andThen(Single.fromCallable(builder::build))
-                .map(val -> Notification.ofCreated(val, entity.sequenceNumber()));
+        return ref;
     }
 
-    private <V> Maybe<Consumer<MetaBuilder<S>>> retrieveReference(S entity, PropertyMeta<S, V> propertyMeta) {
-        MetaClassWithKey<?, V> meta = MetaClasses.forTokenWithKeyUnchecked(propertyMeta.type());
-        V ref = propertyMeta.getValue(entity);
-        return resolve(meta, ref)
-                .map(newRef -> builder -> propertyMeta.setValue(builder, newRef));
+    private Notification<S> applyReferences(Notification<S> entity) {
+        S newValue = resolveReferences(entity.newValue());
+        return newValue != entity.newValue()
+                ? Notification.ofCreated(newValue, entity.sequenceNumber())
+                : entity;
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    private <_K, _S> Maybe<_S> resolve(MetaClassWithKey<_K, _S> meta, _S value) {
-        if (value == null) {
-            return Maybe.empty();
+    // References are looked up directly in the target providers; the object is rebuilt
+    // only when at least one of its references is not the currently stored instance
+    private S resolveReferences(S entity) {
+        if (entity == null || referenceProperties.get().isEmpty()) {
+            return entity;
+        }
+        MetaBuilder<S> builder = null;
+        for (PropertyMeta<S, ?> propertyMeta : referenceProperties.get()) {
+            builder = resolveReference(entity, propertyMeta, builder);
+        }
+        return builder != null ? builder.build() : entity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> MetaBuilder<S> resolveReference(S entity, PropertyMeta<S, V> propertyMeta, MetaBuilder<S> builder) {
+        V ref = propertyMeta.getValue(entity);
+        if (ref == null) {
+            return builder;
         }
-        _K key = meta.keyOf(value);
-        return objectResolver.resolve((MetaClassWithKey)meta, key);
+        MetaClassWithKey<?, V> meta = MetaClasses.forTokenWithKeyUnchecked(propertyMeta.type());
+        V resolved = resolve(meta, ref);
+        if (resolved == null || resolved == ref) {
+            return builder;
+        }
+        builder = builder != null ? builder : ((HasMetaClass<S>)entity).toBuilder();
+        propertyMeta.setValue(builder, resolved);
+        return builder;
+    }
+
+    private <_K, _S> _S resolve(MetaClassWithKey<_K, _S> meta, _S value) {
+        return objectResolver.get(meta, meta.keyOf(value));
+    }
+
+    S get(K key) {
+        ObjectReference<S> ref = objects.get(key);
+        return ref != null ? ref.get() : null;
     }
 
     Maybe<S> find(K key) {
-        return Maybe.fromCallable(() -> objects.get(key)).map(ObjectReference::get);
+        return Maybe.fromCallable(() -> get(key));
+    }
+
+    @Override
+    public Observable<S> findByKeys(Iterable<K> keys) {
+        return Observable.fromIterable(keys)
+                .concatMapMaybe(this::find)
+                .map(this::resolveReferences);
     }
 
     @Override
@@ -0,0 +1,141 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Primitives;
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+class MemoryIndex<K, S, V> {
+    private final PropertyMeta<S, V> property;
+    private final Map<V, Set<K>> hashIndex = new ConcurrentHashMap<>();
+    private final NavigableMap<V, Set<K>> sortedIndex;
+    private final Set<K> nullKeys = ConcurrentHashMap.newKeySet();
+
+    private MemoryIndex(PropertyMeta<S, V> property) {
+        this.property = property;
+        this.sortedIndex = Comparable.class.isAssignableFrom(Primitives.wrap(property.type().getRawType()))
+                ? new ConcurrentSkipListMap<>()
+                : null;
+    }
+
+    static <K, S> Map<PropertyMeta<S, ?>, MemoryIndex<K, S, ?>> forMetaClass(MetaClass<S> metaClass) {
+        ImmutableMap.Builder<PropertyMeta<S, ?>, MemoryIndex<K, S, ?>> builder = ImmutableMap.builder();
+        for (PropertyMeta<S, ?> property : metaClass.properties()) {
+            if (property.hasAnnotation(Indexable.class) && !PropertyMetas.isKey(property)) {
+                addIndex(builder, property);
+            }
+        }
+        return builder.build();
+    }
+
+    private static <K, S, V> void addIndex(ImmutableMap.Builder<PropertyMeta<S, ?>, MemoryIndex<K, S, ?>> builder, PropertyMeta<S, V> property) {
+        builder.put(property, new MemoryIndex<>(property));
+    }
+
+    boolean isSorted() {
+        return sortedIndex != null;
+    }
+
+    void update(K key, S oldObject, S newObject) {
+        V oldValue = oldObject != null ? property.getValue(oldObject) : null;
+        V newValue = newObject != null ? property.getValue(newObject) : null;
+        if (oldObject != null && newObject != null && Objects.equals(oldValue, newValue)) {
+            return;
+        }
+        if (oldObject != null) {
+            remove(key, oldValue);
+        }
+        if (newObject != null) {
+            add(key, newValue);
+        }
+    }
+
+    void clear() {
+        hashIndex.clear();
+        nullKeys.clear();
+        Optional.ofNullable(sortedIndex).ifPresent(Map::clear);
+    }
+
+    @SuppressWarnings("unchecked")
+    Optional<Stream<K>> lookup(Expression.Type type, Object value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        switch (type) {
+            case Equals:
+                return Optional.of(keysOf(value));
+            case ValueIn:
+                return Optional.of(((Collection<?>)value).stream().distinct().flatMap(this::keysOf));
+            case GreaterThan:
+                return range(index -> index.tailMap((V)value, false));
+            case LessThan:
+                return range(index -> index.headMap((V)value, false));
+            default:
+                return Optional.empty();
+        }
+    }
+
+    Stream<K> ordered(boolean ascending) {
+        Stream<K> keys = (ascending ? sortedIndex : sortedIndex.descendingMap()).values().stream().flatMap(Set::stream);
+        return ascending
+                ? Stream.concat(keys, nullKeys.stream())
+                : Stream.concat(nullKeys.stream(), keys);
+    }
+
+    private Optional<Stream<K>> range(Function<NavigableMap<V, Set<K>>, NavigableMap<V, Set<K>>> selector) {
+        return Optional.ofNullable(sortedIndex)
+                .map(selector)
+                .map(index -> index.values().stream().flatMap(Set::stream));
+    }
+
+    private Stream<K> keysOf(Object value) {
+        return hashIndex.getOrDefault(value, Collections.emptySet()).stream();
+    }
+
+    private void add(K key, V value) {
+        if (value == null) {
+            nullKeys.add(key);
+            return;
+        }
+        hashIndex.compute(value, (v, keys) -> {
+            keys = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            keys.add(key);
+            if (sortedIndex != null) {
+                sortedIndex.put(v, keys);
+            }
+            return keys;
+        });
+    }
+
+    private void remove(K key, V value) {
+        if (value == null) {
+            nullKeys.remove(key);
+            return;
+        }
+        hashIndex.computeIfPresent(value, (v, keys) -> {
+            keys.remove(key);
+            if (!keys.isEmpty()) {
+                return keys;
+            }
+            if (sortedIndex != null) {
+                sortedIndex.remove(v);
+            }
+            return null;
+        });
+    }
+}
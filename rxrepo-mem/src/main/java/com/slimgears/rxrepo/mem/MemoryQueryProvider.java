@@ -38,6 +38,10 @@ public class MemoryQueryProvider extends AbstractEntityQueryProviderAdapter impl
         return ((MemoryEntityQueryProvider<K, S>)entities(metaClass)).find(key);
     }
 
+    <K, S> S get(MetaClassWithKey<K, S> metaClass, K key) {
+        return ((MemoryEntityQueryProvider<K, S>)entities(metaClass)).get(key);
+    }
+
     @Override
     public void close() {
         closeableList.stream()
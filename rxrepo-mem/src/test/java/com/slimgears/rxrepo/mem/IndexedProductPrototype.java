@@ -0,0 +1,16 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.annotations.UseExpressions;
+import com.slimgears.util.autovalue.annotations.AutoValuePrototype;
+import com.slimgears.util.autovalue.annotations.Key;
+
+import javax.annotation.Nullable;
+
+@AutoValuePrototype
+@UseExpressions
+public interface IndexedProductPrototype {
+    @Key int id();
+    @Nullable String name();
+    @Indexable int price();
+}
@@ -0,0 +1,136 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.test.Inventory;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.plugins.RxJavaPlugins;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.slimgears.rxrepo.test.TestUtils.countExactly;
+import static com.slimgears.rxrepo.test.TestUtils.inSequenceOrder;
+
+public class LiveQueryReferenceOrderingTest {
+    private final static int inventoryCount = 4;
+    private final static int productsPerInventory = 5;
+    private Repository repository;
+
+    // Referencing queries of earlier changes complete later, so out of order emission would be visible
+    private static class DelayingQueryDecorator extends AbstractQueryProviderDecorator {
+        private final AtomicInteger queryCount = new AtomicInteger();
+
+        private DelayingQueryDecorator(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        @Override
+        public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
+            if (query.predicate() == null || !query.metaClass().equals(Product.metaClass)) {
+                return super.query(query);
+            }
+            int index = queryCount.getAndIncrement();
+            long delayMillis = Math.max(0, inventoryCount - index) * 100L;
+            return super.query(query).toList().delay(delayMillis, TimeUnit.MILLISECONDS).flatMapObservable(Observable::fromIterable);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        repository = Repository.fromProvider(
+                MemoryQueryProvider.create(),
+                DelayingQueryDecorator::new,
+                LiveQueryProviderDecorator.create(Duration.ofMillis(2000), Duration.ofMillis(300), 1000, inventoryCount),
+                UpdateReferencesFirstQueryProviderDecorator.create());
+    }
+
+    @After
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void testReferencedNotificationsAreEmittedInSequenceOrder() {
+        List<Product> products = ImmutableList.copyOf(Products.createMany(0, inventoryCount * productsPerInventory, productsPerInventory));
+        repository.entities(Product.metaClass).update(products).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = repository.entities(Product.metaClass)
+                .query()
+                .liveSelect()
+                .properties(Product.$.inventory)
+                .observe()
+                .filter(Notification::isModify)
+                .test();
+
+        List<Inventory> inventories = products.stream()
+                .map(Product::inventory)
+                .distinct()
+                .sorted(Comparator.comparingInt((Inventory inventory) -> inventory.id().id()))
+                .collect(Collectors.toList());
+        Assert.assertEquals(inventoryCount, inventories.size());
+
+        inventories.forEach(inventory -> repository.entities(Inventory.metaClass)
+                .update(inventory.toBuilder().name(inventory.name() + " - updated").build())
+                .blockingGet());
+
+        observer.assertOf(countExactly(products.size()))
+                .assertOf(inSequenceOrder());
+
+        List<Integer> inventoryIds = observer.values().stream()
+                .map(n -> n.newValue().inventory().id().id())
+                .collect(Collectors.toList());
+        Assert.assertTrue("Out of order: " + inventoryIds, Ordering.natural().isOrdered(inventoryIds));
+    }
+
+    // Batch of referenced changes is opened by its first change, so idle live query schedules nothing
+    @Test
+    public void testIdleLiveQuerySchedulesNoTimers() throws InterruptedException {
+        List<Product> products = ImmutableList.copyOf(Products.createMany(0, inventoryCount * productsPerInventory, productsPerInventory));
+        repository.entities(Product.metaClass).update(products).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = repository.entities(Product.metaClass)
+                .query()
+                .liveSelect()
+                .properties(Product.$.inventory)
+                .observe()
+                .filter(Notification::isModify)
+                .test();
+
+        AtomicInteger scheduledCount = new AtomicInteger();
+        RxJavaPlugins.setScheduleHandler(runnable -> {
+            scheduledCount.incrementAndGet();
+            return runnable;
+        });
+        try {
+            Thread.sleep(1000);
+            Assert.assertEquals(0, scheduledCount.get());
+        } finally {
+            RxJavaPlugins.setScheduleHandler(null);
+        }
+
+        Inventory inventory = products.get(0).inventory();
+        repository.entities(Inventory.metaClass)
+                .update(inventory.toBuilder().name(inventory.name() + " - updated").build())
+                .blockingGet();
+        observer.assertOf(countExactly(productsPerInventory));
+    }
+}
@@ -0,0 +1,153 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.slimgears.rxrepo.test.TestUtils.*;
+
+public class MemoryEntityQueryProviderTest {
+    private final static int writerCount = 8;
+    private final static int updatesPerProduct = 20;
+    private Repository repository;
+    private EntitySet<UniqueId, Product> products;
+
+    @Before
+    public void setUp() {
+        repository = MemoryRepository.create();
+        products = repository.entities(Product.metaClass);
+    }
+
+    @After
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void testConcurrentWritersPublishInSequenceOrder() {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(writerCount * 4));
+        products.update(productList).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = observeModifications(products);
+
+        Observable.range(0, writerCount)
+                .flatMapCompletable(writer -> Observable
+                        .fromIterable(productList)
+                        .filter(product -> product.key().id() % writerCount == writer)
+                        .repeat(updatesPerProduct)
+                        .concatMapMaybe(product -> products.update(product.key(), p -> p.map(pp -> pp.toBuilder().price(pp.price() + 1).build())))
+                        .ignoreElements()
+                        .subscribeOn(Schedulers.io()))
+                .blockingAwait();
+
+        observer.assertOf(countExactly(productList.size() * updatesPerProduct))
+                .assertOf(strictlyInSequenceOrder());
+    }
+
+    @Test
+    public void testBulkUpdatePublishesNotificationPerEntity() {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(50));
+        products.update(productList).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = observeModifications(products);
+
+        int count = products.update()
+                .set(Product.$.price, 1000)
+                .where(Product.$.key.id.lessThan(20))
+                .execute()
+                .blockingGet();
+        Assert.assertEquals(20, count);
+
+        observer.assertOf(countExactly(20))
+                .assertOf(strictlyInSequenceOrder());
+
+        List<Notification<Product>> notifications = observer.values();
+        notifications.forEach(n -> {
+            Assert.assertEquals(n.oldValue().key(), n.newValue().key());
+            Assert.assertTrue(n.oldValue().key().id() < 20);
+            Assert.assertNotEquals(1000, n.oldValue().price());
+            Assert.assertEquals(1000, n.newValue().price());
+            Assert.assertEquals(n.oldValue().name(), n.newValue().name());
+        });
+        Assert.assertEquals(20, notifications.stream().map(n -> n.newValue().key()).distinct().count());
+
+        products.query()
+                .where(Product.$.price.eq(1000))
+                .count()
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(20L);
+        products.query()
+                .where(Product.$.key.id.greaterOrEqual(20))
+                .select()
+                .retrieve()
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValueCount(30)
+                .assertValueSet(productList.subList(20, 50));
+    }
+
+    @Test
+    public void testBulkUpdateOfCollectionWithLimit() {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(50));
+        products.update(productList).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = observeModifications(products);
+
+        int count = products.update()
+                .add(Product.$.aliases, "alias")
+                .where(Product.$.name.startsWith("Product-1"))
+                .limit(5)
+                .execute()
+                .blockingGet();
+        Assert.assertEquals(5, count);
+
+        observer.assertOf(countExactly(5))
+                .assertOf(strictlyInSequenceOrder());
+        observer.values().forEach(n -> {
+            Assert.assertNull(n.oldValue().aliases());
+            Assert.assertEquals(ImmutableList.of("alias"), n.newValue().aliases());
+            Assert.assertTrue(n.newValue().name().startsWith("Product-1"));
+        });
+    }
+
+    @Test
+    public void testBulkUpdateWithoutChangesPublishesNoNotifications() {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(50));
+        products.update(productList).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = observeModifications(products);
+
+        int unchangedCount = products.update()
+                .set(Product.$.price, Product.$.price)
+                .where(Product.$.key.id.lessThan(10))
+                .execute()
+                .blockingGet();
+        Assert.assertEquals(10, unchangedCount);
+
+        products.update()
+                .set(Product.$.name, "Renamed")
+                .where(Product.$.key.id.eq(42))
+                .execute()
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(1);
+
+        observer.assertOf(countExactly(1))
+                .assertValue(n -> n.newValue().key().id() == 42 && "Renamed".equals(n.newValue().name()));
+    }
+}
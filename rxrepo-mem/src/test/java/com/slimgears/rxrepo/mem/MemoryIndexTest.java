@@ -0,0 +1,91 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.Ordering;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class MemoryIndexTest {
+    private MemoryEntityQueryProvider<Integer, IndexedProduct> provider;
+    private List<IndexedProduct> products;
+
+    @Before
+    public void setUp() {
+        provider = MemoryEntityQueryProvider.create(IndexedProduct.metaClass, MemoryQueryProvider.create(), new AtomicLong());
+        products = IntStream.range(0, 100)
+                .mapToObj(i -> IndexedProduct.builder().id(i).name("Product " + i).price(100 + (i * 37) % 50).build())
+                .collect(Collectors.toList());
+        provider.insert(products, false).blockingAwait();
+    }
+
+    @Test
+    public void testPrimitivePropertyHasSortedIndex() {
+        MemoryIndex<Integer, IndexedProduct, ?> index = MemoryIndex.<Integer, IndexedProduct>forMetaClass(IndexedProduct.metaClass)
+                .get(IndexedProduct.metaClass.price);
+        Assert.assertNotNull(index);
+        Assert.assertTrue(index.isSorted());
+        Assert.assertTrue(index.lookup(Expression.Type.GreaterThan, 120).isPresent());
+    }
+
+    @Test
+    public void testRangeQueryUsesIndex() {
+        QueryInfo<Integer, IndexedProduct, IndexedProduct> query = QueryInfo.<Integer, IndexedProduct, IndexedProduct>builder()
+                .metaClass(IndexedProduct.metaClass)
+                .predicate(IndexedProduct.$.price.greaterThan(130))
+                .sortAscending(IndexedProduct.$.price)
+                .build();
+
+        Assert.assertTrue(provider.indexedKeys(query.predicate()).isPresent());
+        Assert.assertTrue(provider.orderedKeys(query.sorting()).isPresent());
+
+        List<Integer> prices = provider.query(query)
+                .map(Notification::newValue)
+                .map(IndexedProduct::price)
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(products.stream().filter(p -> p.price() > 130).count(), prices.size());
+        Assert.assertTrue(Ordering.natural().isOrdered(prices));
+    }
+
+    @Test
+    public void testEqualsQueryUsesIndex() {
+        int price = products.get(10).price();
+        QueryInfo<Integer, IndexedProduct, IndexedProduct> query = QueryInfo.<Integer, IndexedProduct, IndexedProduct>builder()
+                .metaClass(IndexedProduct.metaClass)
+                .predicate(IndexedProduct.$.price.eq(price))
+                .build();
+
+        Assert.assertTrue(provider.indexedKeys(query.predicate()).isPresent());
+        Assert.assertEquals(
+                products.stream().filter(p -> p.price() == price).count(),
+                provider.query(query).count().blockingGet().longValue());
+    }
+
+    @Test
+    public void testOrderByIndexedPropertyWithoutPredicate() {
+        QueryInfo<Integer, IndexedProduct, IndexedProduct> query = QueryInfo.<Integer, IndexedProduct, IndexedProduct>builder()
+                .metaClass(IndexedProduct.metaClass)
+                .sortDescending(IndexedProduct.$.price)
+                .build();
+
+        Assert.assertTrue(provider.orderedKeys(query.sorting()).isPresent());
+
+        List<Integer> prices = provider.query(query)
+                .map(Notification::newValue)
+                .map(IndexedProduct::price)
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(products.size(), prices.size());
+        Assert.assertTrue(Ordering.natural().reverse().isOrdered(prices));
+    }
+}
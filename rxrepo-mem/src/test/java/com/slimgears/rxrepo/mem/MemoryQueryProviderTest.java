@@ -2,10 +2,17 @@ package com.slimgears.rxrepo.mem;
 
 import com.slimgears.rxrepo.query.Repository;
 import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import org.junit.Test;
 
 public class MemoryQueryProviderTest extends AbstractRepositoryTest {
     @Override
     protected Repository createRepository() {
         return MemoryRepository.create();
     }
+
+    @Test
+    @Override
+    public void testInsertThenUpdate() throws InterruptedException {
+        super.testInsertThenUpdate();
+    }
 }
@@ -0,0 +1,68 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.InterceptingQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryPublisher;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import io.reactivex.Observable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class QueryInterceptionTest {
+    private final InterceptingQueryProviderDecorator interceptor = new InterceptingQueryProviderDecorator();
+    private final List<QueryInfo<?, ?, ?>> queries = new CopyOnWriteArrayList<>();
+    private Repository repository;
+
+    @Before
+    public void setUp() {
+        repository = MemoryRepository.create(interceptor);
+        interceptor.subscribe(new QueryPublisher.OnQueryListener() {
+            @Override
+            public <K, S, T> Observable<Notification<T>> onQuery(QueryInfo<K, S, T> queryInfo, Observable<Notification<T>> queryResult) {
+                queries.add(queryInfo);
+                return queryResult;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void testFindByKeysNotifiesQueryListeners() throws InterruptedException {
+        List<Product> products = ImmutableList.copyOf(Products.createMany(10));
+        repository.entities(Product.metaClass).update(products).test().await().assertNoErrors();
+        queries.clear();
+
+        repository.entities(Product.metaClass)
+                .find(products.get(3).key())
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertValue(p -> p.key().equals(products.get(3).key()));
+
+        repository.entities(Product.metaClass)
+                .findAll(ImmutableList.of(products.get(1).key(), products.get(2).key()))
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertValueCount(2);
+
+        Assert.assertEquals(2, queries.size());
+        queries.forEach(query -> {
+            Assert.assertEquals(Product.metaClass, query.metaClass());
+            Assert.assertNotNull(query.predicate());
+        });
+    }
+}
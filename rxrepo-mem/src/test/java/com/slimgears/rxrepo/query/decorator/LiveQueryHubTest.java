@@ -0,0 +1,109 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import io.reactivex.exceptions.MissingBackpressureException;
+import io.reactivex.observers.BaseTestConsumer;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LiveQueryHubTest {
+    private final PublishSubject<Notification<Product>> upstream = PublishSubject.create();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final List<Product> products = ImmutableList.copyOf(Products.createMany(10));
+    private LiveQueryHub<Product> hub;
+
+    @Before
+    public void setUp() {
+        hub = new LiveQueryHub<>(upstream, Schedulers.io(), 10, idleCount::incrementAndGet);
+    }
+
+    @Test
+    public void testIndexedPredicateRouting() {
+        TestObserver<Notification<Product>> first = hub.observe(Product.$.name.eq(products.get(1).name())).test();
+        TestObserver<Notification<Product>> second = hub.observe(Product.$.name.eq(products.get(2).name())).test();
+        TestObserver<Notification<Product>> unindexed = hub.observe(null).test();
+
+        upstream.onNext(Notification.ofCreated(products.get(1), 1L));
+        upstream.onNext(Notification.ofModified(products.get(2), products.get(2).toBuilder().name("Renamed").build(), 2L));
+
+        unindexed.awaitCount(2).assertValueCount(2);
+        first.awaitCount(1).assertValueCount(1).assertValue(n -> n.newValue().equals(products.get(1)));
+        second.awaitCount(1).assertValueCount(1).assertValue(n -> n.oldValue().equals(products.get(2)));
+    }
+
+    @Test
+    public void testUnsubscribeDisconnectsAndReleasesHub() {
+        TestObserver<Notification<Product>> first = hub.observe(Product.$.name.eq(products.get(1).name())).test();
+        TestObserver<Notification<Product>> second = hub.observe(null).test();
+        Assert.assertTrue(upstream.hasObservers());
+        Assert.assertEquals(2, hub.subscriberCount());
+
+        first.dispose();
+        Assert.assertTrue(upstream.hasObservers());
+        Assert.assertEquals(0, idleCount.get());
+
+        second.dispose();
+        Assert.assertFalse(upstream.hasObservers());
+        Assert.assertEquals(0, hub.subscriberCount());
+        Assert.assertEquals(1, idleCount.get());
+
+        TestObserver<Notification<Product>> third = hub.observe(null).test();
+        Assert.assertTrue(upstream.hasObservers());
+        upstream.onNext(Notification.ofCreated(products.get(3), 3L));
+        third.awaitCount(1).assertValueCount(1);
+    }
+
+    @Test
+    public void testFailingSubscriberDoesNotAffectOthers() {
+        TestObserver<Product> failing = hub.observe(null)
+                .<Product>map(n -> {
+                    throw new IllegalStateException("Subscriber failure");
+                })
+                .test();
+        TestObserver<Notification<Product>> healthy = hub.observe(null).test();
+
+        upstream.onNext(Notification.ofCreated(products.get(1), 1L));
+        failing.awaitDone(5, TimeUnit.SECONDS).assertError(IllegalStateException.class);
+
+        upstream.onNext(Notification.ofCreated(products.get(2), 2L));
+        healthy.awaitCount(2)
+                .assertNoErrors()
+                .assertValueCount(2);
+        Assert.assertTrue(upstream.hasObservers());
+        Assert.assertEquals(1, hub.subscriberCount());
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotBlockOthers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        TestObserver<Notification<Product>> slow = hub.observe(null)
+                .doOnNext(n -> release.await())
+                .test();
+        TestObserver<Notification<Product>> fast = hub.observe(null).test();
+
+        for (long i = 0; i < 100; ++i) {
+            upstream.onNext(Notification.ofCreated(products.get((int)(i % products.size())), i));
+        }
+
+        fast.awaitCount(100, BaseTestConsumer.TestWaitStrategy.SLEEP_10MS, 5000)
+                .assertNoErrors()
+                .assertValueCount(100);
+
+        release.countDown();
+        slow.awaitDone(5, TimeUnit.SECONDS).assertError(MissingBackpressureException.class);
+        Assert.assertTrue(slow.valueCount() <= 10);
+        Assert.assertTrue(upstream.hasObservers());
+    }
+}
@@ -0,0 +1,161 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+public class ExpressionCompilerTest {
+    // Every 4th product has no vendor, products with null name, inventory and type are added explicitly
+    private final static List<Product> products = ImmutableList.<Product>builder()
+            .addAll(Products.createMany(20))
+            .add(Products.createOne(100).toBuilder().name(null).build())
+            .add(Products.createOne(101).toBuilder().inventory(null).type(null).build())
+            .add(Products.createOne(102).toBuilder().name(null).inventory(null).vendor(null).build())
+            .build();
+
+    @After
+    public void tearDown() {
+        Expressions.enableCompiler(false);
+    }
+
+    @Test
+    public void testEqualsPredicates() {
+        assertCompiledEqualsInterpreted(Product.$.name.eq("Product-3"));
+        assertCompiledEqualsInterpreted(Product.$.name.eq((String)null));
+        assertCompiledEqualsInterpreted(Product.$.price.eq(110));
+        assertCompiledEqualsInterpreted(Product.$.key.id.eq(5));
+        assertCompiledEqualsInterpreted(Product.$.inventory.id.id.eq(1));
+        assertCompiledEqualsInterpreted(Product.$.type.eq(Product.Type.ComputeHardware));
+        assertCompiledEqualsInterpreted(Product.$.name.eq(Product.$.inventory.name));
+    }
+
+    @Test
+    public void testComparisonPredicates() {
+        assertCompiledEqualsInterpreted(Product.$.price.greaterThan(110));
+        assertCompiledEqualsInterpreted(Product.$.price.lessThan(110));
+        assertCompiledEqualsInterpreted(Product.$.key.id.greaterThan(10));
+        assertCompiledEqualsInterpreted(Product.$.inventory.id.id.lessThan(1));
+        assertCompiledEqualsInterpreted(Product.$.name.greaterThan("Product-5"));
+        assertCompiledEqualsInterpreted(Product.$.name.lessThan("Product-5"));
+        assertCompiledEqualsInterpreted(Product.$.productionDate.greaterThan(products.get(10).productionDate()));
+    }
+
+    @Test
+    public void testValueInPredicates() {
+        assertCompiledEqualsInterpreted(Product.$.name.in("Product-1", "Product-3"));
+        assertCompiledEqualsInterpreted(Product.$.type.in(Product.Type.ComputerSoftware, Product.Type.ConsumerElectronics));
+        assertCompiledEqualsInterpreted(Product.$.key.in(products.get(1).key(), products.get(2).key()));
+        assertCompiledEqualsInterpreted(Product.$.vendor.id.in(products.get(1).vendor().id()));
+    }
+
+    @Test
+    public void testStringPredicates() {
+        assertCompiledEqualsInterpreted(Product.$.name.contains("-1"));
+        assertCompiledEqualsInterpreted(Product.$.name.contains((String)null));
+        assertCompiledEqualsInterpreted(Product.$.name.startsWith("Product-1"));
+        assertCompiledEqualsInterpreted(Product.$.name.startsWith((String)null));
+        assertCompiledEqualsInterpreted(Product.$.name.endsWith("1"));
+        assertCompiledEqualsInterpreted(Product.$.name.endsWith((String)null));
+        assertCompiledEqualsInterpreted(Product.$.inventory.name.startsWith("Inventory"));
+    }
+
+    @Test
+    public void testLogicalPredicates() {
+        assertCompiledEqualsInterpreted(Product.$.vendor.isNull());
+        assertCompiledEqualsInterpreted(Product.$.inventory.name.isNull());
+        assertCompiledEqualsInterpreted(Product.$.vendor.isNotNull());
+        assertCompiledEqualsInterpreted(Product.$.name.startsWith("Product-1").not());
+        assertCompiledEqualsInterpreted(Product.$.name.notEq("Product-2"));
+        assertCompiledEqualsInterpreted(Product.$.price.greaterThan(105).and(Product.$.name.contains("1")));
+        assertCompiledEqualsInterpreted(Product.$.price.lessThan(105).or(Product.$.vendor.isNull()));
+        assertCompiledEqualsInterpreted(Product.$.inventory.isNull().or(Product.$.inventory.name.eq("Inventory-1")).not());
+    }
+
+    @Test
+    public void testMappings() {
+        assertCompiledMappingEqualsInterpreted(Product.$.name);
+        assertCompiledMappingEqualsInterpreted(Product.$.price);
+        assertCompiledMappingEqualsInterpreted(Product.$.inventory.name);
+        assertCompiledMappingEqualsInterpreted(Product.$.vendor.id.id);
+        assertCompiledMappingEqualsInterpreted(Product.$.name.endsWith("2"));
+    }
+
+    @Test
+    public void testUnsupportedExpressionFallsBackToInterpreter() {
+        List<ObjectExpression<Product, Boolean>> unsupported = Arrays.asList(
+                Product.$.name.toLower().startsWith("product-1"),
+                Product.$.name.length().greaterThan(9),
+                Product.$.price.add(10).lessThan(115),
+                Product.$.name.concat("-x").endsWith("1-x").or(Product.$.vendor.isNull()));
+
+        unsupported.forEach(exp -> {
+            Assert.assertFalse(exp.toString(), ExpressionCompiler.tryCompilePredicate(exp).isPresent());
+            List<Boolean> interpreted = evaluate(interpretPredicate(exp));
+
+            Expressions.enableCompiler(true);
+            Assert.assertEquals(exp.toString(), interpreted, evaluate(Expressions.compilePredicate(exp)));
+            Assert.assertEquals(exp.toString(), interpreted, evaluate(ExpressionCache.compilePredicate(exp)));
+            Expressions.enableCompiler(false);
+        });
+
+        Assert.assertFalse(ExpressionCompiler.tryCompile(Product.$.name.concat("-x")).isPresent());
+        Expressions.enableCompiler(true);
+        Assert.assertEquals(
+                products.stream().map(interpret(Product.$.name.concat("-x"))).collect(Collectors.toList()),
+                products.stream().map(ExpressionCache.compile(Product.$.name.concat("-x"))).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testCachedTemplatesAreBoundToConstants() {
+        Expressions.enableCompiler(true);
+        for (int i = 100; i < 120; i += 3) {
+            ObjectExpression<Product, Boolean> exp = Product.$.price.greaterThan(i).and(Product.$.name.startsWith("Product-" + (i % 10)));
+            Assert.assertEquals(exp.toString(), evaluate(interpretPredicate(exp)), evaluate(ExpressionCache.compilePredicate(exp)));
+        }
+    }
+
+    private static void assertCompiledEqualsInterpreted(ObjectExpression<Product, Boolean> exp) {
+        Optional<Predicate<Product>> compiled = ExpressionCompiler.tryCompilePredicate(exp);
+        Assert.assertTrue("Not compiled: " + exp, compiled.isPresent());
+        List<Boolean> expected = evaluate(interpretPredicate(exp));
+        Assert.assertEquals(exp.toString(), expected, evaluate(compiled.get()));
+
+        Expressions.enableCompiler(true);
+        Assert.assertEquals(exp.toString(), expected, evaluate(ExpressionCache.compilePredicate(exp)));
+        Expressions.enableCompiler(false);
+    }
+
+    private static <T> void assertCompiledMappingEqualsInterpreted(ObjectExpression<Product, T> exp) {
+        Optional<Function<Product, T>> compiled = ExpressionCompiler.tryCompile(exp);
+        Assert.assertTrue("Not compiled: " + exp, compiled.isPresent());
+        Assert.assertEquals(
+                exp.toString(),
+                products.stream().map(interpret(exp)).collect(Collectors.toList()),
+                products.stream().map(compiled.get()).collect(Collectors.toList()));
+    }
+
+    private static List<Boolean> evaluate(Predicate<Product> predicate) {
+        return products.stream().map(predicate::test).collect(Collectors.toList());
+    }
+
+    private static Predicate<Product> interpretPredicate(ObjectExpression<Product, Boolean> exp) {
+        Expressions.enableCompiler(false);
+        return Expressions.compilePredicate(exp);
+    }
+
+    private static <T> Function<Product, T> interpret(ObjectExpression<Product, T> exp) {
+        Expressions.enableCompiler(false);
+        return Expressions.compile(exp);
+    }
+}
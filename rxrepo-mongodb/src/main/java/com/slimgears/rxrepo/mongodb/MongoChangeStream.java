@@ -0,0 +1,65 @@
+package com.slimgears.rxrepo.mongodb;
+
+import com.mongodb.MongoCursorNotFoundException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.reactivestreams.client.ChangeStreamPublisher;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.reactivex.Observable;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Change stream, shared by all its subscribers. Resume token of the last received event is kept,
+// so after transient error the stream is resumed right after that event instead of being restarted.
+// The token is reset when the last subscriber leaves.
+class MongoChangeStream {
+    private final static Logger log = LoggerFactory.getLogger(MongoChangeStream.class);
+    private final static Duration resumeDelay = Duration.ofMillis(500);
+    private final AtomicReference<BsonDocument> resumeToken = new AtomicReference<>();
+    private final Observable<ChangeStreamDocument<Document>> changes;
+
+    MongoChangeStream(MongoCollection<Document> collection, List<Document> pipeline, Consumer<MongoChangeStream> onClose) {
+        this.changes = Observable
+                .defer(() -> {
+                    ChangeStreamPublisher<Document> publisher = collection.watch(pipeline);
+                    BsonDocument token = resumeToken.get();
+                    return Observable.fromPublisher(token != null ? publisher.resumeAfter(token) : publisher);
+                })
+                .doOnNext(change -> resumeToken.set(change.getResumeToken()))
+                .retryWhen(errors -> errors.flatMap(e -> {
+                    if (!isResumable(e)) {
+                        return Observable.<Long>error(e);
+                    }
+                    log.debug("Resuming change stream of {} after error: {}", collection.getNamespace(), e.getMessage());
+                    return Observable.timer(resumeDelay.toMillis(), TimeUnit.MILLISECONDS);
+                }))
+                .doFinally(() -> {
+                    resumeToken.set(null);
+                    onClose.accept(this);
+                })
+                .share();
+    }
+
+    Observable<ChangeStreamDocument<Document>> observe() {
+        return changes;
+    }
+
+    private static boolean isResumable(Throwable e) {
+        return e instanceof MongoSocketException ||
+                e instanceof MongoNotPrimaryException ||
+                e instanceof MongoNodeIsRecoveringException ||
+                e instanceof MongoCursorNotFoundException ||
+                e instanceof MongoTimeoutException;
+    }
+}
@@ -1,11 +1,18 @@
 package com.slimgears.rxrepo.mongodb;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.reflect.TypeToken;
 import com.mongodb.DuplicateKeyException;
 import com.mongodb.ErrorCategory;
 import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.changestream.OperationType;
 import com.mongodb.client.result.DeleteResult;
@@ -15,6 +22,9 @@ import com.mongodb.reactivestreams.client.MongoCollection;
 import com.mongodb.reactivestreams.client.MongoDatabase;
 import com.slimgears.rxrepo.encoding.MetaClassFieldMapper;
 import com.slimgears.rxrepo.encoding.MetaDocument;
+import com.slimgears.rxrepo.encoding.MetaObjectResolver;
+import com.slimgears.rxrepo.encoding.MetaReferences;
+import com.slimgears.rxrepo.encoding.codecs.MetaClassCodec;
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.CollectionExpression;
 import com.slimgears.rxrepo.expressions.Expression;
@@ -24,14 +34,17 @@ import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.EntityQueryProvider;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
-import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.ExpressionCache;
 import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
 import com.slimgears.util.reflect.TypeTokens;
 import com.slimgears.util.stream.Lazy;
 import com.slimgears.util.stream.Optionals;
-import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -45,14 +58,20 @@ import org.bson.codecs.configuration.CodecRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoCloseable {
     private final static Logger log = LoggerFactory.getLogger(MongoEntityQueryProvider.class);
+    private final static int decodeBatchSize = 256;
+    private final static int maxUpdateAttempts = 16;
+    private final static int maxConcurrentUpdates = 16;
     private final MetaClassWithKey<K, S> metaClass;
     private final Lazy<MongoCollection<Document>> objectCollection;
     private final Lazy<MongoCollection<Document>> notificationCollection;
@@ -61,39 +80,70 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
     private final Lazy<Codec<Document>> docCodec;
     private final CodecRegistry codecRegistry;
     private final MetaClassFieldMapper fieldMapper;
+    private final MetaObjectResolver objectResolver;
+    private final MongoSequence sequence;
+    private final Completable notificationCollectionReady;
+    private final AtomicReference<MongoChangeStream> objectChangeStream = new AtomicReference<>();
+    private final AtomicReference<MongoChangeStream> notificationChangeStream = new AtomicReference<>();
 
-    MongoEntityQueryProvider(MetaClassWithKey<K, S> metaClass, MongoDatabase database, MetaClassFieldMapper fieldMapper) {
+    MongoEntityQueryProvider(MetaClassWithKey<K, S> metaClass, MongoDatabase database, MetaClassFieldMapper fieldMapper, MetaObjectResolver objectResolver, MongoSequence sequence, MongoNotificationRetention notificationRetention) {
         this.metaClass = metaClass;
         this.codecRegistry = database.getCodecRegistry();
         this.codec = Lazy.of(() -> codecRegistry.get(metaClass.asClass()));
         this.database = database;
         this.docCodec = Lazy.of(() -> codecRegistry.get(Document.class));
         this.fieldMapper = fieldMapper;
+        this.objectResolver = objectResolver;
+        this.sequence = sequence;
         this.objectCollection = Lazy.of(() -> database.getCollection(metaClass.simpleName()));
         this.notificationCollection = Lazy.of(() -> database.getCollection(metaClass.simpleName() + ".updates"));
+        this.notificationCollectionReady = notificationRetention.setUp(database, metaClass.simpleName() + ".updates").cache();
     }
 
     private Maybe<Document> findDocument(K key) {
         return Observable.fromPublisher(objectCollection.get()
                 .aggregate(MongoPipeline.builder()
-                        .lookupAndUnwindReferences(metaClass)
                         .match(MongoPipeline.filterForKey(key))
                         .limit(1L)
+                        .lookupAndUnwindReferences(metaClass)
                         .build()))
                 .firstElement();
     }
 
+    @Override
+    public Observable<S> findByKeys(Iterable<K> keys) {
+        return Observable.defer(() -> {
+            List<K> keyList = ImmutableList.copyOf(keys);
+            if (keyList.isEmpty()) {
+                return Observable.empty();
+            }
+            return Observable.fromPublisher(objectCollection.get()
+                    .aggregate(MongoPipeline.builder()
+                            .match(MongoPipeline.filterForKeys(keyList))
+                            .lookupAndUnwindReferences(metaClass)
+                            .build()))
+                    .buffer(decodeBatchSize)
+                    .concatMapSingle(docs -> objectsFromDocuments(docs, metaClass.asType()))
+                    .concatMapIterable(objects -> objects);
+        });
+    }
+
     @Override
     public Completable insert(Iterable<S> entities, boolean recursive) {
-        List<Document> documents = Streams
-                .fromIterable(entities)
-                .map(e -> objectToDocument(e, 0))
-                .collect(Collectors.toList());
-
-        return Completable
-                .fromPublisher(objectCollection.get().insertMany(documents))
-                .doOnSubscribe(d -> log.debug("Inserting {} documents", documents.size()))
-                .doOnComplete(() -> log.debug("Insert of {} documents complete", documents.size()))
+        List<S> entityList = ImmutableList.copyOf(entities);
+        if (entityList.isEmpty()) {
+            return Completable.complete();
+        }
+
+        return sequence.next(entityList.size())
+                .map(firstSeqNum -> IntStream
+                        .range(0, entityList.size())
+                        .mapToObj(i -> objectToDocument(entityList.get(i), 0, firstSeqNum + i))
+                        .collect(Collectors.toList()))
+                .flatMapCompletable(documents -> Completable
+                        .fromPublisher(objectCollection.get().insertMany(documents))
+                        .doOnSubscribe(d -> log.debug("Inserting {} documents", documents.size()))
+                        .doOnComplete(() -> log.debug("Insert of {} documents complete", documents.size())))
                 .onErrorResumeNext(e -> Completable.error(convertError(e)));
     }
 
@@ -119,8 +169,9 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 .doOnSuccess(newObject::set)
                 .flatMap(newObj -> Objects.equals(newObj, oldObject.get())
                         ? Maybe.just(oldObject.get())
-                        : Maybe.just(newObj)
-                        .map(obj -> objectToDocument(obj, version.get() + 1))
+                        : sequence.next()
+                        .map(seqNum -> objectToDocument(newObj, version.get() + 1, seqNum))
+                        .toMaybe()
                         .doOnSuccess(newDoc::set)
                         .doOnSuccess(doc -> log.trace("Updating object: {}", doc))
                         .flatMap(doc -> Single
@@ -142,7 +193,9 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                         .defer(() -> update.apply(Maybe.empty()))
                         .doOnSuccess(newObject::set)
                         .doOnSuccess(doc -> log.trace("Creating new object: {}", doc))
-                        .map(obj -> objectToDocument(obj, version.get()))
+                        .flatMap(obj -> sequence.next()
+                                .map(seqNum -> objectToDocument(obj, version.get(), seqNum))
+                                .toMaybe())
                         .flatMap(doc -> Single.fromPublisher(objectCollection.get()
                                 .insertOne(doc))
                                 .doOnSuccess(res -> log.trace("Insert result: {}", res))
@@ -154,12 +207,117 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 .map(e -> () -> e);
     }
 
+    // Entities are upserted with a single unordered bulk write, guarded by versions of existing documents.
+    // Only entities, which were modified concurrently or repeated within the batch, fall back to per-entity path.
+    @Override
+    public Completable insertOrUpdate(Iterable<S> entities, boolean recursive) {
+        return Completable.defer(() -> {
+            Map<K, S> batch = new LinkedHashMap<>();
+            List<S> repeated = new ArrayList<>();
+            entities.forEach(entity -> {
+                if (batch.putIfAbsent(metaClass.keyOf(entity), entity) != null) {
+                    repeated.add(entity);
+                }
+            });
+            if (batch.isEmpty()) {
+                return Completable.complete();
+            }
+            return Observable.fromPublisher(objectCollection.get()
+                    .aggregate(MongoPipeline.builder()
+                            .match(MongoPipeline.filterForKeys(batch.keySet()))
+                            .lookupAndUnwindReferences(metaClass)
+                            .build()))
+                    .toList()
+                    .flatMap(docs -> bulkUpsert(batch, docs))
+                    .flatMapCompletable(conflicting -> Observable
+                            .fromIterable(Iterables.concat(conflicting, repeated))
+                            .concatMapCompletable(entity -> insertOrUpdate(entity, recursive).ignoreElement()));
+        });
+    }
+
+    private Single<List<S>> bulkUpsert(Map<K, S> entities, List<Document> existingDocs) {
+        return Single.zip(
+                objectsFromDocuments(existingDocs, metaClass.asType()),
+                sequence.next(entities.size()),
+                (existingObjects, firstSeqNum) -> upsertDocuments(entities, existingDocs, existingObjects, firstSeqNum))
+                .flatMap(conflicting -> conflicting);
+    }
+
+    private Single<List<S>> upsertDocuments(Map<K, S> entities, List<Document> existingDocs, List<S> existingObjects, long firstSeqNum) {
+        AtomicLong nextSeqNum = new AtomicLong(firstSeqNum);
+        Map<K, Integer> existingIndexes = new HashMap<>();
+        for (int i = 0; i < existingObjects.size(); ++i) {
+            existingIndexes.put(metaClass.keyOf(existingObjects.get(i)), i);
+        }
+
+        List<S> written = new ArrayList<>();
+        List<ReplaceOneModel<Document>> replacements = new ArrayList<>();
+        List<Document> notifications = new ArrayList<>();
+        ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+        entities.forEach((key, entity) -> {
+            Integer index = existingIndexes.get(key);
+            if (index == null) {
+                // Version filter never matches, so upsert fails with duplicate key if the document was inserted concurrently
+                Document newDoc = objectToDocument(entity, 0, nextSeqNum.getAndIncrement());
+                replacements.add(new ReplaceOneModel<>(MongoPipeline.filterForKeyAndVersion(newDoc.get("_id"), -1L), newDoc, upsert));
+                notifications.add(null);
+            } else {
+                S oldObject = existingObjects.get(index);
+                S newObject = MetaClasses.merge(metaClass, oldObject, entity);
+                if (Objects.equals(oldObject, newObject)) {
+                    return;
+                }
+                Document oldDoc = existingDocs.get(index);
+                long version = oldDoc.getLong(fieldMapper.versionField());
+                Document newDoc = objectToDocument(newObject, version + 1, nextSeqNum.getAndIncrement());
+                replacements.add(new ReplaceOneModel<>(MongoPipeline.filterForKeyAndVersion(oldDoc.get("_id"), version), newDoc, upsert));
+                notifications.add(createNotification(oldDoc, newDoc));
+            }
+            written.add(entity);
+        });
+
+        if (replacements.isEmpty()) {
+            return Single.just(Collections.<S>emptyList());
+        }
+
+        return Single
+                .fromPublisher(objectCollection.get().bulkWrite(replacements, new BulkWriteOptions().ordered(false)))
+                .doOnSuccess(res -> log.trace("Bulk upsert result: {}", res))
+                .map(res -> Collections.<Integer>emptySet())
+                .onErrorResumeNext((Throwable e) -> conflictingIndexes(e)
+                        .map(Single::just)
+                        .orElseGet(() -> Single.error(e)))
+                .flatMap(conflicts -> publish(IntStream
+                        .range(0, notifications.size())
+                        .filter(i -> !conflicts.contains(i) && notifications.get(i) != null)
+                        .mapToObj(notifications::get)
+                        .collect(Collectors.toList()))
+                        .andThen(Single.fromCallable(() -> conflicts
+                                .stream()
+                                .sorted()
+                                .map(written::get)
+                                .collect(Collectors.toList()))));
+    }
+
     @Override
     public <T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
         return queryDocuments(query)
                 .doOnNext(doc -> log.debug("Retrieved document: {}", doc))
-                .map(doc -> objectFromDocument(doc, query.objectType()))
-                .map(obj -> Notification.ofCreated(obj, 0L));
+                .buffer(decodeBatchSize)
+                .concatMapSingle(docs -> notificationsFromDocuments(docs, query.objectType()))
+                .concatMapIterable(notifications -> notifications);
+    }
+
+    @Override
+    public <T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+        return Flowable
+                .fromPublisher(objectCollection.get()
+                        .aggregate(MongoPipeline.aggregationPipeline(query))
+                        .batchSize(fetchSize))
+                .doOnNext(doc -> log.debug("Retrieved document: {}", doc))
+                .buffer(Math.max(1, fetchSize))
+                .concatMapSingle(docs -> notificationsFromDocuments(docs, query.objectType()))
+                .concatMapIterable(notifications -> notifications);
     }
 
     @SuppressWarnings("unchecked")
@@ -189,20 +347,19 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 .aggregate(MongoPipeline.aggregationPipeline(query)));
     }
 
+    // Single pair of change streams per collection is shared by all live queries. Predicates are not
+    // pushed down, since live queries are filtered by subscribers (see LiveQueryProviderDecorator)
     @Override
     public <T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
-        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
+        java.util.function.Function<S, T> mapper = ExpressionCache.compile(query.mapping());
 
-        Observable<Notification<S>> modifications = Observable.fromPublisher(notificationCollection.get().watch())
+        Observable<Notification<S>> modifications = changeStream(notificationChangeStream, notificationCollection.get(), MongoPipeline.notificationChangesFilter())
                 .map(ChangeStreamDocument::getFullDocument)
                 .doOnNext(d -> log.trace("New update: {}", d.toJson()))
-                .map(this::notificationFromDocument)
+                .concatMapSingle(this::notificationFromDocument)
                 .filter(n -> !Objects.equals(n.oldValue(), n.newValue()));
 
-        Observable<Notification<S>> insertions = Observable
-                .fromPublisher(objectCollection
-                        .get()
-                        .watch())
+        Observable<Notification<S>> insertions = changeStream(objectChangeStream, objectCollection.get(), MongoPipeline.objectChangesFilter())
                 .doOnNext(d -> log.trace("Change detected: {}", d))
                 .flatMapMaybe(this::notificationFromChangeDocument);
 
@@ -210,12 +367,34 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 .map(n -> n.map(mapper));
     }
 
+    // Change stream is created lazily, so the one discarded by concurrent subscriber is never opened
+    private Observable<ChangeStreamDocument<Document>> changeStream(AtomicReference<MongoChangeStream> changeStream, MongoCollection<Document> collection, Document filter) {
+        return Observable.defer(() -> changeStream
+                .updateAndGet(current -> current != null
+                        ? current
+                        : new MongoChangeStream(
+                                collection,
+                                Collections.singletonList(new Document("$match", filter)),
+                                stream -> changeStream.compareAndSet(stream, null)))
+                .observe());
+    }
+
     private Completable publish(Document oldDoc, Document newDoc) {
-        return Completable.fromPublisher(notificationCollection.get()
-                .insertOne(createNotification(oldDoc, newDoc)));
+        return notificationCollectionReady.andThen(Completable.fromPublisher(notificationCollection.get()
+                .insertOne(createNotification(oldDoc, newDoc))));
+    }
+
+    private Completable publish(List<Document> notificationDocuments) {
+        return notificationDocuments.isEmpty()
+                ? Completable.complete()
+                : notificationCollectionReady.andThen(Completable.fromPublisher(notificationCollection.get().insertMany(notificationDocuments)));
     }
 
     private Document createNotification(Document oldDoc, Document newDoc) {
+        return createNotification(oldDoc, newDoc, sequenceNumberOf(newDoc));
+    }
+
+    private Document createNotification(Document oldDoc, Document newDoc, long sequenceNumber) {
         Object id = Optionals.or(
                 () -> Optional.ofNullable(newDoc),
                 () -> Optional.ofNullable(oldDoc))
@@ -224,26 +403,103 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
 
         return new Document("key", id)
                 .append("oldValue", oldDoc)
-                .append("newValue", newDoc);
-    }
-
-    private Completable publishNotification(Document notificationDocument) {
-        return Completable
-                .fromPublisher(notificationCollection.get()
-                .insertOne(notificationDocument));
+                .append("newValue", newDoc)
+                .append(MongoPipeline.sequenceNumberField, sequenceNumber)
+                .append(MongoNotificationRetention.timestampField, new Date());
     }
 
+    // Matching documents are selected together with their updated values, which are evaluated by
+    // aggregation pipeline (so they can refer to looked up references). Documents are updated in chunks,
+    // with concurrent version-guarded writes, and notifications of each chunk are published in bulk.
+    // Documents, which were modified concurrently, are selected by key and updated again.
     @Override
     public Single<Integer> update(UpdateInfo<K, S> updateInfo) {
-        return Single.error(() -> new UnsupportedOperationException("Not supported yet"));
-//        return Observable.fromPublisher(objectCollection.get()
-//                .updateMany(
-//                        MongoPipeline.expr(updateInfo.predicate()),
-//                        MongoPipeline.setFields(updateInfo.propertyUpdates())))
-//                .map(UpdateResult::getModifiedCount)
-//                .firstElement()
-//                .map(Long::intValue)
-//                .toSingle(0);
+        List<String> fields = MongoPipeline.updatedFields(updateInfo);
+        return fields.isEmpty()
+                ? Single.just(0)
+                : updateMatching(updateInfo, fields, null, 1);
+    }
+
+    private Single<Integer> updateMatching(UpdateInfo<K, S> updateInfo, List<String> fields, @Nullable List<Object> keys, int attempt) {
+        return Single.defer(() -> {
+            MongoPipeline.Builder pipeline = MongoPipeline.builder();
+            Optional.ofNullable(keys).map(MongoPipeline::filterForKeys).ifPresent(pipeline::match);
+            // Document, which was updated and moved during the pass, may be returned again by the cursor
+            Set<Object> selectedKeys = new HashSet<>();
+            return Observable.fromPublisher(objectCollection.get()
+                    .aggregate(pipeline
+                            .lookupAndUnwindReferences(metaClass)
+                            .match(updateInfo.predicate())
+                            .limit(keys == null ? updateInfo.limit() : null)
+                            .addFields(new Document(MongoPipeline.updateField, MongoPipeline.updatedValues(updateInfo)))
+                            .build()))
+                    .filter(doc -> selectedKeys.add(doc.get("_id")))
+                    .buffer(decodeBatchSize)
+                    .concatMapSingle(docs -> sequence.next(docs.size()).flatMap(firstSeqNum -> updateDocuments(docs, fields, firstSeqNum)))
+                    .toList()
+                    .flatMap(chunks -> {
+                        int count = chunks.stream().mapToInt(chunk -> chunk.updatedCount).sum();
+                        List<Object> conflictingKeys = chunks.stream()
+                                .flatMap(chunk -> chunk.conflictingKeys.stream())
+                                .collect(Collectors.toList());
+                        if (conflictingKeys.isEmpty()) {
+                            return Single.just(count);
+                        }
+                        if (attempt >= maxUpdateAttempts) {
+                            return Single.error(new ConcurrentModificationException("Concurrent modification of " +
+                                    conflictingKeys.size() + " " + metaClass.simpleName() + " objects detected"));
+                        }
+                        log.debug("Retrying update of {} concurrently modified documents", conflictingKeys.size());
+                        return updateMatching(updateInfo, fields, conflictingKeys, attempt + 1).map(retried -> count + retried);
+                    });
+        });
+    }
+
+    // Every document is updated with findOneAndUpdate guarded by its version, which tells exactly whether
+    // the update was applied (and returns the updated document), or the document was modified (or deleted)
+    // concurrently, so only the latter are retried and no update is applied twice
+    private Single<UpdatedChunk> updateDocuments(List<Document> oldDocs, List<String> fields, long firstSeqNum) {
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+        return Observable.range(0, oldDocs.size())
+                .concatMapEager(i -> {
+                    Document oldDoc = oldDocs.get(i);
+                    Document values = (Document)oldDoc.remove(MongoPipeline.updateField);
+                    long version = oldDoc.getLong(fieldMapper.versionField());
+                    return Observable
+                            .fromPublisher(objectCollection.get().findOneAndUpdate(
+                                    MongoPipeline.filterForKeyAndVersion(oldDoc.get("_id"), version),
+                                    MongoPipeline.setFields(fields, values, firstSeqNum + i),
+                                    options))
+                            .map(Optional::of)
+                            .first(Optional.empty())
+                            .toObservable();
+                }, maxConcurrentUpdates, 1)
+                .toList()
+                .flatMap(newDocs -> {
+                    List<Document> notifications = new ArrayList<>();
+                    List<Object> conflictingKeys = new ArrayList<>();
+                    for (int i = 0; i < oldDocs.size(); ++i) {
+                        Document oldDoc = oldDocs.get(i);
+                        Optional<Document> newDoc = newDocs.get(i);
+                        if (newDoc.isPresent()) {
+                            notifications.add(createNotification(oldDoc, newDoc.get()));
+                        } else {
+                            conflictingKeys.add(oldDoc.get("_id"));
+                        }
+                    }
+                    log.trace("Updated {} of {} documents", notifications.size(), oldDocs.size());
+                    return publish(notifications).andThen(Single.just(new UpdatedChunk(notifications.size(), conflictingKeys)));
+                });
+    }
+
+    private static class UpdatedChunk {
+        private final int updatedCount;
+        private final List<Object> conflictingKeys;
+
+        private UpdatedChunk(int updatedCount, List<Object> conflictingKeys) {
+            this.updatedCount = updatedCount;
+            this.conflictingKeys = conflictingKeys;
+        }
     }
 
     @Override
@@ -254,8 +510,13 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 .predicate(deleteInfo.predicate())
                 .limit(deleteInfo.limit())
                 .build())
-                .map(doc -> createNotification(doc, doc))
-                .flatMapCompletable(this::publishNotification)
+                .toList()
+                .flatMapCompletable(docs -> docs.isEmpty()
+                        ? Completable.complete()
+                        : sequence.next(docs.size()).flatMapCompletable(firstSeqNum -> publish(IntStream
+                                .range(0, docs.size())
+                                .mapToObj(i -> createNotification(docs.get(i), docs.get(i), firstSeqNum + i))
+                                .collect(Collectors.toList()))))
                 .andThen(Observable.fromPublisher(objectCollection.get()
                         .deleteMany(MongoPipeline.expr(deleteInfo.predicate())))
                         .map(DeleteResult::getDeletedCount)
@@ -275,6 +536,17 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 : e;
     }
 
+    // Indexes of failed writes, if all of them failed due to concurrent modification
+    private static Optional<Set<Integer>> conflictingIndexes(Throwable e) {
+        if (!(e instanceof MongoBulkWriteException)) {
+            return Optional.empty();
+        }
+        List<BulkWriteError> errors = ((MongoBulkWriteException)e).getWriteErrors();
+        return errors.stream().allMatch(error -> error.getCategory() == ErrorCategory.DUPLICATE_KEY)
+                ? Optional.of(errors.stream().map(BulkWriteError::getIndex).collect(Collectors.toSet()))
+                : Optional.empty();
+    }
+
     private static boolean isDuplicateKeyException(Throwable e) {
         return e instanceof DuplicateKeyException ||
                 (e instanceof MongoWriteException && ((MongoWriteException)e).getError().getCategory() == ErrorCategory.DUPLICATE_KEY) ||
@@ -285,11 +557,16 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                         .anyMatch(ErrorCategory.DUPLICATE_KEY::equals));
     }
 
-    private Notification<S> notificationFromDocument(Document document) {
-        return Notification.ofModified(
-                toObject(document.get("oldValue"), metaClass.asType()),
-                toObject(document.get("newValue"), metaClass.asType()),
-                sequenceNumber());
+    private Single<Notification<S>> notificationFromDocument(Document document) {
+        Object oldValue = document.get("oldValue");
+        Object newValue = document.get("newValue");
+        return withResolvedReferences(
+                Arrays.asList(oldValue, newValue),
+                metaClass.asType(),
+                () -> Notification.ofModified(
+                        toObject(oldValue, metaClass.asType()),
+                        toObject(newValue, metaClass.asType()),
+                        sequenceNumberOf(document)));
     }
 
     private <T> T toObject(Object object, TypeToken<T> type) {
@@ -313,11 +590,13 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
 
     private Maybe<Notification<S>> notificationFromChangeDocument(ChangeStreamDocument<Document> changeDoc) {
         if (changeDoc.getOperationType() == OperationType.INSERT) {
-            S object = Optional
-                    .ofNullable(changeDoc.getFullDocument())
-                    .map(this::objectFromDocument)
-                    .orElse(null);
-            return Maybe.just(Notification.ofCreated(object, sequenceNumber()));
+            Document document = changeDoc.getFullDocument();
+            if (document == null) {
+                return Maybe.just(Notification.ofCreated(null, 0L));
+            }
+            return notificationsFromDocuments(Collections.singletonList(document), metaClass.asType())
+                    .map(notifications -> notifications.get(0))
+                    .toMaybe();
         } else if (changeDoc.getOperationType() == OperationType.DELETE) {
             Object key = Optional.of(changeDoc.getDocumentKey())
                     .map(doc -> doc.get("_id"))
@@ -326,24 +605,81 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
             return Observable.fromPublisher(notificationCollection.get()
                     .aggregate(MongoPipeline.builder()
                             .match(MongoPipeline.filterForField("key", key))
-                            .replaceRoot("$newValue")
-                            .sort(new Document(fieldMapper.versionField(), -1))
+                            .sort(new Document(MongoPipeline.sequenceNumberField, -1))
                             .limit(1L)
                             .build()))
                     .firstElement()
-                    .map(this::objectFromDocument)
-                    .map(obj -> Notification.ofDeleted(obj, sequenceNumber()));
+                    .map(doc -> Notification.ofDeleted(objectFromDocument(doc.get("newValue", Document.class)), sequenceNumberOf(doc)));
         }
         return Maybe.empty();
     }
 
-    private Document objectToDocument(S obj, long version) {
+    private <T> Single<List<Notification<T>>> notificationsFromDocuments(List<Document> documents, TypeToken<T> objectType) {
+        return objectsFromDocuments(documents, objectType).map(objects -> IntStream
+                .range(0, objects.size())
+                .mapToObj(i -> Notification.ofCreated(objects.get(i), sequenceNumberOf(documents.get(i))))
+                .collect(Collectors.toList()));
+    }
+
+    private <T> Single<List<T>> objectsFromDocuments(List<Document> documents, TypeToken<T> objectType) {
+        return withResolvedReferences(documents, objectType, () -> documents
+                .stream()
+                .map(doc -> objectFromDocument(doc, objectType))
+                .collect(Collectors.toList()));
+    }
+
+    // References left unresolved by $lookup are collected from the whole batch and resolved
+    // with a single query per referenced meta class, instead of a blocking query per reference
+    private <T> Single<T> withResolvedReferences(Collection<?> values, TypeToken<?> objectType, Callable<T> decoder) {
+        MetaReferences.Builder references = MetaReferences.builder();
+        if (PropertyMetas.hasMetaClass(objectType)) {
+            MetaClass<?> objectMetaClass = MetaClasses.forTokenUnchecked(objectType);
+            values.stream()
+                    .filter(Document.class::isInstance)
+                    .forEach(doc -> collectReferences((Document)doc, objectMetaClass, references));
+        }
+        return references.isEmpty()
+                ? Single.fromCallable(decoder)
+                : references.resolve(objectResolver).map(resolved -> MetaClassCodec.withReferences(resolved, decoder));
+    }
+
+    private void collectReferences(Document document, MetaClass<?> documentMetaClass, MetaReferences.Builder references) {
+        document.forEach((name, value) -> {
+            if (value == null) {
+                return;
+            }
+            if (fieldMapper.isReferenceFieldName(name)) {
+                Optional.ofNullable(fieldMapper.fromReferenceFieldName(documentMetaClass, name))
+                        .map(PropertyMeta::type)
+                        .map(MetaClasses::forTokenWithKeyUnchecked)
+                        .ifPresent(referenceMetaClass -> addReference(references, referenceMetaClass, value));
+            } else if (value instanceof Document) {
+                Optional.ofNullable(fieldMapper.fromFieldName(documentMetaClass, name))
+                        .filter(PropertyMetas::hasMetaClass)
+                        .ifPresent(prop -> collectReferences((Document)value, MetaClasses.forTokenUnchecked(prop.type()), references));
+            }
+        });
+    }
+
+    private <_K, _S> void addReference(MetaReferences.Builder references, MetaClassWithKey<_K, _S> referenceMetaClass, Object value) {
+        references.add(referenceMetaClass, toObject(value, referenceMetaClass.keyProperty().type()));
+    }
+
+    private Document objectToDocument(S obj, long version, long sequenceNumber) {
         BsonDocument bson = new BsonDocument();
         codec.get().encode(new BsonDocumentWriter(bson), obj, EncoderContext.builder().build());
         bson.append(fieldMapper.versionField(), new BsonInt64(version));
+        bson.append(MongoPipeline.sequenceNumberField, new BsonInt64(sequenceNumber));
         return fromBson(bson);
     }
 
+    // Documents written before sequence numbers were introduced have no sequence number
+    private static long sequenceNumberOf(Document document) {
+        return Optional.ofNullable(document.get(MongoPipeline.sequenceNumberField, Number.class))
+                .map(Number::longValue)
+                .orElse(0L);
+    }
+
     private S objectFromDocument(Document doc) {
         return codec.get().decode(toBson(doc).asBsonReader(), DecoderContext.builder().build());
     }
@@ -404,8 +740,4 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
         }
 
     }
-
-    private long sequenceNumber() {
-        return 0L;
-    }
 }
@@ -46,8 +46,7 @@ class MongoExpressionAdapter extends ExpressionVisitor<Void, Object> {
             .put(Expression.Type.Max, args -> expr("$max", "$" + MongoPipeline.valueField))
             .put(Expression.Type.Sum, args -> expr("$sum", "$" + MongoPipeline.valueField))
             .put(Expression.Type.Average, args -> expr("$avg", "$" + MongoPipeline.valueField))
-            //.put(Expression.Type.SequenceNumber, args -> expr(MongoFieldMapper.instance.versionField()))
-            .put(Expression.Type.SequenceNumber, args -> expr("$toLong", 0))
+            .put(Expression.Type.SequenceNumber, args -> expr("$ifNull", reduceProperties(args[0], MongoPipeline.sequenceNumberField), 0L))
             .build();
 
     private final static ImmutableMap<Expression.OperationType, Reducer> operationTypeReducers = ImmutableMap
@@ -103,7 +102,7 @@ class MongoExpressionAdapter extends ExpressionVisitor<Void, Object> {
     private static Document searchText(Object target, Object searchExpr) {
         String[] parts = searchExpr.toString().split("\\s");
         return expr("$and", Stream.of(parts)
-                .map(p -> reduce(Expression.Type.Contains, target + MongoFieldMapper.instance.searchableTextField(), p))
+                .map(p -> reduce(Expression.Type.Contains, reduceProperties(target, MongoFieldMapper.instance.searchableTextField()), p))
                 .toArray(Object[]::new));
     }
 
@@ -0,0 +1,106 @@
+package com.slimgears.rxrepo.mongodb;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Retention of notification documents: either TTL index, which removes notifications older than
+// retention time, or capped collection of limited size. By default notifications are kept forever.
+class MongoNotificationRetention {
+    private final static Logger log = LoggerFactory.getLogger(MongoNotificationRetention.class);
+    private final static int namespaceExistsErrorCode = 48;
+    private final static int indexOptionsConflictErrorCode = 85;
+    final static String timestampField = "timestamp";
+    private final Duration retentionTime;
+    private final long collectionSize;
+
+    private MongoNotificationRetention(Duration retentionTime, long collectionSize) {
+        this.retentionTime = retentionTime;
+        this.collectionSize = collectionSize;
+    }
+
+    static MongoNotificationRetention unlimited() {
+        return new MongoNotificationRetention(null, 0);
+    }
+
+    static MongoNotificationRetention ofTime(Duration retentionTime) {
+        return new MongoNotificationRetention(retentionTime, 0);
+    }
+
+    static MongoNotificationRetention ofSize(long collectionSizeInBytes) {
+        return new MongoNotificationRetention(null, collectionSizeInBytes);
+    }
+
+    // Failure to set up retention is logged, but does not fail notification publishing.
+    // Existing collection is converted to capped, and expiration of existing TTL index is updated
+    Completable setUp(MongoDatabase database, String collectionName) {
+        MongoCollection<Document> collection = database.getCollection(collectionName);
+        Completable createCollection = collectionSize > 0
+                ? Completable
+                .fromPublisher(database.createCollection(collectionName, new CreateCollectionOptions().capped(true).sizeInBytes(collectionSize)))
+                .onErrorResumeNext(e -> isCommandError(e, namespaceExistsErrorCode)
+                        ? convertToCapped(database, collectionName)
+                        : Completable.error(e))
+                : Completable.complete();
+        Completable createKeyIndex = Completable.fromPublisher(collection.createIndex(Indexes.compoundIndex(
+                Indexes.ascending("key"),
+                Indexes.descending(MongoPipeline.sequenceNumberField))));
+        Completable createTtlIndex = retentionTime != null
+                ? Completable
+                .fromPublisher(collection.createIndex(
+                        Indexes.ascending(timestampField),
+                        new IndexOptions().expireAfter(retentionTime.getSeconds(), TimeUnit.SECONDS)))
+                .onErrorResumeNext(e -> isCommandError(e, indexOptionsConflictErrorCode)
+                        ? updateExpiration(database, collectionName)
+                        : Completable.error(e))
+                : Completable.complete();
+
+        return createCollection
+                .andThen(createKeyIndex)
+                .andThen(createTtlIndex)
+                .doOnError(e -> log.warn("Could not set up retention of notifications in {}", collectionName, e))
+                .onErrorComplete();
+    }
+
+    // Conversion keeps the newest documents, but drops indexes, so key index is created afterwards.
+    // Capped collection of different size is left as is, since resizing would copy it again on every start
+    private Completable convertToCapped(MongoDatabase database, String collectionName) {
+        return Flowable.fromPublisher(database.listCollections().filter(Filters.eq("name", collectionName)))
+                .firstElement()
+                .map(info -> info.get("options", new Document()))
+                .flatMapCompletable(options -> {
+                    if (!options.getBoolean("capped", false)) {
+                        log.info("Converting notification collection {} to capped collection of {} bytes", collectionName, collectionSize);
+                        return Completable.fromPublisher(database.runCommand(new Document("convertToCapped", collectionName).append("size", collectionSize)));
+                    }
+                    long existingSize = options.get("size", Number.class).longValue();
+                    if (existingSize != collectionSize) {
+                        log.warn("Notification collection {} is already capped to {} bytes, requested size of {} bytes is ignored", collectionName, existingSize, collectionSize);
+                    }
+                    return Completable.complete();
+                });
+    }
+
+    private Completable updateExpiration(MongoDatabase database, String collectionName) {
+        log.info("Updating expiration of notifications in {} to {} seconds", collectionName, retentionTime.getSeconds());
+        return Completable.fromPublisher(database.runCommand(new Document("collMod", collectionName)
+                .append("index", new Document("keyPattern", new Document(timestampField, 1))
+                        .append("expireAfterSeconds", retentionTime.getSeconds()))));
+    }
+
+    private static boolean isCommandError(Throwable e, int errorCode) {
+        return e instanceof MongoCommandException && ((MongoCommandException)e).getErrorCode() == errorCode;
+    }
+}
@@ -8,9 +8,13 @@ import com.slimgears.rxrepo.encoding.MetaClassFieldMapper;
 import com.slimgears.rxrepo.expressions.*;
 import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
 import com.slimgears.rxrepo.mongodb.adapter.MongoFieldMapper;
+import com.slimgears.rxrepo.query.provider.CollectionPropertyUpdateInfo;
+import com.slimgears.rxrepo.query.provider.HasPropertyUpdates;
 import com.slimgears.rxrepo.query.provider.PropertyUpdateInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfos;
 import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.rxrepo.util.PropertyReference;
 import com.slimgears.rxrepo.util.PropertyReferences;
@@ -34,6 +38,8 @@ public class MongoPipeline {
     public final static String aggregationField = "__aggregation";
     public final static String valueField = "__value";
     public final static String versionField = "__version";
+    public final static String updateField = "__update";
+    public final static String sequenceNumberField = "__sequenceNumber";
     private final static MetaClassFieldMapper fieldMapper = MongoFieldMapper.instance;
     private final static Logger log = LoggerFactory.getLogger(MongoPipeline.class);
 
@@ -55,7 +61,11 @@ public class MongoPipeline {
         }
 
         public Builder lookupAndUnwindReferences(MetaClass<?> metaClass) {
-            builder.addAll(PropertyReferences.forMetaClass(metaClass)
+            return lookupAndUnwindReferences(PropertyReferences.forMetaClass(metaClass));
+        }
+
+        public Builder lookupAndUnwindReferences(List<PropertyReference> references) {
+            builder.addAll(references
                     .stream()
                     .flatMap(pr -> Stream.of(
                             lookup(pr),
@@ -106,11 +116,17 @@ public class MongoPipeline {
 
         public Builder distinct() {
             builder.add(
+                    exclude(sequenceNumberField),
                     new Document("$group", new Document("_id", "$$ROOT")),
                     new Document("$replaceRoot", new Document("newRoot", "$_id")));
             return this;
         }
 
+        public Builder addFields(Document fields) {
+            builder.add(new Document("$addFields", fields));
+            return this;
+        }
+
         public Builder group(Document groupInfo) {
             builder.add(new Document("$group", groupInfo));
             return this;
@@ -146,6 +162,10 @@ public class MongoPipeline {
         return filterForField("_id", key);
     }
 
+    static <K> Document filterForKeys(Collection<K> keys) {
+        return filterForField("_id", new Document("$in", keys));
+    }
+
     static <T> Document filterForField(String field, T value) {
         return new Document(field, value);
     }
@@ -157,10 +177,20 @@ public class MongoPipeline {
 
     static <K, S, T> List<Document> aggregationPipeline(QueryInfo<K, S, T> queryInfo, Aggregator<T, T, ?> aggregator) {
         Builder builder = builder();
-        builder.lookupAndUnwindReferences(queryInfo.metaClass());
+        boolean matchBeforeLookup = Optional.ofNullable(queryInfo.predicate())
+                .map(p -> !refersToReferences(p))
+                .orElse(false);
+
+        if (matchBeforeLookup) {
+            builder.match(queryInfo.predicate());
+        }
 
-        Optional.ofNullable(queryInfo.predicate())
-                .ifPresent(builder::match);
+        builder.lookupAndUnwindReferences(requiredReferences(queryInfo, aggregator != null));
+
+        if (!matchBeforeLookup) {
+            Optional.ofNullable(queryInfo.predicate())
+                    .ifPresent(builder::match);
+        }
 
         Optional.of(queryInfo.sorting())
                 .filter(si -> !si.isEmpty())
@@ -192,6 +222,50 @@ public class MongoPipeline {
         return aggregationPipeline(queryInfo, null);
     }
 
+    // Query, which returns whole entities, requires all references to be looked up. Otherwise only references,
+    // which are used by predicate, sorting or mapping, or are part of the returned properties, are looked up
+    private static <K, S, T> List<PropertyReference> requiredReferences(QueryInfo<K, S, T> queryInfo, boolean aggregated) {
+        List<PropertyReference> references = PropertyReferences.forMetaClass(queryInfo.metaClass());
+        ObjectExpression<S, T> mapping = queryInfo.mapping();
+        boolean returnsEntities = !aggregated &&
+                queryInfo.properties().isEmpty() &&
+                (mapping == null || mapping instanceof ArgumentExpression);
+        if (returnsEntities || references.isEmpty()) {
+            return references;
+        }
+
+        Set<String> usedPaths = QueryInfos.allReferencedProperties(queryInfo)
+                .stream()
+                .map(PropertyExpressions::pathOf)
+                .collect(Collectors.toSet());
+
+        Set<String> returnedPaths = aggregated
+                ? Collections.emptySet()
+                : !queryInfo.properties().isEmpty()
+                ? PropertyExpressions.unmapProperties(queryInfo.properties(), mapping)
+                .stream()
+                .map(PropertyExpressions::pathOf)
+                .collect(Collectors.toSet())
+                : mapping instanceof PropertyExpression
+                ? Collections.singleton(PropertyExpressions.pathOf((PropertyExpression<?, ?, ?>)mapping))
+                : Collections.emptySet();
+
+        return references
+                .stream()
+                .filter(pr -> {
+                    String path = pr.referencePath() + pr.property().name();
+                    return usedPaths.stream().anyMatch(p -> p.equals(path) || p.startsWith(path + ".")) ||
+                            returnedPaths.stream().anyMatch(p -> path.startsWith(p + "."));
+                })
+                .collect(Collectors.toList());
+    }
+
+    // References are resolved only by $lookup, so predicates, which refer to references,
+    // cannot be evaluated against stored documents
+    private static boolean refersToReferences(ObjectExpression<?, ?> expression) {
+        return PropertyExpressions.allReferencedProperties(expression).stream().anyMatch(PropertyExpressions::isReference);
+    }
+
     static Document limit(Long limit) {
         return Optional
                 .ofNullable(limit)
@@ -207,10 +281,44 @@ public class MongoPipeline {
         return new Document("$expr", toExpression(expr));
     }
 
-    static <T> Document setFields(ImmutableList<PropertyUpdateInfo<T, ?, ?>> propertyUpdates) {
-        Document fields = new Document();
-        propertyUpdates.forEach(pu -> fields.append(propertyToString(pu.property()), toExpression(pu.updater())));
-        return new Document("$set", fields);
+    // Change streams are shared by all live queries of the collection, so only event types are filtered
+    // on server side, and live query predicates are applied to the notifications by subscribers.
+    // Change stream of objects reports inserts (with full document) and deletes (with key only)
+    static Document objectChangesFilter() {
+        return new Document("operationType", new Document("$in", Arrays.asList("insert", "delete")));
+    }
+
+    // Notifications, which do not modify the object (published on delete), are filtered out
+    static Document notificationChangesFilter() {
+        return new Document("operationType", "insert")
+                .append("$expr", new Document("$ne", Arrays.asList("$fullDocument.oldValue", "$fullDocument.newValue")));
+    }
+
+    // Updated values are evaluated in pipeline, so they can refer to looked up references.
+    // Value of n-th updated field (see updatedFields()) is stored under key "n"
+    static <T> Document updatedValues(HasPropertyUpdates<T> updates) {
+        Document values = new Document();
+        updates.propertyUpdates().forEach(pu -> values.append(String.valueOf(values.size()), toExpression(pu.updater())));
+        updates.collectionPropertyUpdates().forEach(cpu -> values.append(String.valueOf(values.size()), toCollectionUpdate(cpu)));
+        return values;
+    }
+
+    static <T> List<String> updatedFields(HasPropertyUpdates<T> updates) {
+        return Stream.<PropertyExpression<T, ?, ?>>concat(
+                updates.propertyUpdates().stream().map(PropertyUpdateInfo::property),
+                updates.collectionPropertyUpdates().stream().map(CollectionPropertyUpdateInfo::property))
+                .map(MongoPipeline::propertyToString)
+                .collect(Collectors.toList());
+    }
+
+    static Document setFields(List<String> fields, Document values, long sequenceNumber) {
+        Document fieldValues = new Document();
+        for (int i = 0; i < fields.size(); ++i) {
+            fieldValues.append(fields.get(i), values.get(String.valueOf(i)));
+        }
+        fieldValues.append(sequenceNumberField, sequenceNumber);
+        return new Document("$set", fieldValues)
+                .append("$inc", new Document(fieldMapper.versionField(), 1L));
     }
 
     static <T> Document aggregation(TypeToken<T> type, Aggregator<T, T, ?> aggregator) {
@@ -229,6 +337,19 @@ public class MongoPipeline {
         return new MongoExpressionAdapter().visit(expression, null);
     }
 
+    private static Object toCollectionUpdate(CollectionPropertyUpdateInfo<?, ?, ?, ?> update) {
+        Object collection = new Document("$ifNull", Arrays.asList("$" + propertyToString(update.property()), Collections.emptyList()));
+        Object item = toExpression(update.item());
+        if (update.operation() == CollectionPropertyUpdateInfo.Operation.Remove) {
+            return new Document("$filter", new Document()
+                    .append("input", collection)
+                    .append("cond", new Document("$ne", Arrays.asList("$$this", item))));
+        }
+        return Set.class.isAssignableFrom(update.property().reflect().objectType().getRawType())
+                ? new Document("$setUnion", Arrays.asList(collection, Collections.singletonList(item)))
+                : new Document("$concatArrays", Arrays.asList(collection, Collections.singletonList(item)));
+    }
+
     private static Document exclude(String... fields) {
         Document excluded = new Document();
         Arrays.asList(fields).forEach(f -> excluded.append(f, 0));
@@ -287,6 +408,7 @@ public class MongoPipeline {
                 .forEach(props::remove);
 
         props.forEach(p -> projection.append(p, 1));
+        projection.append(sequenceNumberField, 1);
         return projection;
     }
 
@@ -7,27 +7,27 @@ import com.mongodb.reactivestreams.client.MongoClients;
 import com.mongodb.reactivestreams.client.MongoDatabase;
 import com.slimgears.rxrepo.encoding.MetaObjectResolver;
 import com.slimgears.rxrepo.encoding.codecs.MetaClassCodec;
-import com.slimgears.rxrepo.expressions.ObjectExpression;
-import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.mongodb.adapter.MongoFieldMapper;
 import com.slimgears.rxrepo.mongodb.adapter.StandardCodecs;
-import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.AbstractEntityQueryProviderAdapter;
 import com.slimgears.rxrepo.query.provider.EntityQueryProvider;
-import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
+import io.reactivex.Observable;
 
+import java.util.Collections;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
     private final MongoClient client;
     private final MongoDatabase database;
+    private final MongoSequence sequence;
+    private final MongoNotificationRetention notificationRetention;
+    private final MetaObjectResolver objectResolver = new ObjectResolver();
     private final AtomicBoolean isClosed = new AtomicBoolean(false);
 
-    MongoQueryProvider(String connectionString, String dbName, int maxConnections) {
-        MetaObjectResolver objectResolver = new ObjectResolver();
+    MongoQueryProvider(String connectionString, String dbName, int maxConnections, MongoNotificationRetention notificationRetention) {
         this.client = MetaClassCodec.withResolver(
                 objectResolver,
                 () -> MongoClients.create(MongoClientSettings
@@ -37,6 +37,8 @@ public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
                         .codecRegistry(StandardCodecs.registry())
                         .build()));
         this.database = client.getDatabase(dbName);
+        this.sequence = new MongoSequence(database, "sequenceNumber");
+        this.notificationRetention = notificationRetention;
     }
 
     @Override
@@ -49,7 +51,7 @@ public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
 
     @Override
     protected <K, S> EntityQueryProvider<K, S> createProvider(MetaClassWithKey<K, S> metaClass) {
-        return new MongoEntityQueryProvider<>(metaClass, database, MongoFieldMapper.instance);
+        return new MongoEntityQueryProvider<>(metaClass, database, MongoFieldMapper.instance, objectResolver, sequence, notificationRetention);
     }
 
     @Override
@@ -64,13 +66,16 @@ public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
                 return Maybe.empty();
             }
             return entities(metaClass)
-                    .query(QueryInfo.<K, S, S>builder()
-                            .metaClass(metaClass)
-                            .predicate(PropertyExpression.ofObject(ObjectExpression.arg(metaClass.asType()), metaClass.keyProperty()).eq(key))
-                            .limit(1L)
-                            .build())
-                    .map(Notification::newValue)
+                    .findByKeys(Collections.singleton(key))
                     .firstElement();
         }
+
+        @Override
+        public <K, S> Observable<S> resolveAll(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+            if (isClosed.get()) {
+                return Observable.empty();
+            }
+            return entities(metaClass).findByKeys(keys);
+        }
     }
 }
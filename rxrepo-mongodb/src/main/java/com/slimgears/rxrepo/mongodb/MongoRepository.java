@@ -26,6 +26,8 @@ public class MongoRepository {
         private String user = null;
         private String password = null;
         private QueryProvider.Decorator decorator = QueryProvider.Decorator.identity();
+        private QueryProvider.Decorator underlyingDecorator = QueryProvider.Decorator.identity();
+        private MongoNotificationRetention notificationRetention = MongoNotificationRetention.unlimited();
 
         private Builder() {
         }
@@ -60,19 +62,38 @@ public class MongoRepository {
             return this;
         }
 
+        // Notifications older than retention time are removed by TTL index
+        public Builder notificationRetention(Duration retentionTime) {
+            this.notificationRetention = MongoNotificationRetention.ofTime(retentionTime);
+            return this;
+        }
+
+        // Notifications are stored in capped collection, so the oldest notifications are removed once size limit is reached
+        public Builder notificationCollectionSize(long sizeInBytes) {
+            this.notificationRetention = MongoNotificationRetention.ofSize(sizeInBytes);
+            return this;
+        }
+
         public Builder decorate(QueryProvider.Decorator... decorators) {
             decorator = QueryProvider.Decorator.of(this.decorator, QueryProvider.Decorator.of(decorators));
             return this;
         }
 
+        // Decorates provider below live query decorator, so upstream live queries are visible
+        Builder decorateUnderlying(QueryProvider.Decorator... decorators) {
+            underlyingDecorator = QueryProvider.Decorator.of(this.underlyingDecorator, QueryProvider.Decorator.of(decorators));
+            return this;
+        }
+
         public Repository build() {
             return build(DefaultRepository.defaultConfig);
         }
 
         public Repository build(RepositoryConfigModel config) {
             String connectionString = createConnectionString();
-            QueryProvider queryProvider = new MongoQueryProvider(connectionString, dbName, maxConcurrentRequests * 2);
+            QueryProvider queryProvider = new MongoQueryProvider(connectionString, dbName, maxConcurrentRequests * 2, notificationRetention);
             return Repository.fromProvider(queryProvider,
+                    underlyingDecorator,
                     RetryOnConcurrentConflictQueryProviderDecorator.create(Duration.ofMillis(config.retryInitialDurationMillis()), config.retryCount()),
                     LiveQueryProviderDecorator.create(Duration.ofMillis(config.aggregationDebounceTimeMillis())),
                     decorator,
@@ -0,0 +1,101 @@
+package com.slimgears.rxrepo.mongodb;
+
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Monotonic sequence, shared by all entity providers of the database.
+// Numbers are reserved in ranges with atomic $inc of the counter document. Only one $inc per sequence
+// is in flight at a time: reservations, requested while it is in flight, are combined into the next one,
+// so concurrent writers do not queue on the counter document one round trip each.
+// Numbers follow the order of reservation, not the order of commit: with concurrent writers a change
+// with lower number may become visible after a change with higher number. Numbers are unique, but a query
+// result does not necessarily include every change below its highest sequence number, so queryAndObserve()
+// may skip a change, which is committed concurrently with the query by another writer (see Queries.queryAndObserve()).
+class MongoSequence {
+    private final static String collectionName = "__counters";
+    private final static String valueField = "value";
+    private final MongoDatabase database;
+    private final String name;
+    private final Queue<Reservation> pendingReservations = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean reservationInFlight = new AtomicBoolean();
+
+    MongoSequence(MongoDatabase database, String name) {
+        this.database = database;
+        this.name = name;
+    }
+
+    Single<Long> next() {
+        return next(1);
+    }
+
+    // Reserves count sequence numbers and returns the first of them
+    Single<Long> next(int count) {
+        return Single.create(emitter -> {
+            pendingReservations.add(new Reservation(count, emitter));
+            drain();
+        });
+    }
+
+    private void drain() {
+        while (!pendingReservations.isEmpty() && reservationInFlight.compareAndSet(false, true)) {
+            List<Reservation> reservations = new ArrayList<>();
+            for (Reservation reservation = pendingReservations.poll(); reservation != null; reservation = pendingReservations.poll()) {
+                reservations.add(reservation);
+            }
+            if (!reservations.isEmpty()) {
+                reserve(reservations);
+                return;
+            }
+            reservationInFlight.set(false);
+        }
+    }
+
+    private void reserve(List<Reservation> reservations) {
+        long count = reservations.stream().mapToLong(reservation -> reservation.count).sum();
+        Single
+                .fromPublisher(collection().findOneAndUpdate(
+                        MongoPipeline.filterForKey(name),
+                        Updates.inc(valueField, count),
+                        new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER)))
+                .map(doc -> ((Number)doc.get(valueField)).longValue() - count + 1)
+                .doFinally(() -> {
+                    reservationInFlight.set(false);
+                    drain();
+                })
+                .subscribe(
+                        first -> {
+                            long next = first;
+                            for (Reservation reservation : reservations) {
+                                reservation.emitter.onSuccess(next);
+                                next += reservation.count;
+                            }
+                        },
+                        error -> reservations.forEach(reservation -> reservation.emitter.onError(error)));
+    }
+
+    private MongoCollection<Document> collection() {
+        return database.getCollection(collectionName);
+    }
+
+    private static class Reservation {
+        private final int count;
+        private final SingleEmitter<Long> emitter;
+
+        private Reservation(int count, SingleEmitter<Long> emitter) {
+            this.count = count;
+            this.emitter = emitter;
+        }
+    }
+}
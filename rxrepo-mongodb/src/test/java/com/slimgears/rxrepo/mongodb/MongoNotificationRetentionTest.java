@@ -0,0 +1,121 @@
+package com.slimgears.rxrepo.mongodb;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class MongoNotificationRetentionTest {
+    private final static String collectionName = "Product.updates";
+    private final static long collectionSize = 1 << 20;
+    private MongoClient mongoClient;
+    private MongoDatabase database;
+
+    @ClassRule
+    public static TestRule mongoDbRule = MongoTestUtils.rule();
+
+    @Before
+    public void setUp() {
+        mongoClient = MongoClients.create(MongoClientSettings
+                .builder()
+                .applyConnectionString(MongoTestUtils.connectionString)
+                .build());
+        database = mongoClient.getDatabase("retention-test");
+        Completable.fromPublisher(database.drop()).blockingAwait();
+    }
+
+    @After
+    public void tearDown() {
+        Completable.fromPublisher(database.drop()).blockingAwait();
+        mongoClient.close();
+    }
+
+    @Test
+    public void testSizeRetentionOfNewCollection() {
+        MongoNotificationRetention.ofSize(collectionSize).setUp(database, collectionName).blockingAwait();
+
+        Document options = collectionOptions();
+        Assert.assertTrue(options.getBoolean("capped", false));
+        Assert.assertEquals(collectionSize, options.get("size", Number.class).longValue());
+        Assert.assertTrue(index(new Document("key", 1).append(MongoPipeline.sequenceNumberField, -1)).isPresent());
+    }
+
+    @Test
+    public void testSizeRetentionOfExistingCollection() {
+        insertNotifications(10);
+        Assert.assertFalse(collectionOptions().getBoolean("capped", false));
+
+        MongoNotificationRetention.ofSize(collectionSize).setUp(database, collectionName).blockingAwait();
+
+        Document options = collectionOptions();
+        Assert.assertTrue(options.getBoolean("capped", false));
+        Assert.assertEquals(10L, (long)Flowable.fromPublisher(collection().countDocuments()).blockingFirst());
+        Assert.assertTrue(index(new Document("key", 1).append(MongoPipeline.sequenceNumberField, -1)).isPresent());
+    }
+
+    @Test
+    public void testTimeRetentionOfNewCollection() {
+        MongoNotificationRetention.ofTime(Duration.ofHours(1)).setUp(database, collectionName).blockingAwait();
+
+        Document ttlIndex = index(new Document(MongoNotificationRetention.timestampField, 1)).orElseThrow(AssertionError::new);
+        Assert.assertEquals(3600L, ttlIndex.get("expireAfterSeconds", Number.class).longValue());
+    }
+
+    @Test
+    public void testTimeRetentionOfExistingCollection() {
+        insertNotifications(10);
+        Completable.fromPublisher(collection().createIndex(
+                Indexes.ascending(MongoNotificationRetention.timestampField),
+                new IndexOptions().expireAfter(600L, TimeUnit.SECONDS)))
+                .blockingAwait();
+
+        MongoNotificationRetention.ofTime(Duration.ofHours(1)).setUp(database, collectionName).blockingAwait();
+
+        Document ttlIndex = index(new Document(MongoNotificationRetention.timestampField, 1)).orElseThrow(AssertionError::new);
+        Assert.assertEquals(3600L, ttlIndex.get("expireAfterSeconds", Number.class).longValue());
+        Assert.assertTrue(index(new Document("key", 1).append(MongoPipeline.sequenceNumberField, -1)).isPresent());
+    }
+
+    private MongoCollection<Document> collection() {
+        return database.getCollection(collectionName);
+    }
+
+    private void insertNotifications(int count) {
+        Completable.fromPublisher(collection().insertMany(IntStream.range(0, count)
+                .mapToObj(i -> new Document("key", i).append(MongoPipeline.sequenceNumberField, (long)i))
+                .collect(Collectors.toList())))
+                .blockingAwait();
+    }
+
+    private Document collectionOptions() {
+        return Flowable.fromPublisher(database.listCollections().filter(Filters.eq("name", collectionName)))
+                .blockingFirst()
+                .get("options", new Document());
+    }
+
+    private Optional<Document> index(Document keyPattern) {
+        return Optional.ofNullable(Flowable.fromPublisher(collection().listIndexes())
+                .filter(index -> keyPattern.equals(index.get("key", Document.class)))
+                .firstElement()
+                .blockingGet());
+    }
+}
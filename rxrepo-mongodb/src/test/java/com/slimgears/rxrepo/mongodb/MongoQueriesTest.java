@@ -1,9 +1,15 @@
 package com.slimgears.rxrepo.mongodb;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
 import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.internal.NumericUnaryOperationExpression;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.test.Product;
 import com.slimgears.rxrepo.test.ProductDescription;
+import com.slimgears.rxrepo.test.UniqueId;
 import org.bson.Document;
 import org.junit.Assert;
 import org.junit.Test;
@@ -59,9 +65,47 @@ public class MongoQueriesTest {
                 json);
     }
 
+    @Test
+    public void testPipelineWithProjectedProperties() {
+        String json = MongoPipeline
+                .aggregationPipeline(QueryInfo.<UniqueId, Product, Product>builder()
+                        .metaClass(Product.metaClass)
+                        .predicate(Product.$.price.greaterThan(100))
+                        .properties(ImmutableSet.of(Product.$.name, Product.$.inventory.name))
+                        .build())
+                .stream()
+                .map(Document::toJson)
+                .collect(Collectors.joining("\n"));
+        Assert.assertEquals(
+                "{\"$match\": {\"$expr\": {\"$gt\": [\"$price\", 100]}}}\n" +
+                        "{\"$lookup\": {\"from\": \"Inventory\", \"localField\": \"inventory__ref\", \"foreignField\": \"_id\", \"as\": \"inventory\"}}\n" +
+                        "{\"$unwind\": {\"path\": \"$inventory\", \"preserveNullAndEmptyArrays\": true}}\n" +
+                        "{\"$project\": {\"inventory__ref\": 0}}\n" +
+                        "{\"$project\": {\"inventory.name\": 1, \"name\": 1, \"__sequenceNumber\": 1}}",
+                json);
+    }
+
     @Test
     public void testAggregateCount() {
         Document doc = MongoPipeline.aggregation(TypeToken.of(Product.class), Aggregator.count());
         Assert.assertEquals("{\"$sum\": {\"$toLong\": 1}}", doc.toJson());
     }
+
+    @Test
+    public void testSequenceNumberExpression() {
+        Document filter = MongoPipeline.expr(NumericUnaryOperationExpression
+                .<Product, Product, Long>create(Expression.Type.SequenceNumber, ObjectExpression.objectArg(Product.class))
+                .greaterThan(5L));
+        Assert.assertTrue(filter.toJson().startsWith("{\"$expr\": {\"$gt\": [{\"$ifNull\": [\"$__sequenceNumber\", "));
+    }
+
+    @Test
+    public void testChangesFilters() {
+        Assert.assertEquals(
+                "{\"operationType\": {\"$in\": [\"insert\", \"delete\"]}}",
+                MongoPipeline.objectChangesFilter().toJson());
+        Assert.assertEquals(
+                "{\"operationType\": \"insert\", \"$expr\": {\"$ne\": [\"$fullDocument.oldValue\", \"$fullDocument.newValue\"]}}",
+                MongoPipeline.notificationChangesFilter().toJson());
+    }
 }
@@ -1,15 +1,47 @@
 package com.slimgears.rxrepo.mongodb;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
+import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
 import com.slimgears.rxrepo.query.decorator.SubscribeOnSchedulingQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.junit.DockerRules;
+import com.slimgears.util.stream.Streams;
 import com.slimgears.util.test.logging.LogLevel;
 import com.slimgears.util.test.logging.UseLogLevel;
 import com.slimgears.util.test.logging.UseLogLevels;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
 import org.junit.*;
 import org.junit.rules.TestRule;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.slimgears.rxrepo.test.TestUtils.*;
+
 @UseLogLevels(
         @UseLogLevel(logger = "org.mongodb.driver", value = LogLevel.INFO)
 )
@@ -25,4 +57,388 @@ public class MongoQueryProviderTest extends AbstractRepositoryTest {
                 .decorate(SubscribeOnSchedulingQueryProviderDecorator.createDefault())
                 .build();
     }
+
+    @Test
+    @Override
+    public void testInsertThenUpdate() throws InterruptedException {
+        super.testInsertThenUpdate();
+    }
+
+    @Test
+    public void testBulkUpdateOfMultipleChunks() {
+        products.update(Products.createMany(600)).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = observeModifications(products);
+
+        int count = products.update()
+                .set(Product.$.price, 1000)
+                .where(Product.$.key.id.lessThan(550))
+                .execute()
+                .blockingGet();
+        Assert.assertEquals(550, count);
+
+        observer.assertOf(countExactly(550, Duration.ofSeconds(20)));
+        Assert.assertEquals(550, observer.values().stream().map(n -> n.newValue().key()).distinct().count());
+        Assert.assertEquals(Long.valueOf(550), products.query().where(Product.$.price.eq(1000)).count().blockingGet());
+    }
+
+    @Test
+    public void testBulkUpdateRetriesConcurrentlyModifiedDocuments() {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(300));
+        products.update(productList).blockingAwait();
+
+        Completable concurrentUpdates = Observable.fromIterable(productList)
+                .flatMapMaybe(product -> products
+                        .update(product.key(), p -> p.map(pp -> pp.toBuilder().name(pp.name() + " - renamed").build()))
+                        .retry(16, e -> e instanceof ConcurrentModificationException), false, 8)
+                .ignoreElements()
+                .subscribeOn(Schedulers.io());
+
+        Single<Integer> bulkUpdate = products.update()
+                .add(Product.$.aliases, "bulk")
+                .execute()
+                .subscribeOn(Schedulers.io());
+
+        int count = concurrentUpdates.andThen(Single.just(0))
+                .zipWith(bulkUpdate, (ignored, updated) -> updated)
+                .blockingGet();
+        Assert.assertEquals(300, count);
+
+        List<Product> updated = products.query().select().retrieve().toList().blockingGet();
+        Assert.assertEquals(300, updated.size());
+        updated.forEach(product -> {
+            Assert.assertEquals(ImmutableList.of("bulk"), product.aliases());
+            Assert.assertTrue(product.name(), product.name().endsWith(" - renamed"));
+        });
+    }
+
+    // Concurrent increments of the same documents conflict on versions. Conflicting documents are retried,
+    // and each increment is applied (and counted) exactly once.
+    @Test
+    public void testConcurrentBulkUpdatesApplyEveryUpdateOnce() {
+        int updaterCount = 8;
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(200));
+        products.update(productList).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = observeModifications(products);
+        List<Integer> counts = Observable.range(0, updaterCount)
+                .flatMapSingle(i -> products.update()
+                        .set(Product.$.price, Product.$.price.add(1))
+                        .execute()
+                        .subscribeOn(Schedulers.io()))
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(Collections.nCopies(updaterCount, 200), counts);
+        Map<UniqueId, Integer> initialPrices = productList.stream().collect(Collectors.toMap(Product::key, Product::price));
+        products.query().select().retrieve().blockingForEach(product ->
+                Assert.assertEquals(initialPrices.get(product.key()) + updaterCount, (int)product.price()));
+        observer.assertOf(countExactly(updaterCount * 200, Duration.ofSeconds(30)));
+    }
+
+    // Sequence numbers are reserved before commit, so concurrent writers may commit them out of order.
+    // Every change is still delivered once and carries a unique sequence number.
+    @Test
+    public void testConcurrentWritersDeliverEveryChangeWithUniqueSequenceNumber() {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(64));
+        products.update(productList).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = observeModifications(products);
+
+        int updatesPerProduct = 5;
+        Observable.fromIterable(productList)
+                .flatMapCompletable(product -> Observable
+                        .range(0, updatesPerProduct)
+                        .concatMapMaybe(i -> products
+                                .update(product.key(), p -> p.map(pp -> pp.toBuilder().price(pp.price() + 1).build()))
+                                .retry(16, e -> e instanceof ConcurrentModificationException))
+                        .ignoreElements()
+                        .subscribeOn(Schedulers.io()), false, 16)
+                .blockingAwait();
+
+        int expectedCount = productList.size() * updatesPerProduct;
+        observer.assertOf(countExactly(expectedCount, Duration.ofSeconds(30)));
+
+        List<Long> sequenceNumbers = observer.values().stream()
+                .map(Notification::sequenceNumber)
+                .collect(Collectors.toList());
+        Assert.assertEquals(expectedCount, sequenceNumbers.stream().distinct().count());
+        Assert.assertTrue(sequenceNumbers.stream().allMatch(sn -> sn != null && sn > 0));
+
+        // Per entity, changes are delivered in the order of their sequence numbers
+        observer.values().stream()
+                .collect(Collectors.groupingBy(n -> n.newValue().key(), Collectors.mapping(Notification::sequenceNumber, Collectors.toList())))
+                .forEach((key, entitySequenceNumbers) -> Assert.assertTrue(
+                        key + ": " + entitySequenceNumbers,
+                        Ordering.natural().isStrictlyOrdered(entitySequenceNumbers)));
+    }
+
+    // Batch of existing entities reaches provider as a whole, instead of being split into per-entity upserts
+    @Test
+    public void testBulkUpsertIsNotSplitIntoPerEntityUpserts() {
+        Queue<Integer> batchUpserts = new ConcurrentLinkedQueue<>();
+        AtomicInteger entityUpserts = new AtomicInteger();
+        Repository repository = MongoRepository.builder()
+                .port(MongoTestUtils.port)
+                .dbName("bulkUpsert")
+                .decorateUnderlying(src -> new AbstractQueryProviderDecorator(src) {
+                    @Override
+                    public <K, S> Completable insertOrUpdate(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+                        batchUpserts.add(Iterables.size(entities));
+                        return super.insertOrUpdate(metaClass, entities, recursive);
+                    }
+
+                    @Override
+                    public <K, S> Single<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+                        entityUpserts.incrementAndGet();
+                        return super.insertOrUpdate(metaClass, entity, recursive);
+                    }
+                })
+                .build();
+        try {
+            List<Product> existing = ImmutableList.copyOf(Products.createMany(100));
+            repository.entities(Product.metaClass).update(existing).blockingAwait();
+            batchUpserts.clear();
+
+            List<Product> modified = existing.stream()
+                    .map(p -> p.toBuilder().price(p.price() + 1).build())
+                    .collect(Collectors.toList());
+            repository.entities(Product.metaClass).update(modified).blockingAwait();
+
+            Assert.assertEquals(ImmutableList.of(100), ImmutableList.copyOf(batchUpserts));
+            Assert.assertEquals(0, entityUpserts.get());
+            Assert.assertEquals(
+                    ImmutableSet.copyOf(modified),
+                    ImmutableSet.copyOf(repository.entities(Product.metaClass).query().select().retrieve().toList().blockingGet()));
+        } finally {
+            repository.clear().blockingAwait();
+            repository.close();
+        }
+    }
+
+    @Test
+    public void testBulkUpsertOfMixedBatch() {
+        List<Product> existing = ImmutableList.copyOf(Products.createMany(10));
+        products.update(existing).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = products.query().liveSelect().observe().test();
+
+        List<Product> modified = existing.subList(0, 5).stream()
+                .map(p -> p.toBuilder().price(p.price() + 1).build())
+                .collect(Collectors.toList());
+        List<Product> unchanged = existing.subList(5, 10);
+        List<Product> created = ImmutableList.copyOf(Products.createMany(10, 5));
+        products.update(ImmutableList.<Product>builder()
+                .addAll(created.subList(0, 2))
+                .addAll(modified)
+                .addAll(unchanged)
+                .addAll(created.subList(2, 5))
+                .build())
+                .blockingAwait();
+
+        observer.assertOf(countExactly(10));
+        Assert.assertEquals(
+                ImmutableSet.copyOf(created),
+                observer.values().stream().filter(Notification::isCreate).map(Notification::newValue).collect(Collectors.toSet()));
+        List<Notification<Product>> modifications = observer.values().stream()
+                .filter(Notification::isModify)
+                .collect(Collectors.toList());
+        Assert.assertEquals(ImmutableSet.copyOf(existing.subList(0, 5)), modifications.stream().map(Notification::oldValue).collect(Collectors.toSet()));
+        Assert.assertEquals(ImmutableSet.copyOf(modified), modifications.stream().map(Notification::newValue).collect(Collectors.toSet()));
+
+        assertNoMoreModifications(observer, existing.get(9));
+        Assert.assertEquals(
+                ImmutableSet.builder().addAll(modified).addAll(unchanged).addAll(created).build(),
+                ImmutableSet.copyOf(products.query().select().retrieve().toList().blockingGet()));
+    }
+
+    @Test
+    public void testBulkUpsertOfUnchangedEntitiesPublishesNoNotifications() {
+        List<Product> existing = ImmutableList.copyOf(Products.createMany(10));
+        products.update(existing).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = observeModifications(products);
+        products.update(existing).blockingAwait();
+
+        assertNoMoreModifications(observer, existing.get(3));
+    }
+
+    // Entity, which is repeated within the batch, is upserted again after the batch, so all its versions are applied in order
+    @Test
+    public void testBulkUpsertOfRepeatedKeys() {
+        List<Product> existing = ImmutableList.copyOf(Products.createMany(10));
+        products.update(existing).blockingAwait();
+
+        TestObserver<Notification<Product>> observer = products.query().liveSelect().observe().test();
+
+        Product created = Products.createOne(20);
+        Product createdThenModified = created.toBuilder().price(created.price() + 1).build();
+        Product modified = existing.get(1).toBuilder().price(existing.get(1).price() + 1).build();
+        Product modifiedTwice = modified.toBuilder().name(modified.name() + " - renamed").build();
+        products.update(ImmutableList.of(created, modified, createdThenModified, modifiedTwice)).blockingAwait();
+
+        observer.assertOf(countExactly(4));
+        List<Notification<Product>> createdNotifications = notificationsOf(observer, created);
+        Assert.assertEquals(2, createdNotifications.size());
+        Assert.assertTrue(createdNotifications.get(0).isCreate());
+        Assert.assertEquals(created, createdNotifications.get(0).newValue());
+        Assert.assertEquals(created, createdNotifications.get(1).oldValue());
+        Assert.assertEquals(createdThenModified, createdNotifications.get(1).newValue());
+
+        List<Notification<Product>> modifiedNotifications = notificationsOf(observer, modified);
+        Assert.assertEquals(2, modifiedNotifications.size());
+        Assert.assertEquals(existing.get(1), modifiedNotifications.get(0).oldValue());
+        Assert.assertEquals(modified, modifiedNotifications.get(0).newValue());
+        Assert.assertEquals(modified, modifiedNotifications.get(1).oldValue());
+        Assert.assertEquals(modifiedTwice, modifiedNotifications.get(1).newValue());
+
+        Assert.assertEquals(createdThenModified, products.find(created.key()).blockingGet());
+        Assert.assertEquals(modifiedTwice, products.find(modified.key()).blockingGet());
+    }
+
+    // Concurrent batches of the same keys conflict on versions of existing documents and on inserts of new ones,
+    // so conflicting entities fall back to per-entity updates. No write is lost: notifications of every key form
+    // a chain from its first to its stored value.
+    @Test
+    public void testConcurrentBulkUpsertsFallBackToPerEntityUpdates() {
+        int writerCount = 8;
+        List<Product> existing = ImmutableList.copyOf(Products.createMany(50));
+        products.update(existing).blockingAwait();
+
+        // Created and then modified sentinel is written last, so once both its notifications are received,
+        // notifications of all the preceding writes are received as well
+        Product sentinel = Products.createOne(1000);
+        AtomicInteger sentinelNotifications = new AtomicInteger();
+        TestObserver<Notification<Product>> observer = products.query()
+                .liveSelect()
+                .observe()
+                .takeUntil(n -> n.newValue().key().equals(sentinel.key()) && sentinelNotifications.incrementAndGet() == 2)
+                .test();
+
+        Observable.range(1, writerCount)
+                .flatMapCompletable(writer -> products
+                        .update(Streams.fromIterable(Products.createMany(0, 100))
+                                .map(p -> p.toBuilder().price(writer * 1000 + p.key().id()).build())
+                                .collect(Collectors.toList()))
+                        .subscribeOn(Schedulers.io()))
+                .blockingAwait();
+        products.update(sentinel).blockingGet();
+        products.update(sentinel.toBuilder().price(sentinel.price() + 1).build()).blockingGet();
+        observer.awaitDone(30, TimeUnit.SECONDS)
+                .assertNoErrors()
+                .assertComplete();
+
+        Map<UniqueId, Integer> storedPrices = products.query()
+                .where(Product.$.key.notEq(sentinel.key()))
+                .select()
+                .retrieve()
+                .toMap(Product::key, Product::price)
+                .blockingGet();
+        Assert.assertEquals(100, storedPrices.size());
+        Map<UniqueId, Integer> initialPrices = existing.stream().collect(Collectors.toMap(Product::key, Product::price));
+        storedPrices.forEach((key, price) -> {
+            List<Notification<Product>> keyNotifications = observer.values().stream()
+                    .filter(n -> n.newValue().key().equals(key))
+                    .sorted(Comparator.comparing(Notification::sequenceNumber))
+                    .collect(Collectors.toList());
+            Assert.assertFalse(key.toString(), keyNotifications.isEmpty());
+            Integer previousPrice = initialPrices.get(key);
+            for (Notification<Product> notification : keyNotifications) {
+                if (previousPrice == null) {
+                    Assert.assertTrue(key.toString(), notification.isCreate());
+                } else {
+                    Assert.assertTrue(key.toString(), notification.isModify());
+                    Assert.assertEquals(key.toString(), previousPrice, (Integer)notification.oldValue().price());
+                }
+                previousPrice = notification.newValue().price();
+            }
+            Assert.assertEquals(key.toString(), price, previousPrice);
+        });
+    }
+
+    private void assertNoMoreModifications(TestObserver<Notification<Product>> observer, Product product) {
+        int count = observer.valueCount();
+        Product sentinel = product.toBuilder().name(product.name() + " - sentinel").build();
+        products.update(sentinel).blockingGet();
+        observer.assertOf(countAtLeast(count + 1));
+        Assert.assertEquals(sentinel, observer.values().get(count).newValue());
+        observer.assertValueCount(count + 1);
+    }
+
+    private static List<Notification<Product>> notificationsOf(TestObserver<Notification<Product>> observer, Product product) {
+        return observer.values().stream()
+                .filter(n -> n.newValue().key().equals(product.key()))
+                .sorted(Comparator.comparing(Notification::sequenceNumber))
+                .collect(Collectors.toList());
+    }
+
+    // Live queries with different predicates share single upstream live query (and so single pair of change streams),
+    // and each of them receives only the changes matching its own predicate
+    @Test
+    public void testLiveQueriesWithDifferentPredicatesShareUpstream() {
+        Queue<QueryInfo<?, ?, ?>> upstreamQueries = new ConcurrentLinkedQueue<>();
+        Repository repository = MongoRepository.builder()
+                .port(MongoTestUtils.port)
+                .dbName("liveQuerySharedUpstream")
+                .decorateUnderlying(src -> new AbstractQueryProviderDecorator(src) {
+                    @Override
+                    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+                        upstreamQueries.add(query);
+                        return super.liveQuery(query);
+                    }
+                })
+                .build();
+        try {
+            List<Product> productList = ImmutableList.copyOf(Products.createMany(10));
+            repository.entities(Product.metaClass).update(productList).blockingAwait();
+
+            Product first = productList.get(3);
+            Product second = productList.get(4);
+            TestObserver<Notification<Product>> firstObserver = repository.entities(Product.metaClass)
+                    .query()
+                    .where(Product.$.name.eq(first.name()))
+                    .liveSelect()
+                    .observe()
+                    .test();
+            TestObserver<Notification<Product>> secondObserver = repository.entities(Product.metaClass)
+                    .query()
+                    .where(Product.$.name.eq(second.name()))
+                    .liveSelect()
+                    .observe()
+                    .test();
+            TestObserver<Notification<Product>> unfilteredObserver = repository.entities(Product.metaClass)
+                    .query()
+                    .liveSelect()
+                    .observe()
+                    .test();
+
+            repository.entities(Product.metaClass).update(second.toBuilder().price(second.price() + 1).build()).blockingGet();
+            repository.entities(Product.metaClass).update(first.toBuilder().price(first.price() + 1).build()).blockingGet();
+
+            unfilteredObserver.assertOf(countExactly(2));
+            firstObserver.assertOf(countExactly(1))
+                    .assertValue(n -> n.isModify() && n.newValue().key().equals(first.key()));
+            secondObserver.assertOf(countExactly(1))
+                    .assertValue(n -> n.isModify() && n.newValue().key().equals(second.key()));
+
+            Assert.assertEquals(1, upstreamQueries.size());
+            Assert.assertNull(upstreamQueries.peek().predicate());
+
+            // Modification, which makes object leave the predicate, is delivered as deletion
+            repository.entities(Product.metaClass).update(first.toBuilder().name(first.name() + " - renamed").build()).blockingGet();
+            firstObserver.assertOf(countExactly(2));
+            Assert.assertTrue(firstObserver.values().get(1).isDelete());
+            Assert.assertEquals(first.key(), firstObserver.values().get(1).oldValue().key());
+            unfilteredObserver.assertOf(countExactly(3));
+            secondObserver.assertValueCount(1);
+
+            firstObserver.dispose();
+            secondObserver.dispose();
+            unfilteredObserver.dispose();
+            Assert.assertEquals(1, upstreamQueries.size());
+        } finally {
+            repository.clear().blockingAwait();
+            repository.close();
+        }
+    }
 }
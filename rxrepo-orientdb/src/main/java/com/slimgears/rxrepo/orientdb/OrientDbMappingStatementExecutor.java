@@ -7,6 +7,7 @@ import com.slimgears.rxrepo.sql.SqlStatementExecutor;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
@@ -47,6 +48,11 @@ public class OrientDbMappingStatementExecutor implements SqlStatementExecutor {
         return underlyingExecutor.executeQuery(toOrientDb(statement));
     }
 
+    @Override
+    public Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement, int fetchSize) {
+        return underlyingExecutor.executeQueryFlowable(toOrientDb(statement), fetchSize);
+    }
+
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
         return underlyingExecutor.executeCommandReturnEntries(toOrientDb(statement));
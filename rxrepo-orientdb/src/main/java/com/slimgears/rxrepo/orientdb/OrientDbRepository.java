@@ -220,6 +220,12 @@ public class OrientDbRepository {
             return this;
         }
 
+        @Override
+        public Builder queryFetchSize(int value) {
+            configBuilder.queryFetchSize(value);
+            return this;
+        }
+
         public Builder enableMetrics(MetricCollector metricCollector) {
             metricCollector = metricCollector.name("rxrepo.orientdb");
             MetricsQueryProviderDecorator decorator = MetricsQueryProviderDecorator.create(metricCollector);
@@ -26,6 +26,7 @@ class OrientDbSessionProvider implements AutoCloseable {
     private final MetricCollector.Gauge activeSessionsGauge = metrics.gauge("activeSessions");
     private final ExecutorService executorService;
     private final Maybe<ODatabaseDocument> session;
+    private final Supplier<ODatabaseDocument> dedicatedSessionSupplier;
     private final RecurrentThreadLocal<ODatabaseDocument> sessionThreadLocal;
     private final CompletableSubject closedSubject = CompletableSubject.create();
     private final AtomicBoolean closed = new AtomicBoolean();
@@ -38,6 +39,7 @@ class OrientDbSessionProvider implements AutoCloseable {
             return session;
         });
 
+        dedicatedSessionSupplier = safeSessionProvider;
         sessionThreadLocal = RecurrentThreadLocal
                 .of(safeSessionProvider)
                 .onRelease(Safe.ofConsumer(ODatabaseDocument::close));
@@ -76,6 +78,14 @@ class OrientDbSessionProvider implements AutoCloseable {
         return session.takeUntil(closedSubject.andThen(Maybe.just(cancellationToken)));
     }
 
+    // Session which is not bound to the current thread, the caller is responsible for activating and closing it
+    ODatabaseDocument openDedicatedSession() {
+        if (closed.get()) {
+            throw new IllegalStateException("Session provider is closed");
+        }
+        return dedicatedSessionSupplier.get();
+    }
+
     synchronized void withSession(Consumer<ODatabaseDocument> action) {
         if (!closed.get()) {
             this.getWithSession(session -> {
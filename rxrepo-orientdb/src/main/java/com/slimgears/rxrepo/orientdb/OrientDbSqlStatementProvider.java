@@ -38,6 +38,11 @@ public class OrientDbSqlStatementProvider extends DefaultSqlStatementProvider {
         this.keyEncoder = keyEncoder;
     }
 
+    @Override
+    public <K, S, T> SqlStatement forQueryByKeys(QueryInfo<K, S, T> queryInfo, Collection<K> keys) {
+        return forQuery(QueryInfos.withKeys(queryInfo, keys));
+    }
+
     @Override
     protected <K, S> SqlStatement forInsertOrUpdate(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, SqlReferenceResolver resolver, boolean forced) {
         PropertyMeta<S, K> keyProperty = metaClass.keyProperty();
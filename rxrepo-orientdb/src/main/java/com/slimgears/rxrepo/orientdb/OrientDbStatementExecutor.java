@@ -13,6 +13,8 @@ import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.generic.MoreStrings;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import org.slf4j.Logger;
@@ -55,6 +57,20 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
                 });
     }
 
+    @Override
+    public Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement, int fetchSize) {
+        return Flowable
+                .<OResult, StreamingResultSet>generate(
+                        () -> {
+                            logStatement("Streaming query", statement);
+                            return StreamingResultSet.open(querySessionProvider, statement);
+                        },
+                        StreamingResultSet::next,
+                        StreamingResultSet::close)
+                .rebatchRequests(Math.max(1, fetchSize))
+                .map(res -> OResultPropertyResolver.create(referencedObjectProvider, res));
+    }
+
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
         return toObservable(
@@ -141,6 +157,46 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
                 .map(res -> OResultPropertyResolver.create(referencedObjectProvider, res));
     }
 
+    // OResultSet is pulled lazily, so rows are fetched only as downstream requests them.
+    // Requests may arrive on different threads, hence the session is re-activated on every pull.
+    private static class StreamingResultSet {
+        private final ODatabaseDocument session;
+        private final OResultSet resultSet;
+
+        private StreamingResultSet(ODatabaseDocument session, OResultSet resultSet) {
+            this.session = session;
+            this.resultSet = resultSet;
+        }
+
+        private static StreamingResultSet open(OrientDbSessionProvider sessionProvider, SqlStatement statement) {
+            ODatabaseDocument session = sessionProvider.openDedicatedSession();
+            try {
+                return new StreamingResultSet(session, session.query(statement.statement(), statement.args()));
+            } catch (RuntimeException e) {
+                session.close();
+                throw e;
+            }
+        }
+
+        private void next(Emitter<OResult> emitter) {
+            session.activateOnCurrentThread();
+            if (resultSet.hasNext()) {
+                emitter.onNext(resultSet.next());
+            } else {
+                emitter.onComplete();
+            }
+        }
+
+        private void close() {
+            session.activateOnCurrentThread();
+            try {
+                resultSet.close();
+            } finally {
+                session.close();
+            }
+        }
+    }
+
     private void logStatement(String title, SqlStatement statement) {
         log.trace("[{}] {}: {}", operationCounter.get(), title, lazy(() -> toString(statement)));
     }
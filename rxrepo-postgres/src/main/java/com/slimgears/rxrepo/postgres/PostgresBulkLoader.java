@@ -0,0 +1,155 @@
+package com.slimgears.rxrepo.postgres;
+
+import com.google.common.io.BaseEncoding;
+import com.slimgears.rxrepo.sql.KeyEncoder;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlTypeMapper;
+import com.slimgears.rxrepo.util.PropertyExpressionValueProvider;
+import com.slimgears.rxrepo.util.PropertyExpressions;
+import com.slimgears.util.autovalue.annotations.HasMetaClass;
+import com.slimgears.util.autovalue.annotations.HasMetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+class PostgresBulkLoader {
+    private final static Logger log = LoggerFactory.getLogger(PostgresBulkLoader.class);
+    private final static int copyBufferSize = 64 * 1024;
+    private final Callable<Connection> connectionSupplier;
+    private final PostgresSqlStatementProvider statementProvider;
+    private final SqlTypeMapper typeMapper;
+    private final KeyEncoder keyEncoder;
+    private final int minBatchSize;
+
+    PostgresBulkLoader(Callable<Connection> connectionSupplier,
+                       PostgresSqlStatementProvider statementProvider,
+                       SqlTypeMapper typeMapper,
+                       KeyEncoder keyEncoder,
+                       int minBatchSize) {
+        this.connectionSupplier = connectionSupplier;
+        this.statementProvider = statementProvider;
+        this.typeMapper = typeMapper;
+        this.keyEncoder = keyEncoder;
+        this.minBatchSize = minBatchSize;
+    }
+
+    boolean isApplicable(Collection<?> entities) {
+        return entities.size() >= minBatchSize;
+    }
+
+    <K, S> Completable load(MetaClassWithKey<K, S> metaClass, Collection<S> entities, boolean upsert) {
+        return Completable.create(emitter -> {
+            try (Connection connection = connectionSupplier.call()) {
+                connection.setAutoCommit(false);
+                try {
+                    execute(connection, statementProvider.forCreateStagingTable(metaClass));
+                    copy(connection, metaClass, entities);
+                    execute(connection, statementProvider.forMergeStagingTable(metaClass, upsert));
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+            emitter.onComplete();
+        }).onErrorResumeNext(e -> Completable.error(mapException(e)));
+    }
+
+    private <K, S> void copy(Connection connection, MetaClassWithKey<K, S> metaClass, Collection<S> entities) throws SQLException {
+        List<PropertyExpressionValueProvider<S, ?, ?>> valueProviders = PropertyExpressions.embeddedPropertiesForMeta(metaClass)
+                .<PropertyExpressionValueProvider<S, ?, ?>>map(PropertyExpressionValueProvider::fromProperty)
+                .collect(Collectors.toList());
+
+        String copyStatement = statementProvider.forCopyIntoStagingTable(metaClass).statement();
+        log.trace("Copying {} rows: {}", entities.size(), copyStatement);
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copyStatement);
+        try {
+            StringBuilder buffer = new StringBuilder(copyBufferSize + 1024);
+            for (S entity : entities) {
+                for (int i = 0; i < valueProviders.size(); ++i) {
+                    if (i > 0) {
+                        buffer.append(',');
+                    }
+                    appendCsvValue(buffer, toSqlValue(valueProviders.get(i).value(entity)));
+                }
+                buffer.append('\n');
+                if (buffer.length() >= copyBufferSize) {
+                    writeToCopy(copyIn, buffer);
+                }
+            }
+            writeToCopy(copyIn, buffer);
+            log.trace("Copied {} rows", copyIn.endCopy());
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private static void execute(Connection connection, SqlStatement statement) throws SQLException {
+        try (Statement jdbcStatement = connection.createStatement()) {
+            log.trace("Executing: {}", statement.statement());
+            jdbcStatement.execute(statement.statement());
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object toSqlValue(Object value) {
+        if (value instanceof HasMetaClassWithKey) {
+            value = ((HasMetaClassWithKey)value).metaClass().keyOf(value);
+        }
+        if (value instanceof HasMetaClass) {
+            return keyEncoder.encode(value);
+        }
+        return value != null ? typeMapper.toSqlValue(value) : null;
+    }
+
+    private static void appendCsvValue(StringBuilder builder, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            builder.append(value);
+        } else if (value instanceof Date) {
+            // java.sql.Date does not support toInstant(), so go through epoch millis
+            builder.append(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(Instant.ofEpochMilli(((Date)value).getTime()).atOffset(ZoneOffset.UTC)));
+        } else if (value instanceof byte[]) {
+            builder.append("\\x").append(BaseEncoding.base16().lowerCase().encode((byte[])value));
+        } else {
+            builder.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    private static Throwable mapException(Throwable e) {
+        if (e.getMessage() != null && e.getMessage().contains("duplicate")) {
+            return new ConcurrentModificationException(e);
+        }
+        return e;
+    }
+}
@@ -0,0 +1,199 @@
+package com.slimgears.rxrepo.postgres;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class PostgresNotificationListener implements AutoCloseable {
+    private final static Logger log = LoggerFactory.getLogger(PostgresNotificationListener.class);
+    private final static Duration minReconnectDelay = Duration.ofMillis(100);
+    private final static Duration maxReconnectDelay = Duration.ofSeconds(30);
+    private final Callable<Connection> connectionSupplier;
+    private final int pollTimeoutMillis;
+    private final Lock lock = new ReentrantLock(true);
+    private final Subject<PGNotification> notifications = PublishSubject.<PGNotification>create().toSerialized();
+    private final Map<String, Observable<String>> channels = new ConcurrentHashMap<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile ExecutorService pollingExecutor;
+    private Connection connection;
+    private PGConnection pgConnection;
+
+    public PostgresNotificationListener(Callable<Connection> connectionSupplier, Duration pollTimeout) {
+        this.connectionSupplier = connectionSupplier;
+        this.pollTimeoutMillis = (int)Math.max(1, pollTimeout.toMillis());
+    }
+
+    public Observable<String> listen(String channel) {
+        return channels.computeIfAbsent(channel, c -> Observable
+                .<String>create(emitter -> {
+                    Disposable subscription = notifications
+                            .filter(n -> c.equals(n.getName()))
+                            .map(PGNotification::getParameter)
+                            .subscribe(emitter::onNext, emitter::onError);
+                    emitter.setCancellable(() -> {
+                        subscription.dispose();
+                        unlisten(c);
+                    });
+                    execute("listen \"" + c + "\"");
+                })
+                .doFinally(() -> channels.remove(c))
+                .share());
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        ExecutorService executor = pollingExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(pollTimeoutMillis * 2L, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            disconnect();
+        } finally {
+            lock.unlock();
+        }
+        notifications.onComplete();
+    }
+
+    private void unlisten(String channel) {
+        if (closed.get()) {
+            return;
+        }
+        try {
+            execute("unlisten \"" + channel + "\"");
+        } catch (SQLException e) {
+            log.debug("Failed to unlisten channel {}", channel, e);
+        }
+    }
+
+    private void execute(String command) throws SQLException {
+        lock.lock();
+        try {
+            if (closed.get()) {
+                throw new SQLException("Notification listener is closed");
+            }
+            try (Statement statement = connection().createStatement()) {
+                log.trace("Executing: {}", command);
+                statement.execute(command);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            try {
+                connection = Objects.requireNonNull(connectionSupplier.call());
+            } catch (SQLException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SQLException(e);
+            }
+            connection.setAutoCommit(true);
+            pgConnection = connection.unwrap(PGConnection.class);
+            relisten();
+            if (pollingExecutor == null) {
+                pollingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "rxrepo-postgres-listener");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                pollingExecutor.execute(this::poll);
+            }
+        }
+        return connection;
+    }
+
+    // Subscriptions are bound to listener session, so after reconnect all active channels are listened again
+    private void relisten() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String channel : channels.keySet()) {
+                log.trace("Listening channel {}", channel);
+                statement.execute("listen \"" + channel + "\"");
+            }
+        }
+    }
+
+    private void disconnect() {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            log.debug("Failed to close listener connection", e);
+        } finally {
+            connection = null;
+            pgConnection = null;
+        }
+    }
+
+    // Connection failure does not terminate notifications: connection is re-established with exponential backoff,
+    // so that subscribers (which are shared between all live queries of an entity) stay alive
+    private void poll() {
+        int failures = 0;
+        while (!closed.get() && !Thread.currentThread().isInterrupted()) {
+            PGNotification[] received = null;
+            lock.lock();
+            try {
+                connection();
+                received = pgConnection.getNotifications(pollTimeoutMillis);
+                failures = 0;
+            } catch (SQLException e) {
+                if (closed.get()) {
+                    return;
+                }
+                ++failures;
+                log.warn("Notification listener connection failed (attempt {}), reconnecting", failures, e);
+                disconnect();
+            } finally {
+                lock.unlock();
+            }
+            if (failures > 0) {
+                try {
+                    Thread.sleep(reconnectDelay(failures).toMillis());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            if (received != null) {
+                for (PGNotification notification : received) {
+                    notifications.onNext(notification);
+                }
+            }
+        }
+    }
+
+    private static Duration reconnectDelay(int failures) {
+        long delayMillis = minReconnectDelay.toMillis() << Math.min(failures - 1, 16);
+        return Duration.ofMillis(Math.min(delayMillis, maxReconnectDelay.toMillis()));
+    }
+}
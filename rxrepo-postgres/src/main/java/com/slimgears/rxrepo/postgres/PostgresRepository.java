@@ -1,17 +1,24 @@
 package com.slimgears.rxrepo.postgres;
 
 import com.slimgears.rxrepo.query.RepositoryConfig;
+import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
 import com.slimgears.rxrepo.sql.SqlServiceFactory;
 import com.slimgears.rxrepo.sql.SqlStatementExecutor;
 import com.slimgears.rxrepo.sql.jdbc.JdbcRepository;
 
 import java.sql.Connection;
+import java.time.Duration;
 import java.util.concurrent.Callable;
 
 public class PostgresRepository {
     public static class Builder<B extends Builder<B>> extends JdbcRepository.Builder<B> {
         private String schemaName = "repository";
         private SqlStatementExecutor.Decorator executorDecorator = SqlStatementExecutor.Decorator.identity();
+        private Duration notificationBatchWindow = Duration.ofMillis(20);
+        private int notificationBatchSize = 500;
+        private Duration notificationPollTimeout = Duration.ofMillis(100);
+        private Duration notificationHistoryRetention = Duration.ofMinutes(5);
+        private int bulkLoadMinBatchSize = 0;
 
         public B schemaName(String name) {
             this.schemaName = name;
@@ -23,8 +30,34 @@ public class PostgresRepository {
             return self();
         }
 
+        public B notificationBatchWindow(Duration batchWindow) {
+            this.notificationBatchWindow = batchWindow;
+            return self();
+        }
+
+        public B notificationBatchSize(int batchSize) {
+            this.notificationBatchSize = batchSize;
+            return self();
+        }
+
+        public B notificationPollTimeout(Duration pollTimeout) {
+            this.notificationPollTimeout = pollTimeout;
+            return self();
+        }
+
+        public B notificationHistoryRetention(Duration retention) {
+            this.notificationHistoryRetention = retention;
+            return self();
+        }
+
+        public B enableBulkLoad(int minBatchSize) {
+            this.bulkLoadMinBatchSize = minBatchSize;
+            return self();
+        }
+
         @Override
         protected SqlServiceFactory.Builder<?> serviceFactoryBuilder(RepositoryConfig config, Callable<Connection> connectionSupplier) {
+            PostgresNotificationListener notificationListener = new PostgresNotificationListener(dedicatedConnectionSupplier(), notificationPollTimeout);
             return super.serviceFactoryBuilder(config, connectionSupplier)
                     .dbName(schemaName)
                     .decorateExecutorBefore(() -> executorDecorator)
@@ -32,7 +65,26 @@ public class PostgresRepository {
                     .statementProvider(sf -> new PostgresSqlStatementProvider(
                             sf.expressionGenerator(),
                             sf.typeMapper(),
-                            sf.dbNameProvider()));
+                            sf.dbNameProvider()))
+                    .queryProviderGenerator(sf -> new PostgresSqlQueryProvider(
+                            (PostgresSqlStatementProvider)sf.statementProvider(),
+                            sf.statementExecutor(),
+                            sf.schemaProvider(),
+                            sf.referenceResolver(),
+                            notificationListener,
+                            notificationBatchWindow,
+                            notificationBatchSize,
+                            notificationHistoryRetention,
+                            bulkLoadMinBatchSize > 0
+                                    ? new PostgresBulkLoader(
+                                            connectionSupplier,
+                                            (PostgresSqlStatementProvider)sf.statementProvider(),
+                                            sf.typeMapper(),
+                                            sf.keyEncoder(),
+                                            bulkLoadMinBatchSize)
+                                    : null))
+                    .decorate(LiveQueryProviderDecorator.create(Duration.ofMillis(config.aggregationDebounceTimeMillis())))
+                    .onClose(notificationListener::close);
         }
     }
 
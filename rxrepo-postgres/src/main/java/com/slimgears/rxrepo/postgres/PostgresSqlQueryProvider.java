@@ -0,0 +1,207 @@
+package com.slimgears.rxrepo.postgres;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.sql.DefaultSqlQueryProvider;
+import com.slimgears.rxrepo.sql.SqlFields;
+import com.slimgears.rxrepo.sql.SqlReferenceResolver;
+import com.slimgears.rxrepo.sql.SqlSchemaGenerator;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlStatementExecutor;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+public class PostgresSqlQueryProvider extends DefaultSqlQueryProvider {
+    private final static Logger log = LoggerFactory.getLogger(PostgresSqlQueryProvider.class);
+    private final PostgresSqlStatementProvider postgresStatementProvider;
+    private final SqlStatementExecutor statementExecutor;
+    private final PostgresNotificationListener notificationListener;
+    private final Duration batchWindow;
+    private final int maxBatchSize;
+    private final Duration historyRetention;
+    private final PostgresBulkLoader bulkLoader;
+    private final Map<MetaClassWithKey<?, ?>, Completable> notificationTriggers = new ConcurrentHashMap<>();
+    private final Map<MetaClassWithKey<?, ?>, Observable<?>> entityNotifications = new ConcurrentHashMap<>();
+
+    PostgresSqlQueryProvider(PostgresSqlStatementProvider statementProvider,
+                             SqlStatementExecutor statementExecutor,
+                             SqlSchemaGenerator schemaGenerator,
+                             SqlReferenceResolver referenceResolver,
+                             PostgresNotificationListener notificationListener,
+                             Duration batchWindow,
+                             int maxBatchSize,
+                             Duration historyRetention,
+                             PostgresBulkLoader bulkLoader) {
+        super(statementProvider, statementExecutor, schemaGenerator, referenceResolver);
+        this.postgresStatementProvider = statementProvider;
+        this.statementExecutor = statementExecutor;
+        this.notificationListener = notificationListener;
+        this.batchWindow = batchWindow;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.historyRetention = historyRetention;
+        this.bulkLoader = bulkLoader;
+    }
+
+    @Override
+    public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+        return Completable.defer(() -> {
+            List<S> entityList = ImmutableList.copyOf(entities);
+            return bulkLoader != null && bulkLoader.isApplicable(entityList)
+                    ? schemaGenerator.useTable(metaClass).andThen(bulkLoader.load(metaClass, entityList, false))
+                    : super.insert(metaClass, entityList, recursive);
+        });
+    }
+
+    @Override
+    public <K, S> Completable insertOrUpdate(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+        return Completable.defer(() -> {
+            List<S> entityList = ImmutableList.copyOf(entities);
+            return bulkLoader != null && bulkLoader.isApplicable(entityList)
+                    ? schemaGenerator.useTable(metaClass).andThen(bulkLoader.load(metaClass, lastByKey(metaClass, entityList), true))
+                    : super.insertOrUpdate(metaClass, entityList, recursive);
+        });
+    }
+
+    @Override
+    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+        log.trace("Preparing live query of {}", query.metaClass().simpleName());
+        return schemaGenerator
+                .useTable(query.metaClass())
+                .andThen(useNotificationTriggers(query.metaClass()))
+                .andThen(entityNotifications(query.metaClass()))
+                .compose(Notifications.applyQuery(query));
+    }
+
+    @Override
+    public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+        return super.drop(metaClass).doOnComplete(() -> notificationTriggers.remove(metaClass));
+    }
+
+    @Override
+    public Completable dropAll() {
+        return super.dropAll().doOnComplete(notificationTriggers::clear);
+    }
+
+    private <K, S> Completable useNotificationTriggers(MetaClassWithKey<K, S> metaClass) {
+        return notificationTriggers.computeIfAbsent(metaClass, mc -> statementExecutor
+                .executeCommand(postgresStatementProvider.forCreateNotificationTriggers(metaClass))
+                .andThen(statementExecutor.executeCommand(postgresStatementProvider.forPruneHistory(metaClass, historyRetention)))
+                .doOnError(e -> notificationTriggers.remove(metaClass))
+                .cache());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, S> Observable<Notification<S>> entityNotifications(MetaClassWithKey<K, S> metaClass) {
+        return (Observable<Notification<S>>)entityNotifications.computeIfAbsent(metaClass, mc -> notificationListener
+                .listen(postgresStatementProvider.notificationChannel(metaClass))
+                .flatMapMaybe(payload -> ChangeNotification.parse(payload).map(Maybe::just).orElseGet(Maybe::empty))
+                .buffer(batchWindow.toMillis(), TimeUnit.MILLISECONDS, maxBatchSize)
+                .filter(batch -> !batch.isEmpty())
+                .concatMap(batch -> fetchNotifications(metaClass, batch))
+                .mergeWith(pruneHistory(metaClass))
+                .doFinally(() -> entityNotifications.remove(metaClass))
+                .share());
+    }
+
+    private <K, S> Observable<Notification<S>> fetchNotifications(MetaClassWithKey<K, S> metaClass, List<ChangeNotification> batch) {
+        log.trace("{}: fetching {} changed entries", metaClass.simpleName(), batch.size());
+        List<Long> newGenerations = generationsOf(batch, n -> !n.isDelete());
+        List<Long> oldGenerations = generationsOf(batch, n -> !n.isInsert());
+        return Single
+                .zip(
+                        fetchByGeneration(metaClass, newGenerations, SqlFields.sequenceFieldName,
+                                () -> postgresStatementProvider.forQueryByGenerations(metaClass, newGenerations)),
+                        fetchByGeneration(metaClass, oldGenerations, PostgresSqlStatementProvider.replacedByFieldName,
+                                () -> postgresStatementProvider.forQueryReplacedByGenerations(metaClass, oldGenerations)),
+                        (Map<Long, S> newValues, Map<Long, S> oldValues) -> batch.stream()
+                                .map(n -> Notification.ofModified(oldValues.get(n.generation), newValues.get(n.generation), n.generation))
+                                .filter(n -> !n.isEmpty())
+                                .collect(Collectors.toList()))
+                .flattenAsObservable(notifications -> notifications)
+                .subscribeOn(Schedulers.io());
+    }
+
+    private <K, S> Single<Map<Long, S>> fetchByGeneration(MetaClassWithKey<K, S> metaClass, List<Long> generations, String generationField, Supplier<SqlStatement> statement) {
+        if (generations.isEmpty()) {
+            return Single.just(Collections.emptyMap());
+        }
+        return statementExecutor
+                .executeQuery(statement.get())
+                .toMap(pr -> ((Number)pr.getProperty(generationField, Long.class)).longValue(), pr -> pr.toObject(metaClass));
+    }
+
+    private <K, S> Observable<Notification<S>> pruneHistory(MetaClassWithKey<K, S> metaClass) {
+        return Observable
+                .interval(historyRetention.toMillis(), TimeUnit.MILLISECONDS, Schedulers.io())
+                .concatMapCompletable(i -> statementExecutor
+                        .executeCommand(postgresStatementProvider.forPruneHistory(metaClass, historyRetention))
+                        .doOnError(e -> log.warn("Failed to prune history of {}", metaClass.simpleName(), e))
+                        .onErrorComplete())
+                .toObservable();
+    }
+
+    // ON CONFLICT DO UPDATE cannot affect the same row twice within one statement
+    private static <K, S> Collection<S> lastByKey(MetaClassWithKey<K, S> metaClass, List<S> entities) {
+        Map<K, S> entitiesByKey = new LinkedHashMap<>();
+        entities.forEach(entity -> entitiesByKey.put(metaClass.keyOf(entity), entity));
+        return entitiesByKey.values();
+    }
+
+    private static List<Long> generationsOf(List<ChangeNotification> batch, Predicate<ChangeNotification> filter) {
+        return batch.stream()
+                .filter(filter)
+                .map(n -> n.generation)
+                .collect(Collectors.toList());
+    }
+
+    private static class ChangeNotification {
+        private final static Pattern payloadPattern = Pattern.compile("^\\{\\s*\"generation\"\\s*:\\s*(\\d+)\\s*,\\s*\"op\"\\s*:\\s*\"(\\w+)\"");
+        private final long generation;
+        private final String operation;
+
+        private ChangeNotification(long generation, String operation) {
+            this.generation = generation;
+            this.operation = operation;
+        }
+
+        private static Optional<ChangeNotification> parse(String payload) {
+            Matcher matcher = payloadPattern.matcher(payload);
+            if (!matcher.find()) {
+                log.warn("Unrecognized notification payload: {}", payload);
+                return Optional.empty();
+            }
+            return Optional.of(new ChangeNotification(Long.parseLong(matcher.group(1)), matcher.group(2)));
+        }
+
+        private boolean isInsert() {
+            return "INSERT".equals(operation);
+        }
+
+        private boolean isDelete() {
+            return "DELETE".equals(operation);
+        }
+    }
+}
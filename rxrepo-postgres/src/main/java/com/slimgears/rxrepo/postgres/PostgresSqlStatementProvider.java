@@ -4,13 +4,16 @@ import com.google.common.base.Strings;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.provider.HasEntityMeta;
+import com.slimgears.rxrepo.query.provider.HasPagination;
 import com.slimgears.rxrepo.query.provider.HasPredicate;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.rxrepo.sql.*;
+import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.generic.MoreStrings;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -22,6 +25,10 @@ import static com.slimgears.rxrepo.sql.StatementUtils.concat;
 
 public class PostgresSqlStatementProvider extends DefaultSqlStatementProvider {
     private static final String sequenceName = "generation";
+    private static final String notifyFunctionName = "notify_change";
+    private static final String generationFunctionName = "bump_generation";
+    static final String replacedByFieldName = "__replacedBy";
+    static final String replacedAtFieldName = "__replacedAt";
 
     public PostgresSqlStatementProvider(SqlExpressionGenerator sqlExpressionGenerator,
                                         SqlTypeMapper sqlTypeMapper,
@@ -31,7 +38,107 @@ public class PostgresSqlStatementProvider extends DefaultSqlStatementProvider {
 
     @Override
     public SqlStatement forCreateSchema() {
-         return super.forCreateSchema().append(SqlStatement.of("create sequence if not exists", sequenceName()));
+         return super.forCreateSchema().append(
+                 SqlStatement.of("create sequence if not exists", sequenceName()),
+                 SqlStatement.of(notifyFunctionDef()),
+                 SqlStatement.of(generationFunctionDef()));
+    }
+
+    @Override
+    public <K, S> SqlStatement forDropTable(MetaClassWithKey<K, S> metaClass) {
+        return super.forDropTable(metaClass).append(SqlStatement.of("drop table if exists", historyTableName(metaClass)));
+    }
+
+    public <K, S> SqlStatement forCreateNotificationTriggers(MetaClassWithKey<K, S> metaClass) {
+        String tableName = fullTableName(metaClass);
+        String historyTableName = historyTableName(metaClass);
+        String prefix = tableName(metaClass).toLowerCase();
+        return SqlStatement.of(MoreStrings.format(
+                "create table if not exists {} (\"{}\" {} not null, \"{}\" timestamp with time zone not null default now())",
+                historyTableName, replacedByFieldName, toSqlType(Long.class), replacedAtFieldName))
+                .append(
+                        // History columns follow entity meta-class rather than the current shape of entity table,
+                        // so that columns added to entity are added to history as well
+                        SqlStatement.of(MoreStrings.format("alter table {} {}", historyTableName, historyFieldDefs(metaClass)
+                                .map(def -> "add column if not exists " + def)
+                                .collect(Collectors.joining(", ")))),
+                        SqlStatement.of(MoreStrings.format("create index if not exists {}__generation on {} (\"{}\")", prefix, tableName, SqlFields.sequenceFieldName)),
+                        SqlStatement.of(MoreStrings.format("create index if not exists {}__history_generation on {} (\"{}\")", prefix, historyTableName, SqlFields.sequenceFieldName)),
+                        SqlStatement.of(MoreStrings.format("create index if not exists {}__history_replaced_by on {} (\"{}\")", prefix, historyTableName, replacedByFieldName)),
+                        SqlStatement.of(MoreStrings.format(String.join("\n",
+                                "do $$ begin",
+                                "if not exists (select 1 from pg_trigger where tgrelid = '{}'::regclass and tgname = '{}__notify') then",
+                                "    create trigger {}__notify after insert or update or delete on {} for each row execute procedure {}.{}('{}', '{}', '{}', '{}');",
+                                "end if;",
+                                "if not exists (select 1 from pg_trigger where tgrelid = '{}'::regclass and tgname = '{}__generation') then",
+                                "    create trigger {}__generation before update on {} for each row execute procedure {}.{}('{}');",
+                                "end if;",
+                                "end $$"),
+                                tableName, prefix,
+                                prefix, tableName, databaseName(), notifyFunctionName, notificationChannel(metaClass), historyTableName, sequenceName(), metaClass.keyProperty().name(),
+                                tableName, prefix,
+                                prefix, tableName, databaseName(), generationFunctionName, sequenceName())));
+    }
+
+    public <K, S> SqlStatement forQueryByGenerations(MetaClassWithKey<K, S> metaClass, Collection<Long> generations) {
+        String fields = entityFields(metaClass).collect(Collectors.joining(", "));
+        String condition = MoreStrings.format("\"{}\" in {}", SqlFields.sequenceFieldName, placeholders(generations));
+        return SqlStatement.create(
+                String.join(" ",
+                        "select", fields, "from", fullTableName(metaClass), "where", condition,
+                        "union all",
+                        "select", fields, "from", historyTableName(metaClass), "where", condition),
+                Stream.concat(generations.stream(), generations.stream()).toArray());
+    }
+
+    public <K, S> SqlStatement forQueryReplacedByGenerations(MetaClassWithKey<K, S> metaClass, Collection<Long> generations) {
+        return SqlStatement.create(
+                String.join(" ",
+                        "select", Stream.concat(entityFields(metaClass), Stream.of("\"" + replacedByFieldName + "\"")).collect(Collectors.joining(", ")),
+                        "from", historyTableName(metaClass),
+                        "where", MoreStrings.format("\"{}\" in {}", replacedByFieldName, placeholders(generations))),
+                generations.toArray());
+    }
+
+    public <K, S> SqlStatement forPruneHistory(MetaClassWithKey<K, S> metaClass, Duration retention) {
+        return SqlStatement.create(MoreStrings.format(
+                "delete from {} where \"{}\" < now() - interval '{} milliseconds'",
+                historyTableName(metaClass), replacedAtFieldName, retention.toMillis()));
+    }
+
+    public <K, S> SqlStatement forCreateStagingTable(MetaClassWithKey<K, S> metaClass) {
+        return of("create temporary table if not exists", stagingTableName(metaClass),
+                "(like", fullTableName(metaClass) + ")",
+                "on commit delete rows");
+    }
+
+    public <K, S> SqlStatement forCopyIntoStagingTable(MetaClassWithKey<K, S> metaClass) {
+        return of("copy", stagingTableName(metaClass),
+                stagingFields(metaClass).collect(Collectors.joining(", ", "(", ")")),
+                "from stdin (format csv)");
+    }
+
+    public <K, S> SqlStatement forMergeStagingTable(MetaClassWithKey<K, S> metaClass, boolean upsert) {
+        String keyField = fullFieldName(PropertyExpression.ofObject(metaClass.keyProperty()));
+        String sequenceField = "\"" + SqlFields.sequenceFieldName + "\"";
+        String fields = stagingFields(metaClass).collect(Collectors.joining(", "));
+        return of(
+                "insert into", fullTableName(metaClass),
+                "(" + fields + ", " + sequenceField + ")",
+                "select", fields + ",", "nextval('" + sequenceName() + "')",
+                "from", stagingTableName(metaClass),
+                upsert
+                        ? "on conflict (" + keyField + ") do update set " + Stream.concat(
+                                stagingFields(metaClass)
+                                        .filter(field -> !field.equals(keyField))
+                                        .map(field -> MoreStrings.format("{} = coalesce(excluded.{}, {}.{})", field, field, tableName(metaClass), field)),
+                                Stream.of(MoreStrings.format("{} = excluded.{}", sequenceField, sequenceField)))
+                                .collect(Collectors.joining(", "))
+                        : "");
+    }
+
+    public <K, S> String notificationChannel(MetaClassWithKey<K, S> metaClass) {
+        return (databaseName() + "_" + tableName(metaClass)).toLowerCase();
     }
 
     @Override
@@ -77,8 +184,84 @@ public class PostgresSqlStatementProvider extends DefaultSqlStatementProvider {
                 "returning *");
     }
 
+    @Override
+    protected <Q extends HasPagination> String skipClause(Q statement) {
+        return Optional.ofNullable(statement.skip())
+                .map(count -> "offset " + sqlExpressionGenerator.fromConstant(count))
+                .orElse("");
+    }
+
 
     private String sequenceName() {
         return databaseName() + "." + sequenceName;
     }
+
+    private <K, S> String historyTableName(MetaClassWithKey<K, S> metaClass) {
+        return fullTableName(metaClass) + "__history";
+    }
+
+    private <K, S> String stagingTableName(MetaClassWithKey<K, S> metaClass) {
+        return (databaseName() + "_" + tableName(metaClass) + "__staging").toLowerCase();
+    }
+
+    private <K, S> Stream<String> stagingFields(MetaClassWithKey<K, S> metaClass) {
+        return PropertyExpressions.embeddedPropertiesForMeta(metaClass).map(this::fullFieldName);
+    }
+
+    private <K, S> Stream<String> historyFieldDefs(MetaClassWithKey<K, S> metaClass) {
+        return Stream.concat(
+                PropertyExpressions.embeddedPropertiesForMeta(metaClass).map(this::toColumnDef),
+                Stream.of("\"" + SqlFields.sequenceFieldName + "\" " + toSqlType(Long.class)));
+    }
+
+    private <K, S> Stream<String> entityFields(MetaClassWithKey<K, S> metaClass) {
+        return Stream.concat(
+                stagingFields(metaClass),
+                Stream.of("\"" + SqlFields.sequenceFieldName + "\""));
+    }
+
+    private static String placeholders(Collection<?> values) {
+        return values.stream().map(v -> "?").collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    // Row level trigger: arguments are (channel, history table, sequence, key column).
+    // Replaced and deleted rows are kept in the history table, so that listeners can
+    // resolve both old and new values of a notification by generation. Rows are copied
+    // into history by column name, so column order of both tables does not matter
+    private String notifyFunctionDef() {
+        return String.join("\n",
+                "create or replace function " + databaseName() + "." + notifyFunctionName + "() returns trigger as $$",
+                "declare",
+                "    generation bigint;",
+                "    entry jsonb;",
+                "begin",
+                "    if (TG_OP = 'DELETE') then",
+                "        generation := nextval(TG_ARGV[2]::regclass);",
+                "        entry := to_jsonb(OLD);",
+                "    else",
+                "        generation := NEW.\"" + SqlFields.sequenceFieldName + "\";",
+                "        entry := to_jsonb(NEW);",
+                "    end if;",
+                "    if (TG_OP <> 'INSERT') then",
+                "        execute format('insert into %1$s select * from jsonb_populate_record(null::%1$s, $1)', TG_ARGV[1])",
+                "            using to_jsonb(OLD) || jsonb_build_object('" + replacedByFieldName + "', generation, '" + replacedAtFieldName + "', now());",
+                "    end if;",
+                "    perform pg_notify(TG_ARGV[0], json_build_object('generation', generation, 'op', TG_OP, 'key', entry ->> TG_ARGV[3])::text);",
+                "    return null;",
+                "end;",
+                "$$ language plpgsql");
+    }
+
+    // Bulk updates do not assign generation explicitly, so make sure every modified row gets a new one
+    private String generationFunctionDef() {
+        return String.join("\n",
+                "create or replace function " + databaseName() + "." + generationFunctionName + "() returns trigger as $$",
+                "begin",
+                "    if (NEW.\"" + SqlFields.sequenceFieldName + "\" is not distinct from OLD.\"" + SqlFields.sequenceFieldName + "\") then",
+                "        NEW.\"" + SqlFields.sequenceFieldName + "\" := nextval(TG_ARGV[0]::regclass);",
+                "    end if;",
+                "    return NEW;",
+                "end;",
+                "$$ language plpgsql");
+    }
 }
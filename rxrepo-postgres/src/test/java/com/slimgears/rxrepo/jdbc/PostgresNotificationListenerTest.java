@@ -0,0 +1,103 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.postgres.PostgresNotificationListener;
+import io.reactivex.observers.TestObserver;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class PostgresNotificationListenerTest {
+    private final Queue<Connection> connections = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connectCount = new AtomicInteger();
+    private PostgresNotificationListener listener;
+
+    @Before
+    public void setUp() {
+        listener = new PostgresNotificationListener(this::connect, Duration.ofMillis(10));
+    }
+
+    @After
+    public void tearDown() {
+        listener.close();
+    }
+
+    @Test
+    public void testListenerReconnectsAfterConnectionFailure() throws Exception {
+        Connection brokenConnection = mockConnection();
+        when(brokenConnection.unwrap(PGConnection.class).getNotifications(anyInt()))
+                .thenThrow(new SQLException("Connection reset", "08006"));
+
+        Connection connection = mockConnection();
+        Statement statement = connection.createStatement();
+        when(connection.unwrap(PGConnection.class).getNotifications(anyInt()))
+                .thenReturn(new PGNotification[]{notification("channel", "payload")})
+                .thenAnswer(invocation -> {
+                    Thread.sleep(10);
+                    return new PGNotification[0];
+                });
+
+        connections.add(brokenConnection);
+        connections.add(connection);
+
+        TestObserver<String> observer = listener.listen("channel").test();
+        observer
+                .awaitCount(1)
+                .assertNoErrors()
+                .assertNotComplete()
+                .assertValue("payload");
+
+        Assert.assertEquals(2, connectCount.get());
+        verify(brokenConnection).close();
+        verify(statement).execute("listen \"channel\"");
+    }
+
+    @Test
+    public void testCloseReleasesConnection() throws Exception {
+        Connection connection = mockConnection();
+        when(connection.unwrap(PGConnection.class).getNotifications(anyInt()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(10);
+                    return new PGNotification[0];
+                });
+        connections.add(connection);
+
+        TestObserver<String> observer = listener.listen("channel").test();
+        listener.close();
+        observer.assertNoErrors();
+        verify(connection).close();
+    }
+
+    private Connection connect() {
+        connectCount.incrementAndGet();
+        return connections.size() > 1 ? connections.poll() : connections.peek();
+    }
+
+    private static Connection mockConnection() throws SQLException {
+        Connection connection = mock(Connection.class, withSettings().extraInterfaces(PGConnection.class));
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.unwrap(PGConnection.class)).thenReturn((PGConnection)connection);
+        return connection;
+    }
+
+    private static PGNotification notification(String channel, String payload) {
+        PGNotification notification = mock(PGNotification.class);
+        when(notification.getName()).thenReturn(channel);
+        when(notification.getParameter()).thenReturn(payload);
+        return notification;
+    }
+}
@@ -1,12 +1,18 @@
 package com.slimgears.rxrepo.jdbc;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.slimgears.rxrepo.postgres.PostgresRepository;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.Repository;
 import com.slimgears.rxrepo.sql.AbstractSqlStatementExecutorDecorator;
 import com.slimgears.rxrepo.sql.SqlStatement;
 import com.slimgears.rxrepo.sql.SqlStatementExecutor;
 import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.junit.DockerRules;
 import com.slimgears.util.test.logging.LogLevel;
@@ -14,13 +20,24 @@ import com.slimgears.util.test.logging.UseLogLevel;
 import io.reactivex.Completable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.observers.BaseTestConsumer;
+import io.reactivex.observers.TestObserver;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.rules.TestRule;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -126,6 +143,102 @@ public class PostgresRepositoryTest  extends AbstractRepositoryTest {
         super.testInsertThenUpdate();
     }
 
+    @Test
+    public void testLiveQuerySurvivesListenerConnectionLoss() throws Exception {
+        TestObserver<Notification<Product>> observer = products.query()
+                .liveSelect()
+                .observe()
+                .filter(Notification::isCreate)
+                .test();
+
+        products.update(Products.createMany(1)).blockingAwait();
+        observer.awaitCount(1).assertNoErrors();
+
+        executeSql("select pg_terminate_backend(pid) from pg_stat_activity where query like 'listen%' and pid <> pg_backend_pid()");
+        Thread.sleep(2000);
+
+        products.update(Products.createMany(2)).blockingAwait();
+        observer.awaitCount(2, BaseTestConsumer.TestWaitStrategy.SLEEP_10MS, 10000)
+                .assertNoErrors()
+                .assertNotComplete()
+                .assertValueCount(2);
+    }
+
+    @Test
+    public void testHistoryTableColumnsAreRestoredFromMetaClass() throws Exception {
+        Product product = Products.createOne();
+        products.update(product).blockingGet();
+        TestObserver<Notification<Product>> triggersObserver = products.query().liveSelect().observe().test();
+        Thread.sleep(500);
+        triggersObserver.dispose();
+
+        String droppedColumn = querySingleString(
+                "select column_name from information_schema.columns " +
+                        "where table_schema = '" + PostgresTestUtils.schemaName + "' and lower(table_name) = 'product__history' and column_name not like '\\_\\_%' " +
+                        "order by ordinal_position desc limit 1");
+        executeSql("alter table " + PostgresTestUtils.schemaName + ".Product__history drop column \"" + droppedColumn + "\"");
+
+        Repository repository = createRepository();
+        try {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            TestObserver<Notification<Product>> observer = products.query()
+                    .liveSelect()
+                    .observe()
+                    .filter(Notification::isModify)
+                    .test();
+            Thread.sleep(500);
+            products.update(product.toBuilder().name(product.name() + " - updated").build()).blockingGet();
+            observer.awaitCount(1, BaseTestConsumer.TestWaitStrategy.SLEEP_10MS, 10000)
+                    .assertNoErrors()
+                    .assertValueCount(1);
+            Assert.assertEquals(droppedColumn, querySingleString(
+                    "select column_name from information_schema.columns " +
+                            "where table_schema = '" + PostgresTestUtils.schemaName + "' and lower(table_name) = 'product__history' and column_name = '" + droppedColumn + "'"));
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void testBulkLoadedDatesRoundTrip() {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(50));
+        Repository bulkRepository = PostgresRepository
+                .builder()
+                .connection(PostgresTestUtils.connectionUrl)
+                .schemaName(PostgresTestUtils.schemaName)
+                .enableBulkLoad(10)
+                .build();
+        try {
+            bulkRepository.entities(Product.metaClass).update(productList).blockingAwait();
+        } finally {
+            bulkRepository.close();
+        }
+
+        Map<UniqueId, Date> dates = products.query()
+                .retrieve()
+                .toMap(Product::key, Product::productionDate)
+                .blockingGet();
+
+        Assert.assertEquals(productList.size(), dates.size());
+        productList.forEach(product -> Assert.assertEquals(product.productionDate(), dates.get(product.key())));
+    }
+
+    private static void executeSql(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(PostgresTestUtils.connectionUrl);
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static String querySingleString(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(PostgresTestUtils.connectionUrl);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            Assert.assertTrue(resultSet.next());
+            return resultSet.getString(1);
+        }
+    }
+
     @Override
     protected Repository createRepository() {
         return PostgresRepository
@@ -37,4 +37,10 @@ public abstract class AbstractRepositoryBuilder<_B extends AbstractRepositoryBui
         configBuilder.retryInitialDurationMillis(value);
         return self();
     }
+
+    @Override
+    public _B queryFetchSize(int value) {
+        configBuilder.queryFetchSize(value);
+        return self();
+    }
 }
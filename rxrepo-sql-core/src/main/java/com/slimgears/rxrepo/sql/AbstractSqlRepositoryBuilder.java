@@ -11,7 +11,8 @@ public abstract class AbstractSqlRepositoryBuilder<_B extends AbstractSqlReposit
                 .bufferDebounceTimeoutMillis(1000)
                 .aggregationDebounceTimeMillis(2000)
                 .retryCount(5)
-                .retryInitialDurationMillis(10);
+                .retryInitialDurationMillis(10)
+                .queryFetchSize(1000);
     }
 
     public Repository build() {
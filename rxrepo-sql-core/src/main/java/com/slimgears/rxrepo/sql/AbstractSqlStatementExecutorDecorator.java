@@ -4,6 +4,7 @@ import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
@@ -21,6 +22,11 @@ public abstract class AbstractSqlStatementExecutorDecorator implements SqlStatem
         return underlyingExecutor.executeQuery(statement.mapArgs(this::mapArgument));
     }
 
+    @Override
+    public Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement, int fetchSize) {
+        return underlyingExecutor.executeQueryFlowable(statement.mapArgs(this::mapArgument), fetchSize);
+    }
+
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
         return underlyingExecutor.executeCommandReturnEntries(mapArgs(statement));
@@ -0,0 +1,9 @@
+package com.slimgears.rxrepo.sql;
+
+public interface ConnectionPoolStatistics {
+    int activeConnections();
+    int idleConnections();
+    int pendingRequests();
+    long statementCacheHits();
+    long statementCacheMisses();
+}
@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.sql;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.reflect.TypeToken;
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.CollectionExpression;
@@ -30,6 +31,7 @@ import java.util.stream.Stream;
 @SuppressWarnings("UnstableApiUsage")
 public class DefaultSqlQueryProvider implements QueryProvider {
     private final static Logger log = LoggerFactory.getLogger(DefaultSqlQueryProvider.class);
+    private final static int maxKeysPerStatement = 1000;
     protected final SqlStatementProvider statementProvider;
     private final SqlStatementExecutor statementExecutor;
     protected final SqlSchemaGenerator schemaGenerator;
@@ -138,14 +140,38 @@ public class DefaultSqlQueryProvider implements QueryProvider {
                 .useTable(query.metaClass())
                 .andThen(statementExecutor
                         .executeQuery(statementProvider.forQuery(query))
-                        .compose(toCreateNotifications(objectType, query.mapping(), query.properties())));
+                        .flatMapMaybe(toCreateNotification(objectType, query.mapping(), query.properties())));
+    }
+
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query, int fetchSize) {
+        log.trace("Preparing streaming query of {}", query.metaClass().simpleName());
+        TypeToken<? extends T> objectType = HasMapping.objectType(query);
+        return schemaGenerator
+                .useTable(query.metaClass())
+                .andThen(statementExecutor
+                        .executeQueryFlowable(statementProvider.forQuery(query), fetchSize)
+                        .concatMapMaybe(toCreateNotification(objectType, query.mapping(), query.properties())));
+    }
+
+    @Override
+    public <K, S> Observable<S> findByKeys(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        QueryInfo<K, S, S> query = QueryInfos.includeMandatoryProperties(QueryInfo.<K, S, S>builder().metaClass(metaClass).build());
+        TypeToken<? extends S> objectType = HasMapping.objectType(query);
+        return schemaGenerator
+                .useTable(metaClass)
+                .andThen(Observable
+                        .fromIterable(Iterables.partition(keys, maxKeysPerStatement))
+                        .concatMap(keyList -> statementExecutor.executeQuery(statementProvider.forQueryByKeys(query, keyList))))
+                .flatMapMaybe(toCreateNotification(objectType, query.mapping(), query.properties()))
+                .map(Notification::newValue);
     }
 
     @SuppressWarnings("unchecked")
-    private <T> ObservableTransformer<PropertyResolver, Notification<T>> toCreateNotifications(TypeToken<? extends T> objectType,
-                                                                                               ObjectExpression<?, T> mapping,
-                                                                                               ImmutableSet<PropertyExpression<T, ?, ?>> properties) {
-        Function<PropertyResolver, Maybe<Notification<T>>> mapper = Optional
+    private <T> Function<PropertyResolver, Maybe<Notification<T>>> toCreateNotification(TypeToken<? extends T> objectType,
+                                                                                        ObjectExpression<?, T> mapping,
+                                                                                        ImmutableSet<PropertyExpression<T, ?, ?>> properties) {
+        return Optional
                 .ofNullable(mapping)
                 .flatMap(Optionals.ofType(PropertyExpression.class))
                 .map(PropertyExpression::path)
@@ -160,7 +186,6 @@ public class DefaultSqlQueryProvider implements QueryProvider {
                 .orElse(pr -> Maybe
                         .fromCallable(() -> PropertyResolvers.withProperties(properties, () -> pr.toObject(objectType)))
                         .map(obj -> Notification.ofCreated(obj, generationOf(pr))));
-        return src -> src.flatMapMaybe(mapper);
     }
 
     private Long generationOf(PropertyResolver propertyResolver) {
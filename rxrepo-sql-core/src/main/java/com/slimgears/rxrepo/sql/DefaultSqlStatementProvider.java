@@ -53,9 +53,11 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
         }
     }
 
+    private final static long queryShapeCacheSize = 1000;
     protected final SqlExpressionGenerator sqlExpressionGenerator;
     private final Supplier<String> dbNameSupplier;
     private final SqlTypeMapper sqlTypeMapper;
+    private final SqlQueryShapeCache queryShapeCache = new SqlQueryShapeCache(queryShapeCacheSize);
 
     public DefaultSqlStatementProvider(SqlExpressionGenerator sqlExpressionGenerator,
                                        SqlTypeMapper sqlTypeMapper,
@@ -67,13 +69,27 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
 
     @Override
     public <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo) {
-        return statement(() -> of(
-                selectClause(queryInfo),
-                fromClause(queryInfo),
-                whereClause(queryInfo),
-                orderClause(queryInfo),
-                limitClause(queryInfo),
-                skipClause(queryInfo)));
+        return queryShapeCache.statement(queryInfo, query -> statement(() -> of(
+                selectClause(query),
+                fromClause(query),
+                whereClause(query),
+                orderClause(query),
+                limitClause(query),
+                skipClause(query))));
+    }
+
+    @Override
+    public <K, S, T> SqlStatement forQueryByKeys(QueryInfo<K, S, T> queryInfo, Collection<K> keys) {
+        return queryShapeCache.statement(queryInfo, keys, (query, keyList) -> {
+            MetaClassWithKey<K, S> metaClass = query.metaClass();
+            SqlStatement statement = statement(() -> of(
+                    selectClause(query),
+                    fromClause(query),
+                    "where",
+                    sqlExpressionGenerator.toSqlExpression(PropertyExpression.ofObject(metaClass.keyProperty())),
+                    keyList.stream().map(key -> "?").collect(Collectors.joining(", ", "in (", ")"))));
+            return statement.withArgs(Stream.concat(Arrays.stream(statement.args()), keyList.stream()).toArray());
+        });
     }
 
     @Override
@@ -256,13 +272,16 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
     }
 
     protected <S> String toFieldDef(PropertyExpression<S, ?, ?> propertyExpression) {
-        String type = toSqlType(toFieldType(propertyExpression.property()));
         return Stream.concat(
-                Stream.of(fullFieldName(propertyExpression), type),
+                Stream.of(toColumnDef(propertyExpression)),
                 toFieldConstraints(propertyExpression))
                 .collect(Collectors.joining(" "));
     }
 
+    protected <S> String toColumnDef(PropertyExpression<S, ?, ?> propertyExpression) {
+        return fullFieldName(propertyExpression) + " " + toSqlType(toFieldType(propertyExpression.property()));
+    }
+
     protected String toSqlType(TypeToken<?> type) {
         return sqlTypeMapper.toSqlType(type);
     }
@@ -393,13 +412,13 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
 
     protected <Q extends HasLimit> String limitClause(Q statement) {
         return Optional.ofNullable(statement.limit())
-                .map(count -> "limit " + count)
+                .map(count -> "limit " + sqlExpressionGenerator.fromConstant(count))
                 .orElse("");
     }
 
-    private <Q extends HasPagination> String skipClause(Q statement) {
+    protected <Q extends HasPagination> String skipClause(Q statement) {
         return Optional.ofNullable(statement.skip())
-                .map(count -> "skip " + count)
+                .map(count -> "skip " + sqlExpressionGenerator.fromConstant(count))
                 .orElse("");
     }
 
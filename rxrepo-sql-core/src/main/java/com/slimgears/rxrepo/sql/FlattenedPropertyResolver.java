@@ -3,6 +3,8 @@ package com.slimgears.rxrepo.sql;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.stream.Lazy;
@@ -10,6 +12,7 @@ import com.slimgears.util.stream.Lazy;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.*;
 
@@ -32,6 +35,14 @@ public class FlattenedPropertyResolver implements PropertyResolver {
         return new FlattenedPropertyResolver(underlyingResolver, Pattern.quote(delimiter));
     }
 
+    public static Schema schema(List<String> columnNames) {
+        return schema(columnNames, ".");
+    }
+
+    public static Schema schema(List<String> columnNames, String delimiter) {
+        return new Schema(columnNames, Pattern.quote(delimiter));
+    }
+
     private FlattenedPropertyResolver(PropertyResolver underlyingResolver, String delimiter) {
         this(underlyingResolver, delimiter, "");
     }
@@ -103,7 +114,94 @@ public class FlattenedPropertyResolver implements PropertyResolver {
     }
 
     private String[] split(String name) {
+        return split(name, delimiter);
+    }
+
+    private static String[] split(String name, String delimiter) {
         String[] parts = name.split(delimiter);
         return parts.length > 0 ? parts : new String[] {name};
     }
+
+    private static String canonic(String name) {
+        return name.replace("`", "");
+    }
+
+    public interface ValueMapper {
+        Object map(Object value, Class<?> type);
+    }
+
+    public static class Schema {
+        private final Set<String> propertyNames;
+        private final Map<String, Integer> columnIndexes;
+        private final Map<String, Schema> nestedSchemas;
+
+        private Schema(List<String> columnNames, String delimiter) {
+            this(columnNames, IntStream.range(0, columnNames.size()).boxed().collect(toList()), delimiter, "");
+        }
+
+        private Schema(List<String> columnNames, List<Integer> indexes, String delimiter, String prefix) {
+            int level = (int)Arrays.stream(split(prefix, delimiter)).filter(p -> !p.isEmpty()).count();
+            Map<String, List<Integer>> groups = new LinkedHashMap<>();
+            for (int i : indexes) {
+                if (columnNames.get(i).startsWith(prefix)) {
+                    groups.computeIfAbsent(split(columnNames.get(i), delimiter)[level], k -> new ArrayList<>()).add(i);
+                }
+            }
+
+            ImmutableSet.Builder<String> propertyNames = ImmutableSet.builder();
+            Map<String, Integer> columnIndexes = new HashMap<>();
+            Map<String, Schema> nestedSchemas = new HashMap<>();
+            groups.forEach((name, groupIndexes) -> {
+                String canonicName = canonic(name);
+                propertyNames.add(canonicName);
+                int first = groupIndexes.get(0);
+                if (columnNames.get(first).length() - prefix.length() > name.length()) {
+                    Schema nested = new Schema(columnNames, groupIndexes, delimiter, prefix + name + ".");
+                    nestedSchemas.put(name, nested);
+                    nestedSchemas.put(canonicName, nested);
+                } else {
+                    columnIndexes.put(name, first);
+                    columnIndexes.put(canonicName, first);
+                }
+            });
+
+            this.propertyNames = propertyNames.build();
+            this.columnIndexes = ImmutableMap.copyOf(columnIndexes);
+            this.nestedSchemas = ImmutableMap.copyOf(nestedSchemas);
+        }
+
+        public PropertyResolver resolve(Object[] row, ValueMapper valueMapper) {
+            return new RowPropertyResolver(this, row, valueMapper);
+        }
+    }
+
+    private static class RowPropertyResolver implements PropertyResolver {
+        private final Schema schema;
+        private final Object[] row;
+        private final ValueMapper valueMapper;
+
+        private RowPropertyResolver(Schema schema, Object[] row, ValueMapper valueMapper) {
+            this.schema = schema;
+            this.row = row;
+            this.valueMapper = valueMapper;
+        }
+
+        @Override
+        public Iterable<String> propertyNames() {
+            return schema.propertyNames;
+        }
+
+        @Override
+        public Object getProperty(String name, Class<?> type) {
+            Integer index = schema.columnIndexes.get(name);
+            if (index != null) {
+                return Optional.ofNullable(row[index])
+                        .map(val -> valueMapper.map(val, type))
+                        .orElse(null);
+            }
+            return Optional.ofNullable(schema.nestedSchemas.get(name))
+                    .map(nested -> new RowPropertyResolver(nested, row, valueMapper))
+                    .orElse(null);
+        }
+    }
 }
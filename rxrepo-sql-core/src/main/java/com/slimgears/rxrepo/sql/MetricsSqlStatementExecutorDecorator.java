@@ -4,18 +4,25 @@ import com.slimgears.nanometer.MetricCollector;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
 public class MetricsSqlStatementExecutorDecorator implements SqlStatementExecutor.Decorator {
     private final MetricCollector metricCollector;
+    private final ConnectionPoolStatistics poolStatistics;
 
-    private MetricsSqlStatementExecutorDecorator(MetricCollector metricCollector) {
+    private MetricsSqlStatementExecutorDecorator(MetricCollector metricCollector, ConnectionPoolStatistics poolStatistics) {
         this.metricCollector = metricCollector.name("sqlExecutor");
+        this.poolStatistics = poolStatistics;
     }
 
     public static SqlStatementExecutor.Decorator create(MetricCollector metricCollector) {
-        return new MetricsSqlStatementExecutorDecorator(metricCollector);
+        return new MetricsSqlStatementExecutorDecorator(metricCollector, null);
+    }
+
+    public static SqlStatementExecutor.Decorator create(MetricCollector metricCollector, ConnectionPoolStatistics poolStatistics) {
+        return new MetricsSqlStatementExecutorDecorator(metricCollector, poolStatistics);
     }
 
     @Override
@@ -23,17 +30,26 @@ public class MetricsSqlStatementExecutorDecorator implements SqlStatementExecuto
         return new SqlStatementExecutor() {
             @Override
             public Observable<PropertyResolver> executeQuery(SqlStatement statement) {
-                return executor.executeQuery(statement).compose(asyncCollector("query").forObservable());
+                return executor.executeQuery(statement).compose(asyncCollector("query").forObservable())
+                        .doFinally(MetricsSqlStatementExecutorDecorator.this::recordPoolStatistics);
+            }
+
+            @Override
+            public Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement, int fetchSize) {
+                return executor.executeQueryFlowable(statement, fetchSize)
+                        .doFinally(MetricsSqlStatementExecutorDecorator.this::recordPoolStatistics);
             }
 
             @Override
             public Single<Integer> executeCommandReturnCount(SqlStatement statement) {
-                return executor.executeCommandReturnCount(statement).compose(asyncCollector("command").forSingle());
+                return executor.executeCommandReturnCount(statement).compose(asyncCollector("command").forSingle())
+                        .doFinally(MetricsSqlStatementExecutorDecorator.this::recordPoolStatistics);
             }
 
             @Override
             public Completable executeCommands(Iterable<SqlStatement> statements) {
-                return executor.executeCommands(statements).compose(asyncCollector("command").forCompletable());
+                return executor.executeCommands(statements).compose(asyncCollector("command").forCompletable())
+                        .doFinally(MetricsSqlStatementExecutorDecorator.this::recordPoolStatistics);
             }
 
             @Override
@@ -43,7 +59,8 @@ public class MetricsSqlStatementExecutorDecorator implements SqlStatementExecuto
 
             @Override
             public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
-                return executor.executeCommandReturnEntries(statement).compose(asyncCollector("command").forObservable());
+                return executor.executeCommandReturnEntries(statement).compose(asyncCollector("command").forObservable())
+                        .doFinally(MetricsSqlStatementExecutorDecorator.this::recordPoolStatistics);
             }
 
             private MetricCollector.Async asyncCollector(String name) {
@@ -51,4 +68,16 @@ public class MetricsSqlStatementExecutorDecorator implements SqlStatementExecuto
             }
         };
     }
+
+    private void recordPoolStatistics() {
+        if (poolStatistics == null) {
+            return;
+        }
+        MetricCollector poolMetrics = metricCollector.name("pool");
+        poolMetrics.gauge("activeConnections").record(poolStatistics.activeConnections());
+        poolMetrics.gauge("idleConnections").record(poolStatistics.idleConnections());
+        poolMetrics.gauge("pendingRequests").record(poolStatistics.pendingRequests());
+        poolMetrics.gauge("statementCacheHits").record(poolStatistics.statementCacheHits());
+        poolMetrics.gauge("statementCacheMisses").record(poolStatistics.statementCacheMisses());
+    }
 }
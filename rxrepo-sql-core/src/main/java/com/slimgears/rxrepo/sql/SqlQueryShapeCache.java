@@ -0,0 +1,170 @@
+package com.slimgears.rxrepo.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.internal.ObjectConstantExpression;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caches generated query SQL by query shape: the query with every constant (including limit and skip values)
+ * replaced by a typed placeholder. On a hit, arguments of the cached statement are re-bound from the constants
+ * of the actual query, so the generator only runs once per shape.
+ */
+@SuppressWarnings("UnstableApiUsage")
+class SqlQueryShapeCache {
+    private final static Long paginationPlaceholder = 0L;
+    private final Cache<Object, Template> templates;
+
+    SqlQueryShapeCache(long maxSize) {
+        this.templates = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .concurrencyLevel(10)
+                .build();
+    }
+
+    <K, S, T> SqlStatement statement(QueryInfo<K, S, T> queryInfo, Function<QueryInfo<K, S, T>, SqlStatement> generator) {
+        List<Object> values = new ArrayList<>();
+        QueryInfo<K, S, T> shape = toShape(queryInfo, values);
+        return statement(shape, values, () -> generator.apply(queryInfo));
+    }
+
+    // Keys are re-bound like query constants, so statement of query by keys is cached per shape and number of keys
+    <K, S, T> SqlStatement statement(QueryInfo<K, S, T> queryInfo, Collection<K> keys, BiFunction<QueryInfo<K, S, T>, Collection<K>, SqlStatement> generator) {
+        List<Object> values = new ArrayList<>();
+        QueryInfo<K, S, T> shape = toShape(queryInfo, values);
+        values.addAll(keys);
+        return statement(ImmutableList.of(shape, keys.size()), values, () -> generator.apply(queryInfo, keys));
+    }
+
+    private SqlStatement statement(Object shape, List<Object> values, Supplier<SqlStatement> generator) {
+        Template template = templates.getIfPresent(shape);
+        if (template != null) {
+            return template.isApplicable()
+                    ? template.bind(values)
+                    : generator.get();
+        }
+
+        SqlStatement statement = generator.get();
+        Template.tryCreate(statement, values).ifPresent(t -> templates.put(shape, t));
+        return statement;
+    }
+
+    private static <K, S, T> QueryInfo<K, S, T> toShape(QueryInfo<K, S, T> queryInfo, List<Object> values) {
+        ObjectExpression.Converter converter = new ObjectExpression.Converter() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <_S, _T> ObjectExpression<_S, _T> convert(ObjectExpression<_S, _T> expression) {
+                if (expression.type().operationType() != Expression.OperationType.Constant) {
+                    return expression;
+                }
+                ConstantExpression<_S, _T> constant = (ConstantExpression<_S, _T>)expression;
+                if (constant.value() == null) {
+                    return expression;
+                }
+                values.add(constant.value());
+                return ObjectConstantExpression.create(constant.type(), (_T)new Placeholder(constant.objectType()));
+            }
+        };
+
+        QueryInfo<K, S, T> shape = queryInfo.toBuilder()
+                .predicate(Optional.ofNullable(queryInfo.predicate()).map(p -> p.reflect().convert(converter)).orElse(null))
+                .mapping(Optional.ofNullable(queryInfo.mapping()).map(m -> m.reflect().convert(converter)).orElse(null))
+                .limit(queryInfo.limit() != null ? paginationPlaceholder : null)
+                .skip(queryInfo.skip() != null ? paginationPlaceholder : null)
+                .build();
+
+        Optional.ofNullable(queryInfo.limit()).ifPresent(values::add);
+        Optional.ofNullable(queryInfo.skip()).ifPresent(values::add);
+        return shape;
+    }
+
+    private static class Placeholder {
+        private final TypeToken<?> type;
+
+        private Placeholder(TypeToken<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Placeholder && Objects.equals(type, ((Placeholder)obj).type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(type);
+        }
+
+        @Override
+        public String toString() {
+            return "?" + type;
+        }
+    }
+
+    private static class Template {
+        private final static int nullArg = -1;
+        private final static Template notApplicable = new Template(null, null);
+        private final String statement;
+        private final int[] argIndices;
+
+        private Template(String statement, int[] argIndices) {
+            this.statement = statement;
+            this.argIndices = argIndices;
+        }
+
+        private boolean isApplicable() {
+            return statement != null;
+        }
+
+        private SqlStatement bind(List<Object> values) {
+            Object[] args = new Object[argIndices.length];
+            for (int i = 0; i < argIndices.length; ++i) {
+                args[i] = argIndices[i] != nullArg ? values.get(argIndices[i]) : null;
+            }
+            return SqlStatement.create(statement, args);
+        }
+
+        // Arguments are matched to query constants by identity. When the same instance occurs
+        // more than once, the mapping is ambiguous, so the shape is left to a later query.
+        // Arguments transformed by the generator cannot be re-bound, so the shape is never cached.
+        private static Optional<Template> tryCreate(SqlStatement statement, List<Object> values) {
+            Map<Object, Integer> indices = new IdentityHashMap<>();
+            for (int i = 0; i < values.size(); ++i) {
+                if (indices.put(values.get(i), i) != null) {
+                    return Optional.empty();
+                }
+            }
+
+            Object[] args = statement.args();
+            int[] argIndices = new int[args.length];
+            for (int i = 0; i < args.length; ++i) {
+                if (args[i] == null) {
+                    argIndices[i] = nullArg;
+                    continue;
+                }
+                Integer index = indices.get(args[i]);
+                if (index == null) {
+                    return Optional.of(notApplicable);
+                }
+                argIndices[i] = index;
+            }
+            return Optional.of(new Template(statement.statement(), argIndices));
+        }
+    }
+}
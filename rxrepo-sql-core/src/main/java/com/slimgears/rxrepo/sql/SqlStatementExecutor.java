@@ -4,6 +4,7 @@ import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
@@ -13,6 +14,7 @@ import java.util.function.Supplier;
 
 public interface SqlStatementExecutor {
     Observable<PropertyResolver> executeQuery(SqlStatement statement);
+    Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement, int fetchSize);
     Single<Integer> executeCommandReturnCount(SqlStatement statement);
     Completable executeCommands(Iterable<SqlStatement> statements);
     Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement);
@@ -8,8 +8,11 @@ import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.autovalue.annotations.MetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 
+import java.util.Collection;
+
 public interface SqlStatementProvider {
     <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo);
+    <K, S, T> SqlStatement forQueryByKeys(QueryInfo<K, S, T> queryInfo, Collection<K> keys);
 
     <K, S, T, R> SqlStatement forAggregation(QueryInfo<K, S, T> queryInfo,
                                              ObjectExpression<T, R> aggregation,
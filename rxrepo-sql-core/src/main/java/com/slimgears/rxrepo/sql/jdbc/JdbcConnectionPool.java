@@ -0,0 +1,420 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import com.slimgears.rxrepo.sql.ConnectionPoolStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded pool of JDBC connections. Idle connections are evicted after idle timeout, both on release
+// and periodically by eviction thread. Connection, which failed with SQLException while leased,
+// is validated on release and discarded if it is broken.
+public class JdbcConnectionPool implements Callable<Connection>, ConnectionPoolStatistics, AutoCloseable {
+    private final static Logger log = LoggerFactory.getLogger(JdbcConnectionPool.class);
+    private final Callable<Connection> connectionFactory;
+    private final int statementCacheSize;
+    private final long idleTimeoutNanos;
+    private final long validationIntervalNanos;
+    private final int validationTimeoutSeconds;
+    private final Duration acquireTimeout;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final ScheduledExecutorService evictionExecutor;
+
+    private JdbcConnectionPool(Builder builder) {
+        this.connectionFactory = builder.connectionFactory;
+        this.statementCacheSize = builder.statementCacheSize;
+        this.idleTimeoutNanos = builder.idleTimeout.toNanos();
+        this.validationIntervalNanos = builder.validationInterval.toNanos();
+        this.validationTimeoutSeconds = (int)Math.max(1, builder.validationTimeout.getSeconds());
+        this.acquireTimeout = builder.acquireTimeout;
+        this.permits = new Semaphore(builder.maxSize, true);
+        this.evictionExecutor = builder.evictionInterval.isZero() || builder.evictionInterval.isNegative()
+                ? null
+                : Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "rxrepo-jdbc-pool-eviction");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        if (evictionExecutor != null) {
+            long intervalMillis = builder.evictionInterval.toMillis();
+            evictionExecutor.scheduleWithFixedDelay(this::evictIdle, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public Connection call() throws Exception {
+        if (closed.get()) {
+            throw new SQLException("Connection pool is closed");
+        }
+        if (!permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            throw new SQLTimeoutException("Timed out waiting for a pooled connection (" + acquireTimeout + ")");
+        }
+        try {
+            PooledConnection connection = pollIdle();
+            if (connection == null) {
+                connection = new PooledConnection(connectionFactory.call());
+                log.trace("Created new connection (active: {}, idle: {})", activeConnections.get(), idleConnections.size());
+            }
+            activeConnections.incrementAndGet();
+            return connection.lease();
+        } catch (Exception e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public int activeConnections() {
+        return activeConnections.get();
+    }
+
+    @Override
+    public int idleConnections() {
+        return idleConnections.size();
+    }
+
+    @Override
+    public int pendingRequests() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public long statementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    @Override
+    public long statementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    public void evictIdle() {
+        long now = System.nanoTime();
+        for (PooledConnection connection = idleConnections.peekLast();
+             connection != null && connection.isIdleExpired(now) && idleConnections.removeLastOccurrence(connection);
+             connection = idleConnections.peekLast()) {
+            log.trace("Evicting idle connection");
+            connection.discard();
+        }
+    }
+
+    // Returns connection back to the pool and releases its permit. Broken connection is discarded.
+    private void release(PooledConnection connection) {
+        activeConnections.decrementAndGet();
+        try {
+            if (closed.get() || !connection.reset()) {
+                connection.discard();
+            } else {
+                idleConnections.offerFirst(connection);
+                evictIdle();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            if (evictionExecutor != null) {
+                evictionExecutor.shutdownNow();
+            }
+            for (PooledConnection connection = idleConnections.pollFirst(); connection != null; connection = idleConnections.pollFirst()) {
+                connection.discard();
+            }
+        }
+    }
+
+    private PooledConnection pollIdle() {
+        long now = System.nanoTime();
+        for (PooledConnection connection = idleConnections.pollFirst(); connection != null; connection = idleConnections.pollFirst()) {
+            if (connection.isIdleExpired(now) || (connection.requiresValidation(now) && !connection.isValid())) {
+                connection.discard();
+                continue;
+            }
+            return connection;
+        }
+        return null;
+    }
+
+    private class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statementCache;
+        private volatile long lastUsedNanos = System.nanoTime();
+        private volatile boolean failed;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= statementCacheSize) {
+                        return false;
+                    }
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        private Connection lease() {
+            return (Connection)Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeasedConnectionHandler(this));
+        }
+
+        private PreparedStatement prepareStatement(String sql) throws SQLException {
+            if (statementCacheSize <= 0) {
+                return connection.prepareStatement(sql);
+            }
+            PreparedStatement statement = statementCache.get(sql);
+            if (statement != null && !statement.isClosed()) {
+                statementCacheHits.incrementAndGet();
+            } else {
+                statementCacheMisses.incrementAndGet();
+                statement = connection.prepareStatement(sql);
+                statementCache.put(sql, statement);
+            }
+            return (PreparedStatement)Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new CachedStatementHandler(this, statement));
+        }
+
+        private boolean isIdleExpired(long now) {
+            return now - lastUsedNanos > idleTimeoutNanos;
+        }
+
+        private boolean requiresValidation(long now) {
+            return now - lastUsedNanos > validationIntervalNanos;
+        }
+
+        private boolean isValid() {
+            try {
+                return connection.isValid(validationTimeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void onError(Throwable error) {
+            if (error instanceof SQLException) {
+                failed = true;
+            }
+        }
+
+        private boolean reset() {
+            try {
+                if (connection.isClosed()) {
+                    return false;
+                }
+                if (failed) {
+                    failed = false;
+                    if (!isValid()) {
+                        log.debug("Discarding broken connection");
+                        return false;
+                    }
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                lastUsedNanos = System.nanoTime();
+                return true;
+            } catch (SQLException e) {
+                log.debug("Failed to reset connection, discarding", e);
+                return false;
+            }
+        }
+
+        private void discard() {
+            statementCache.values().forEach(JdbcConnectionPool::closeQuietly);
+            statementCache.clear();
+            closeQuietly(connection);
+        }
+    }
+
+    private class LeasedConnectionHandler implements InvocationHandler {
+        private final PooledConnection pooledConnection;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private LeasedConnectionHandler(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (released.compareAndSet(false, true)) {
+                        release(pooledConnection);
+                    }
+                    return null;
+                case "isClosed":
+                    if (released.get()) {
+                        return true;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pooledConnection.connection + "]";
+            }
+            if (released.get()) {
+                throw new SQLException("Connection is closed");
+            }
+            try {
+                if (method.getName().equals("prepareStatement") && args.length == 1) {
+                    return pooledConnection.prepareStatement((String)args[0]);
+                }
+                return invokeUnderlying(pooledConnection.connection, method, args);
+            } catch (Throwable e) {
+                pooledConnection.onError(e);
+                throw e;
+            }
+        }
+    }
+
+    private static class CachedStatementHandler implements InvocationHandler {
+        private final PooledConnection pooledConnection;
+        private final PreparedStatement statement;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private CachedStatementHandler(PooledConnection pooledConnection, PreparedStatement statement) {
+            this.pooledConnection = pooledConnection;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        statement.clearParameters();
+                        statement.clearBatch();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed.get() || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+            }
+            try {
+                return invokeUnderlying(statement, method, args);
+            } catch (Throwable e) {
+                pooledConnection.onError(e);
+                throw e;
+            }
+        }
+    }
+
+    private static Object invokeUnderlying(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Failed to close {}", closeable, e);
+        }
+    }
+
+    public static class Builder {
+        private Callable<Connection> connectionFactory;
+        private int maxSize = 10;
+        private int statementCacheSize = 100;
+        private Duration idleTimeout = Duration.ofMinutes(10);
+        private Duration validationInterval = Duration.ofSeconds(30);
+        private Duration validationTimeout = Duration.ofSeconds(5);
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+        private Duration evictionInterval = Duration.ofMinutes(1);
+
+        private Builder() {
+        }
+
+        public Builder connectionFactory(Callable<Connection> connectionFactory) {
+            this.connectionFactory = connectionFactory;
+            return this;
+        }
+
+        public Builder maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public Builder statementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return this;
+        }
+
+        public Builder idleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public Builder validationInterval(Duration validationInterval) {
+            this.validationInterval = validationInterval;
+            return this;
+        }
+
+        public Builder validationTimeout(Duration validationTimeout) {
+            this.validationTimeout = validationTimeout;
+            return this;
+        }
+
+        public Builder acquireTimeout(Duration acquireTimeout) {
+            this.acquireTimeout = acquireTimeout;
+            return this;
+        }
+
+        public Builder evictionInterval(Duration evictionInterval) {
+            this.evictionInterval = evictionInterval;
+            return this;
+        }
+
+        public JdbcConnectionPool build() {
+            Objects.requireNonNull(connectionFactory);
+            return new JdbcConnectionPool(this);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.sql.jdbc;
 
 import com.slimgears.rxrepo.sql.SqlStatement;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 
 import java.sql.Connection;
@@ -24,7 +25,7 @@ public class JdbcHelper {
         }
     }
 
-    private static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
+    static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
         for (int i = 0; i < params.length; ++i) {
             preparedStatement.setObject(i + 1, params[i]);
         }
@@ -39,4 +40,14 @@ public class JdbcHelper {
             }
         }).doFinally(resultSet::close);
     }
+
+    public static Flowable<ResultSet> toFlowable(ResultSet resultSet) {
+        return Flowable.<ResultSet>generate(emitter -> {
+            if (resultSet.next()) {
+                emitter.onNext(resultSet);
+            } else {
+                emitter.onComplete();
+            }
+        }).doFinally(resultSet::close);
+    }
 }
@@ -1,5 +1,6 @@
 package com.slimgears.rxrepo.sql.jdbc;
 
+import com.slimgears.nanometer.MetricCollector;
 import com.slimgears.rxrepo.query.RepositoryConfig;
 import com.slimgears.rxrepo.query.decorator.BatchUpdateQueryProviderDecorator;
 import com.slimgears.rxrepo.query.decorator.ObserveOnSchedulingQueryProviderDecorator;
@@ -9,21 +10,59 @@ import io.reactivex.schedulers.Schedulers;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 
 public class JdbcRepository {
     public static class Builder<B extends Builder<B>> extends AbstractSqlRepositoryBuilder<B> {
         private Callable<Connection> connectionSupplier;
+        private boolean pooled = false;
         private int batchSize = 0;
+        private int commandBatchSize = JdbcSqlStatementExecutor.defaultMaxBatchSize;
+        private int maxConnections = 10;
+        private int statementCacheSize = 100;
+        private Duration connectionIdleTimeout = Duration.ofMinutes(10);
+        private MetricCollector metricCollector;
 
+        // Connections of the supplier are used as is, and closed after each operation,
+        // so a supplier backed by an external pooled data source is not pooled twice
         public B connection(Callable<Connection> connectionSupplier) {
             this.connectionSupplier = connectionSupplier;
+            this.pooled = false;
             return self();
         }
 
         public B connection(String connectionStr) {
-            return connection(() -> DriverManager.getConnection(connectionStr));
+            return pooledConnection(() -> DriverManager.getConnection(connectionStr));
+        }
+
+        // Connections are pooled by JdbcConnectionPool, bounded by maxConnections.
+        // Each streaming query holds its connection until the result is consumed.
+        public B pooledConnection(Callable<Connection> connectionSupplier) {
+            this.connectionSupplier = connectionSupplier;
+            this.pooled = true;
+            return self();
+        }
+
+        public B maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return self();
+        }
+
+        public B statementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return self();
+        }
+
+        public B connectionIdleTimeout(Duration idleTimeout) {
+            this.connectionIdleTimeout = idleTimeout;
+            return self();
+        }
+
+        public B enableMetrics(MetricCollector metricCollector) {
+            this.metricCollector = metricCollector.name("rxrepo.jdbc");
+            return self();
         }
 
         public B enableBatch(int batchSize) {
@@ -31,10 +70,40 @@ public class JdbcRepository {
             return self();
         }
 
+        public B commandBatchSize(int commandBatchSize) {
+            this.commandBatchSize = commandBatchSize;
+            return self();
+        }
+
+        // Unpooled connection factory, for connections which are held for the lifetime of the repository
+        protected Callable<Connection> dedicatedConnectionSupplier() {
+            return connectionSupplier;
+        }
+
         @Override
         protected SqlServiceFactory.Builder<?> serviceFactoryBuilder(RepositoryConfig config) {
             Objects.requireNonNull(connectionSupplier);
-            return serviceFactoryBuilder(config, connectionSupplier);
+            if (!pooled) {
+                return withMetrics(serviceFactoryBuilder(config, connectionSupplier), null);
+            }
+
+            JdbcConnectionPool connectionPool = JdbcConnectionPool.builder()
+                    .connectionFactory(connectionSupplier)
+                    .maxSize(maxConnections)
+                    .statementCacheSize(statementCacheSize)
+                    .idleTimeout(connectionIdleTimeout)
+                    .build();
+            return withMetrics(serviceFactoryBuilder(config, connectionPool), connectionPool)
+                    .onClose(connectionPool::close);
+        }
+
+        private SqlServiceFactory.Builder<?> withMetrics(SqlServiceFactory.Builder<?> builder, ConnectionPoolStatistics poolStatistics) {
+            if (metricCollector == null) {
+                return builder;
+            }
+            return builder
+                    .metricCollector(metricCollector)
+                    .decorateExecutor(() -> MetricsSqlStatementExecutorDecorator.create(metricCollector, poolStatistics));
         }
 
         protected SqlServiceFactory.Builder<?> serviceFactoryBuilder(RepositoryConfig config, Callable<Connection> connectionSupplier) {
@@ -46,7 +115,7 @@ public class JdbcRepository {
                     .schemaProvider(sf -> new JdbcSchemaGenerator(sf.statementExecutor(), sf.statementProvider()))
                     .referenceResolver(sf -> new DefaultSqlReferenceResolver(sf.keyEncoder(), sf.expressionGenerator()))
                     .statementProvider(sf -> new DefaultSqlStatementProvider(sf.expressionGenerator(), sf.typeMapper(), sf.dbNameProvider()))
-                    .statementExecutor(sf -> new JdbcSqlStatementExecutor(connectionSupplier, sf.typeMapper()))
+                    .statementExecutor(sf -> new JdbcSqlStatementExecutor(connectionSupplier, sf.typeMapper(), commandBatchSize))
                     .decorateExecutor(sf -> JdbcSqlStatementExecutorDecorator.create(sf.typeMapper(), sf.keyEncoder()))
                     .decorate(
 //                            LockQueryProviderDecorator.create(SemaphoreLockProvider.create()),
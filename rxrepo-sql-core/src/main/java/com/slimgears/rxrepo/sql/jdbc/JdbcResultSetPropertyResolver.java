@@ -1,59 +1,44 @@
 package com.slimgears.rxrepo.sql.jdbc;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.reflect.TypeToken;
 import com.slimgears.rxrepo.sql.FlattenedPropertyResolver;
 import com.slimgears.rxrepo.sql.SqlTypeMapper;
 import com.slimgears.rxrepo.util.PropertyResolver;
-import com.slimgears.util.stream.Lazy;
-import com.slimgears.util.stream.Safe;
+import io.reactivex.functions.Function;
 
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.IntStream;
+import java.util.ArrayList;
+import java.util.List;
 
 @SuppressWarnings("UnstableApiUsage")
-public class JdbcResultSetPropertyResolver implements PropertyResolver {
-    private final ResultSet resultSet;
-    private final SqlTypeMapper typeMapper;
-    private final Lazy<Map<String, Integer>> columnNames;
+public class JdbcResultSetPropertyResolver implements Function<ResultSet, PropertyResolver> {
+    private final int columnCount;
+    private final FlattenedPropertyResolver.Schema schema;
+    private final FlattenedPropertyResolver.ValueMapper valueMapper;
 
-    public static PropertyResolver create(ResultSet resultSet, SqlTypeMapper typeMapper) {
-        return FlattenedPropertyResolver.of(new JdbcResultSetPropertyResolver(resultSet, typeMapper));
-    }
-
-    private JdbcResultSetPropertyResolver(ResultSet resultSet, SqlTypeMapper typeMapper) {
-        this.resultSet = resultSet;
-        this.typeMapper = typeMapper;
-        this.columnNames = Lazy.fromCallable(this::getColumns);
-    }
-
-    private Map<String, Integer> getColumns() throws SQLException {
+    private JdbcResultSetPropertyResolver(ResultSet resultSet, SqlTypeMapper typeMapper) throws SQLException {
         ResultSetMetaData metaData = resultSet.getMetaData();
-        return IntStream.range(0, metaData.getColumnCount())
-                .boxed()
-                .collect(ImmutableMap.toImmutableMap(i -> {
-                    try {
-                        return metaData.getColumnName(i + 1);
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e);
-                    }
-                }, i -> i));
+        List<String> columnNames = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 0; i < metaData.getColumnCount(); ++i) {
+            columnNames.add(metaData.getColumnName(i + 1));
+        }
+        this.columnCount = columnNames.size();
+        this.schema = FlattenedPropertyResolver.schema(columnNames);
+        this.valueMapper = (value, type) -> typeMapper.fromSqlValue(TypeToken.of(type), value);
     }
 
-    @Override
-    public Iterable<String> propertyNames() {
-        return columnNames.get().keySet();
+    public static Function<ResultSet, PropertyResolver> rowMapper(ResultSet resultSet, SqlTypeMapper typeMapper) throws SQLException {
+        return new JdbcResultSetPropertyResolver(resultSet, typeMapper);
     }
 
     @Override
-    public Object getProperty(String name, Class<?> type) {
-        return Optional.ofNullable(columnNames.get().get(name))
-                .map(Safe.ofFunction(index -> resultSet.getObject(index + 1)))
-                .map(val -> typeMapper.fromSqlValue(TypeToken.of(type), val))
-                .orElse(null);
+    public PropertyResolver apply(ResultSet resultSet) throws SQLException {
+        Object[] row = new Object[columnCount];
+        for (int i = 0; i < columnCount; ++i) {
+            row[i] = resultSet.getObject(i + 1);
+        }
+        return schema.resolve(row, valueMapper);
     }
 }
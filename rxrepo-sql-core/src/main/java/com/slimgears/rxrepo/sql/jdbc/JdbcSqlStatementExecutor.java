@@ -5,9 +5,8 @@ import com.slimgears.rxrepo.sql.AbstractSqlStatementExecutor;
 import com.slimgears.rxrepo.sql.SqlStatement;
 import com.slimgears.rxrepo.sql.SqlTypeMapper;
 import com.slimgears.rxrepo.util.PropertyResolver;
-import com.slimgears.util.stream.Safe;
-import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.disposables.Disposable;
@@ -16,35 +15,72 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
+import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.stream.Collectors;
 
 public class JdbcSqlStatementExecutor extends AbstractSqlStatementExecutor {
+    public final static int defaultMaxBatchSize = 1000;
     private final Callable<Connection> connectionSupplier;
     private final SqlTypeMapper typeMapper;
+    private final int maxBatchSize;
 
     public JdbcSqlStatementExecutor(Callable<Connection> connectionSupplier,
                                     SqlTypeMapper typeMapper) {
+        this(connectionSupplier, typeMapper, defaultMaxBatchSize);
+    }
+
+    public JdbcSqlStatementExecutor(Callable<Connection> connectionSupplier,
+                                    SqlTypeMapper typeMapper,
+                                    int maxBatchSize) {
         this.connectionSupplier = connectionSupplier;
         this.typeMapper = typeMapper;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
     }
 
     @Override
     public Observable<PropertyResolver> executeQuery(SqlStatement statement) {
-        return Observable.defer(() -> {
-            try (Connection connection = connectionSupplier.call()) {
-                PreparedStatement preparedStatement = JdbcHelper.prepareStatement(
-                        connection,
-                        statement);
-                logStatement("Executing query", statement);
-                ResultSet resultSet = preparedStatement.executeQuery();
-                return JdbcHelper.toObservable(resultSet)
-                        .map(rs -> JdbcResultSetPropertyResolver.create(rs, typeMapper))
-                        .onErrorResumeNext((Throwable e) -> Observable.error(mapException(e)));
-            }
-        });
+        return Observable.using(
+                connectionSupplier::call,
+                connection -> Observable.using(
+                        () -> {
+                            PreparedStatement preparedStatement = JdbcHelper.prepareStatement(
+                                    connection,
+                                    statement);
+                            logStatement("Executing query", statement);
+                            return preparedStatement.executeQuery();
+                        },
+                        resultSet -> JdbcHelper.toObservable(resultSet)
+                                .map(JdbcResultSetPropertyResolver.rowMapper(resultSet, typeMapper)),
+                        ResultSet::close),
+                Connection::close)
+                .onErrorResumeNext((Throwable e) -> Observable.error(mapException(e)));
+    }
+
+    // Most drivers (e.g. pgjdbc) only honor the fetch size when not in auto-commit mode
+    @Override
+    public Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement, int fetchSize) {
+        return Flowable.using(
+                () -> {
+                    Connection connection = connectionSupplier.call();
+                    connection.setAutoCommit(false);
+                    return connection;
+                },
+                connection -> Flowable.using(
+                        () -> {
+                            PreparedStatement preparedStatement = JdbcHelper.prepareStatement(
+                                    connection,
+                                    statement);
+                            preparedStatement.setFetchSize(fetchSize);
+                            logStatement("Executing streaming query", statement);
+                            return preparedStatement.executeQuery();
+                        },
+                        resultSet -> JdbcHelper.toFlowable(resultSet)
+                                .map(JdbcResultSetPropertyResolver.rowMapper(resultSet, typeMapper)),
+                        ResultSet::close),
+                JdbcSqlStatementExecutor::closeStreamingConnection)
+                .onErrorResumeNext((Throwable e) -> Flowable.error(mapException(e)));
     }
 
     @Override
@@ -54,7 +90,7 @@ public class JdbcSqlStatementExecutor extends AbstractSqlStatementExecutor {
                 PreparedStatement ps = JdbcHelper.prepareStatement(connection, statement);
                 try (ResultSet rs = ps.executeQuery()) {
                     Disposable disposable = JdbcHelper.toObservable(rs)
-                            .map(_rs -> JdbcResultSetPropertyResolver.create(_rs, typeMapper))
+                            .map(JdbcResultSetPropertyResolver.rowMapper(rs, typeMapper))
                             .subscribe(emitter::onNext, emitter::onError, emitter::onComplete);
                     emitter.setDisposable(disposable);
                 } catch (SQLException e) {
@@ -82,26 +118,67 @@ public class JdbcSqlStatementExecutor extends AbstractSqlStatementExecutor {
         return Completable.create(emitter -> {
             try (Connection connection = connectionSupplier.call()) {
                 connection.setAutoCommit(false);
-                Collection<PreparedStatement> preparedStatements = Streams.fromIterable(statements)
-                        .peek(s -> logStatement("Executing command", s))
-                        .map(s -> JdbcHelper.prepareStatement(connection, s))
-                        .peek(Safe.ofConsumer(PreparedStatement::execute))
-                        .collect(Collectors.toList());
                 try {
+                    for (List<SqlStatement> batch : toBatches(statements)) {
+                        executeBatch(connection, batch);
+                    }
                     connection.commit();
-                    emitter.onComplete();
-                } finally {
-                    preparedStatements.forEach(Safe.ofConsumer(PreparedStatement::close));
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
                 }
+                emitter.onComplete();
             }
         }).onErrorResumeNext(e -> Completable.error(mapException(e)));
     }
 
+    private List<List<SqlStatement>> toBatches(Iterable<SqlStatement> statements) {
+        List<List<SqlStatement>> batches = new ArrayList<>();
+        List<SqlStatement> currentBatch = null;
+        for (SqlStatement statement : statements) {
+            if (currentBatch == null ||
+                    currentBatch.size() >= maxBatchSize ||
+                    !currentBatch.get(0).statement().equals(statement.statement())) {
+                currentBatch = new ArrayList<>();
+                batches.add(currentBatch);
+            }
+            currentBatch.add(statement);
+        }
+        return batches;
+    }
+
+    private void executeBatch(Connection connection, List<SqlStatement> batch) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(batch.get(0).statement())) {
+            if (batch.size() == 1) {
+                logStatement("Executing command", batch.get(0));
+                JdbcHelper.setParams(preparedStatement, batch.get(0).args());
+                preparedStatement.execute();
+                return;
+            }
+            for (SqlStatement statement : batch) {
+                logStatement("Adding command to batch", statement);
+                JdbcHelper.setParams(preparedStatement, statement.args());
+                preparedStatement.addBatch();
+            }
+            log.trace("Executing batch of {} commands", batch.size());
+            preparedStatement.executeBatch();
+        }
+    }
+
     @Override
     public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
         return notImplemented();
     }
 
+    private static void closeStreamingConnection(Connection connection) throws SQLException {
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } finally {
+            connection.close();
+        }
+    }
+
     private Throwable mapException(Throwable e) {
         if (e.getMessage().contains("duplicate")) {
             return new ConcurrentModificationException(e);
@@ -41,11 +41,11 @@ public class SqlStatementProviderTest {
                 "select \"name\", \"price\", \"id\" from repository.Product " +
                         "where (((\"name\" like '%' + ? + '%') and (\"price\" < ?)) and (\"type\" in (?))) " +
                         "order by \"name\" asc, \"id\" desc " +
-                        "limit 100 " +
-                        "skip 200",
+                        "limit ? " +
+                        "skip ?",
                 statement.statement());
         Assert.assertArrayEquals(statement.args(),
-                new Object[]{"substr", 100, Arrays.asList(ProductPrototype.Type.ComputeHardware, ProductPrototype.Type.ComputerSoftware)});
+                new Object[]{"substr", 100, Arrays.asList(ProductPrototype.Type.ComputeHardware, ProductPrototype.Type.ComputerSoftware), 100L, 200L});
     }
 
     @Test
@@ -62,9 +62,47 @@ public class SqlStatementProviderTest {
                 "select (LEN(\"inventory.name\") + ?) " +
                         "from repository.Product " +
                         "where ((\"name\" like '%' + ? + '%') and (\"price\" < ?)) " +
-                        "limit 100 " +
-                        "skip 200", statement.statement());
-        Assert.assertArrayEquals(new Object[]{5, "substr", 100}, statement.args());
+                        "limit ? " +
+                        "skip ?", statement.statement());
+        Assert.assertArrayEquals(new Object[]{5, "substr", 100, 100L, 200L}, statement.args());
+    }
+
+    @Test
+    public void testQueryStatementReusedForSameShape() {
+        SqlStatement first = statementProvider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.name.eq("product1").and(Product.$.price.lessThan(1000)))
+                .limit(1000L)
+                .skip(2000L)
+                .build());
+        SqlStatement second = statementProvider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.name.eq("product2").and(Product.$.price.lessThan(2000)))
+                .limit(3000L)
+                .skip(4000L)
+                .build());
+
+        Assert.assertSame(first.statement(), second.statement());
+        Assert.assertArrayEquals(new Object[]{"product1", 1000, 1000L, 2000L}, first.args());
+        Assert.assertArrayEquals(new Object[]{"product2", 2000, 3000L, 4000L}, second.args());
+    }
+
+    @Test
+    public void testQueryByKeysStatementReusedForSameNumberOfKeys() {
+        QueryInfo<Integer, Product, Product> query = QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .properties(ImmutableSet.of(Product.$.name, Product.$.id))
+                .build();
+        SqlStatement first = statementProvider.forQueryByKeys(query, Arrays.asList(1, 2));
+        SqlStatement second = statementProvider.forQueryByKeys(query, Arrays.asList(3, 4));
+        SqlStatement third = statementProvider.forQueryByKeys(query, Arrays.asList(5, 6, 7));
+
+        Assert.assertTrue(first.statement(), first.statement().endsWith(" in (?, ?)"));
+        Assert.assertSame(first.statement(), second.statement());
+        Assert.assertArrayEquals(new Object[]{1, 2}, first.args());
+        Assert.assertArrayEquals(new Object[]{3, 4}, second.args());
+        Assert.assertTrue(third.statement(), third.statement().endsWith(" in (?, ?, ?)"));
+        Assert.assertArrayEquals(new Object[]{5, 6, 7}, third.args());
     }
 
     @Test
@@ -98,8 +136,8 @@ public class SqlStatementProviderTest {
                 .limit(100L)
                 .predicate(Product.$.name.greaterOrEqual("product1"))
                 .build());
-        Assert.assertEquals("delete from repository.Product where (not (\"name\" < ?)) limit 100", statement.statement());
-        Assert.assertArrayEquals(new Object[]{"product1"}, statement.args());
+        Assert.assertEquals("delete from repository.Product where (not (\"name\" < ?)) limit ?", statement.statement());
+        Assert.assertArrayEquals(new Object[]{"product1", 100L}, statement.args());
     }
 
     @Test
@@ -114,8 +152,8 @@ public class SqlStatementProviderTest {
                 "update repository.Product " +
                         "set \"name\" = (\"name\" || ?) " +
                         "where (\"name\" like '%' + ? + '%') " +
-                        "limit 100",
+                        "limit ?",
                 statement.statement());
-        Assert.assertArrayEquals(new Object[]{"aa", "bbb"}, statement.args());
+        Assert.assertArrayEquals(new Object[]{"aa", "bbb", 100L}, statement.args());
     }
 }
@@ -0,0 +1,187 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class JdbcConnectionPoolTest {
+    private final List<Connection> createdConnections = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean failConnect = new AtomicBoolean();
+    private JdbcConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        pool = poolBuilder().build();
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        Connection first = pool.call();
+        first.close();
+        Connection second = pool.call();
+        second.close();
+        Assert.assertEquals(1, createdConnections.size());
+        Assert.assertEquals(0, pool.activeConnections());
+        Assert.assertEquals(1, pool.idleConnections());
+    }
+
+    @Test
+    public void testExhaustedPoolTimesOut() throws Exception {
+        Connection first = pool.call();
+        Connection second = pool.call();
+        try {
+            pool.call();
+            Assert.fail("Expected timeout");
+        } catch (SQLTimeoutException e) {
+            // expected
+        }
+        Assert.assertEquals(2, pool.activeConnections());
+
+        first.close();
+        pool.call().close();
+        second.close();
+        Assert.assertEquals(0, pool.activeConnections());
+    }
+
+    @Test
+    public void testPermitIsReleasedWhenConnectFails() throws Exception {
+        failConnect.set(true);
+        for (int i = 0; i < 3; ++i) {
+            try {
+                pool.call();
+                Assert.fail("Expected connection failure");
+            } catch (SQLException e) {
+                Assert.assertFalse(e instanceof SQLTimeoutException);
+            }
+        }
+        failConnect.set(false);
+        pool.call().close();
+        pool.call().close();
+        Assert.assertEquals(0, pool.activeConnections());
+    }
+
+    @Test
+    public void testBrokenConnectionIsEvictedOnRelease() throws Exception {
+        Connection connection = pool.call();
+        Connection underlying = createdConnections.get(0);
+        when(underlying.prepareStatement(anyString())).thenThrow(new SQLException("Connection reset", "08006"));
+        when(underlying.isValid(anyInt())).thenReturn(false);
+        try {
+            connection.prepareStatement("select 1");
+            Assert.fail("Expected failure");
+        } catch (SQLException e) {
+            // expected
+        }
+        connection.close();
+
+        Assert.assertEquals(0, pool.idleConnections());
+        verify(underlying).close();
+        pool.call().close();
+        Assert.assertEquals(2, createdConnections.size());
+    }
+
+    @Test
+    public void testFailedButValidConnectionIsReused() throws Exception {
+        Connection connection = pool.call();
+        Connection underlying = createdConnections.get(0);
+        when(underlying.createStatement()).thenThrow(new SQLException("Syntax error", "42601"));
+        try {
+            connection.createStatement();
+            Assert.fail("Expected failure");
+        } catch (SQLException e) {
+            // expected
+        }
+        connection.close();
+
+        Assert.assertEquals(1, pool.idleConnections());
+        verify(underlying, never()).close();
+    }
+
+    @Test
+    public void testIdleConnectionsAreEvicted() throws Exception {
+        pool.close();
+        pool = poolBuilder()
+                .idleTimeout(Duration.ofMillis(50))
+                .evictionInterval(Duration.ofMillis(20))
+                .build();
+        pool.call().close();
+        Assert.assertEquals(1, pool.idleConnections());
+        Thread.sleep(300);
+        Assert.assertEquals(0, pool.idleConnections());
+        verify(createdConnections.get(0)).close();
+    }
+
+    @Test
+    public void testClosedPool() throws Exception {
+        Connection leased = pool.call();
+        pool.call().close();
+        pool.close();
+
+        verify(createdConnections.get(1)).close();
+        try {
+            pool.call();
+            Assert.fail("Expected closed pool failure");
+        } catch (SQLException e) {
+            // expected
+        }
+
+        leased.close();
+        Assert.assertTrue(leased.isClosed());
+        verify(createdConnections.get(0)).close();
+        Assert.assertEquals(0, pool.idleConnections());
+    }
+
+    @Test
+    public void testLeasedConnectionCannotBeUsedAfterClose() throws Exception {
+        Connection connection = pool.call();
+        connection.close();
+        connection.close();
+        Assert.assertTrue(connection.isClosed());
+        try {
+            connection.createStatement();
+            Assert.fail("Expected closed connection failure");
+        } catch (SQLException e) {
+            // expected
+        }
+        Assert.assertEquals(0, pool.activeConnections());
+    }
+
+    private JdbcConnectionPool.Builder poolBuilder() {
+        return JdbcConnectionPool.builder()
+                .connectionFactory(this::createConnection)
+                .maxSize(2)
+                .acquireTimeout(Duration.ofMillis(100))
+                .evictionInterval(Duration.ZERO);
+    }
+
+    private Connection createConnection() throws SQLException {
+        if (failConnect.get()) {
+            throw new SQLException("Connection refused", "08001");
+        }
+        Connection connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> mock(PreparedStatement.class));
+        createdConnections.add(connection);
+        return connection;
+    }
+}
@@ -756,6 +756,32 @@ public abstract class AbstractRepositoryTest {
                 .assertValueCount(2);
     }
 
+    @Test
+    public void testFindByKeys() throws InterruptedException {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(20));
+        repository.entities(Product.metaClass)
+                .update(productList)
+                .test()
+                .await();
+
+        repository.entities(Product.metaClass)
+                .findAll(ImmutableList.of(productList.get(3).key(), productList.get(15).key(), UniqueId.productId(1000)))
+                .map(Product::key)
+                .toList()
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertValue(keys -> keys.size() == 2)
+                .assertValue(keys -> keys.containsAll(ImmutableList.of(productList.get(3).key(), productList.get(15).key())));
+
+        repository.entities(Product.metaClass)
+                .find(productList.get(7).key())
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertValue(p -> Objects.equals(p.key(), productList.get(7).key()));
+    }
+
     @Test
     public void testFilteredLiveQuery() {
         EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
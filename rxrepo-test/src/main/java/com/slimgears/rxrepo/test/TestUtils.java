@@ -1,11 +1,16 @@
 package com.slimgears.rxrepo.test;
 
+import com.google.common.collect.Ordering;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Notification;
 import io.reactivex.functions.Consumer;
 import io.reactivex.observers.BaseTestConsumer;
 import io.reactivex.observers.TestObserver;
 import org.junit.Assert;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @SuppressWarnings("WeakerAccess")
 public class TestUtils {
@@ -49,4 +54,40 @@ public class TestUtils {
                 .assertOf(countAtLeast(count))
                 .assertValueCount(count);
     }
+
+    public static <T> Consumer<TestObserver<T>> countExactly(int count, Duration timeout) {
+        return observer -> observer
+                .assertOf(countAtLeast(count, timeout))
+                .assertValueCount(count);
+    }
+
+    // Notifications, caused by the same change (e.g. change of referenced object), share sequence number
+    public static <T> Consumer<TestObserver<Notification<T>>> inSequenceOrder() {
+        return observer -> {
+            List<Long> sequenceNumbers = sequenceNumbersOf(observer);
+            Assert.assertTrue("Out of order: " + sequenceNumbers, Ordering.natural().isOrdered(sequenceNumbers));
+        };
+    }
+
+    public static <T> Consumer<TestObserver<Notification<T>>> strictlyInSequenceOrder() {
+        return observer -> {
+            List<Long> sequenceNumbers = sequenceNumbersOf(observer);
+            Assert.assertTrue("Out of order: " + sequenceNumbers, Ordering.natural().isStrictlyOrdered(sequenceNumbers));
+        };
+    }
+
+    public static <K, S> TestObserver<Notification<S>> observeModifications(EntitySet<K, S> entitySet) {
+        return entitySet
+                .query()
+                .liveSelect()
+                .observe()
+                .filter(Notification::isModify)
+                .test();
+    }
+
+    private static <T> List<Long> sequenceNumbersOf(TestObserver<Notification<T>> observer) {
+        return observer.values().stream()
+                .map(Notification::sequenceNumber)
+                .collect(Collectors.toList());
+    }
 }